@@ -0,0 +1,197 @@
+package reghzy.asm.benchmarks;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import reghzy.asm.ASMMethodAccessor;
+import reghzy.asm.AccessorLinker;
+import reghzy.asm.IntParamMethodAccessor;
+import reghzy.asm.MethodAccessor;
+import reghzy.asm.utils.ASMHelper;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares invoking 8 different methods through a {@link MethodAccessor} call site that they all share (like a helper
+ * method would, so the call site is megamorphic), against handles linked by {@link AccessorLinker} (in static finals,
+ * so they're constants), and a generated class that calls them with invokedynamic. Also a linked getter (a method
+ * without parameters) against calling it directly
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AccessorLinkerBenchmark {
+    private static final int CALLS = 8;
+
+    private static final MethodHandle POLY0 = AccessorLinker.link(getPoly(0));
+    private static final MethodHandle POLY1 = AccessorLinker.link(getPoly(1));
+    private static final MethodHandle POLY2 = AccessorLinker.link(getPoly(2));
+    private static final MethodHandle POLY3 = AccessorLinker.link(getPoly(3));
+    private static final MethodHandle POLY4 = AccessorLinker.link(getPoly(4));
+    private static final MethodHandle POLY5 = AccessorLinker.link(getPoly(5));
+    private static final MethodHandle POLY6 = AccessorLinker.link(getPoly(6));
+    private static final MethodHandle POLY7 = AccessorLinker.link(getPoly(7));
+
+    // methods without parameters are linked to the invoke methods that only take the target
+    private static final MethodHandle GET_INT = AccessorLinker.link(getMethod("getInt"));
+
+    public interface PolySum { int sum(BenchmarkTargets target, int a); }
+
+    public int a = 1;
+    public BenchmarkTargets target;
+
+    private MethodAccessor<BenchmarkTargets, Integer>[] accessors;
+    private IntParamMethodAccessor<BenchmarkTargets, Integer>[] fixed;
+    private PolySum linkedSum;
+
+    @Setup
+    public void setup() throws Exception {
+        this.target = new BenchmarkTargets();
+        this.accessors = new MethodAccessor[CALLS];
+        this.fixed = new IntParamMethodAccessor[CALLS];
+        for (int i = 0; i < CALLS; i++) {
+            this.accessors[i] = ASMMethodAccessor.create(getPoly(i));
+            this.fixed[i] = ASMMethodAccessor.createIntParam(getPoly(i));
+        }
+
+        this.linkedSum = generateLinkedSum();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CALLS)
+    public int interfaceDispatch() {
+        BenchmarkTargets target = this.target;
+        int a = this.a;
+        MethodAccessor<BenchmarkTargets, Integer>[] accessors = this.accessors;
+        return invokeShared(accessors[0], target, a) + invokeShared(accessors[1], target, a) +
+               invokeShared(accessors[2], target, a) + invokeShared(accessors[3], target, a) +
+               invokeShared(accessors[4], target, a) + invokeShared(accessors[5], target, a) +
+               invokeShared(accessors[6], target, a) + invokeShared(accessors[7], target, a);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CALLS)
+    public int interfaceDispatchFixedArity() {
+        BenchmarkTargets target = this.target;
+        int a = this.a;
+        IntParamMethodAccessor<BenchmarkTargets, Integer>[] fixed = this.fixed;
+        return invokeShared(fixed[0], target, a) + invokeShared(fixed[1], target, a) +
+               invokeShared(fixed[2], target, a) + invokeShared(fixed[3], target, a) +
+               invokeShared(fixed[4], target, a) + invokeShared(fixed[5], target, a) +
+               invokeShared(fixed[6], target, a) + invokeShared(fixed[7], target, a);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CALLS)
+    public int linkedHandles() throws Throwable {
+        BenchmarkTargets target = this.target;
+        int a = this.a;
+        return (int) POLY0.invokeExact(target, a) + (int) POLY1.invokeExact(target, a) +
+               (int) POLY2.invokeExact(target, a) + (int) POLY3.invokeExact(target, a) +
+               (int) POLY4.invokeExact(target, a) + (int) POLY5.invokeExact(target, a) +
+               (int) POLY6.invokeExact(target, a) + (int) POLY7.invokeExact(target, a);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CALLS)
+    public int linkedInvokeDynamic() {
+        return this.linkedSum.sum(this.target, this.a);
+    }
+
+    @Benchmark
+    public int linkedGetter() throws Throwable {
+        return (int) GET_INT.invokeExact(this.target);
+    }
+
+    @Benchmark
+    public int directGetter() {
+        return this.target.getInt();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CALLS)
+    public int direct() {
+        BenchmarkTargets target = this.target;
+        int a = this.a;
+        return target.poly0(a) + target.poly1(a) + target.poly2(a) + target.poly3(a) +
+               target.poly4(a) + target.poly5(a) + target.poly6(a) + target.poly7(a);
+    }
+
+    // every accessor goes through this one invokeinterface, so its profile sees all 8 accessor classes
+    private static int invokeShared(MethodAccessor<BenchmarkTargets, Integer> accessor, BenchmarkTargets target, int a) {
+        return accessor.invokeInt(target, a);
+    }
+
+    private static int invokeShared(IntParamMethodAccessor<BenchmarkTargets, Integer> accessor, BenchmarkTargets target, int a) {
+        return accessor.invokeInt(target, a);
+    }
+
+    private static Method getPoly(int index) {
+        return getMethod("poly" + index, int.class);
+    }
+
+    private static Method getMethod(String name, Class<?>... parameterTypes) {
+        try {
+            return BenchmarkTargets.class.getMethod(name, parameterTypes);
+        }
+        catch (NoSuchMethodException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    // generates a PolySum that adds up poly0 to poly7, with an invokedynamic for each
+    private static PolySum generateLinkedSum() throws Exception {
+        String name = "reghzy/asm/benchmarks/GeneratedLinkedSum";
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        cw.visit(Opcodes.V1_7, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER, name, null, "java/lang/Object", new String[]{Type.getInternalName(PolySum.class)});
+        MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+        mv.visitCode();
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V");
+        mv.visitInsn(Opcodes.RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "sum", "(" + Type.getDescriptor(BenchmarkTargets.class) + "I)I", null, null);
+        mv.visitCode();
+        mv.visitInsn(Opcodes.ICONST_0);
+        for (int i = 0; i < CALLS; i++) {
+            mv.visitVarInsn(Opcodes.ALOAD, 1);
+            mv.visitVarInsn(Opcodes.ILOAD, 2);
+            ASMHelper.visitLinkedInvoke(mv, getPoly(i));
+            mv.visitInsn(Opcodes.IADD);
+        }
+
+        mv.visitInsn(Opcodes.IRETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+        cw.visitEnd();
+
+        final byte[] data = cw.toByteArray();
+        ClassLoader loader = new ClassLoader(AccessorLinkerBenchmark.class.getClassLoader()) {
+            @Override
+            protected Class<?> findClass(String className) throws ClassNotFoundException {
+                return className.equals(name.replace('/', '.')) ? defineClass(className, data, 0, data.length) : super.findClass(className);
+            }
+        };
+
+        return (PolySum) loader.loadClass(name.replace('/', '.')).newInstance();
+    }
+}
@@ -0,0 +1,263 @@
+package reghzy.asm.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import reghzy.asm.ASMMethodAccessor;
+import reghzy.asm.ArgumentFrame;
+import reghzy.asm.ClassAccess;
+import reghzy.asm.IntParamMethodAccessor;
+import reghzy.asm.MethodAccessor;
+import reghzy.asm.ReflectMethodAccessor;
+import reghzy.asm.TieredMethodAccessor;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares every way of invoking an instance method that takes 0, 1, 3 or 8 int parameters and returns an int
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ArityBenchmark {
+    public interface Arity0 { int apply(BenchmarkTargets target); }
+
+    public interface Arity1 { int apply(BenchmarkTargets target, int a); }
+
+    public interface Arity3 { int apply(BenchmarkTargets target, int a, int b, int c); }
+
+    public interface Arity8 { int apply(BenchmarkTargets target, int a, int b, int c, int d, int e, int f, int g, int h); }
+
+    // fields rather than constants, so the JIT can't fold the parameters away
+    public int a = 1, b = 2, c = 3, d = 4, e = 5, f = 6, g = 7, h = 8;
+    public BenchmarkTargets target;
+    public ArgumentFrame frame;
+
+    private Method method0;
+    private MethodHandle handle0;
+    private ReflectMethodAccessor<BenchmarkTargets, Integer> reflect0;
+    private MethodAccessor<BenchmarkTargets, Integer> asm0;
+    private Arity0 bound0;
+
+    private Method method1;
+    private MethodHandle handle1;
+    private ReflectMethodAccessor<BenchmarkTargets, Integer> reflect1;
+    private MethodAccessor<BenchmarkTargets, Integer> asm1;
+    private Arity1 bound1;
+    private IntParamMethodAccessor<BenchmarkTargets, Integer> fixed1;
+
+    private Method method3;
+    private MethodHandle handle3;
+    private ReflectMethodAccessor<BenchmarkTargets, Integer> reflect3;
+    private MethodAccessor<BenchmarkTargets, Integer> asm3;
+    private Arity3 bound3;
+    private IntParamMethodAccessor<BenchmarkTargets, Integer> fixed3;
+    private TieredMethodAccessor<BenchmarkTargets, Integer> tiered3;
+    private ClassAccess<BenchmarkTargets> classAccess;
+    private int classAccessIndex3;
+
+    private Method method8;
+    private MethodHandle handle8;
+    private ReflectMethodAccessor<BenchmarkTargets, Integer> reflect8;
+    private MethodAccessor<BenchmarkTargets, Integer> asm8;
+    private Arity8 bound8;
+
+    @Setup
+    public void setup() throws Exception {
+        this.target = new BenchmarkTargets();
+        this.frame = new ArgumentFrame();
+
+        this.method0 = BenchmarkTargets.class.getMethod("arity0");
+        this.handle0 = MethodHandles.lookup().unreflect(this.method0);
+        this.reflect0 = new ReflectMethodAccessor<BenchmarkTargets, Integer>(this.method0);
+        this.asm0 = ASMMethodAccessor.create(this.method0);
+        this.bound0 = ASMMethodAccessor.bind(this.method0, Arity0.class);
+
+        this.method1 = BenchmarkTargets.class.getMethod("arity1", int.class);
+        this.handle1 = MethodHandles.lookup().unreflect(this.method1);
+        this.reflect1 = new ReflectMethodAccessor<BenchmarkTargets, Integer>(this.method1);
+        this.asm1 = ASMMethodAccessor.create(this.method1);
+        this.bound1 = ASMMethodAccessor.bind(this.method1, Arity1.class);
+        this.fixed1 = ASMMethodAccessor.createIntParam(this.method1);
+
+        this.method3 = BenchmarkTargets.class.getMethod("arity3", int.class, int.class, int.class);
+        this.handle3 = MethodHandles.lookup().unreflect(this.method3);
+        this.reflect3 = new ReflectMethodAccessor<BenchmarkTargets, Integer>(this.method3);
+        this.asm3 = ASMMethodAccessor.create(this.method3);
+        this.bound3 = ASMMethodAccessor.bind(this.method3, Arity3.class);
+        this.fixed3 = ASMMethodAccessor.createIntParam(this.method3);
+        this.tiered3 = ASMMethodAccessor.<BenchmarkTargets, Integer>createTiered(this.method3).inflate();
+        this.classAccess = ClassAccess.create(BenchmarkTargets.class);
+        this.classAccessIndex3 = this.classAccess.getIndex("arity3", int.class, int.class, int.class);
+
+        this.method8 = BenchmarkTargets.class.getMethod("arity8", int.class, int.class, int.class, int.class, int.class, int.class, int.class, int.class);
+        this.handle8 = MethodHandles.lookup().unreflect(this.method8);
+        this.reflect8 = new ReflectMethodAccessor<BenchmarkTargets, Integer>(this.method8);
+        this.asm8 = ASMMethodAccessor.create(this.method8);
+        this.bound8 = ASMMethodAccessor.bind(this.method8, Arity8.class);
+    }
+
+    @Benchmark
+    public int arity0_direct() {
+        return this.target.arity0();
+    }
+
+    @Benchmark
+    public Object arity0_methodInvoke() throws Exception {
+        return this.method0.invoke(this.target);
+    }
+
+    @Benchmark
+    public int arity0_methodHandle() throws Throwable {
+        return (int) this.handle0.invokeExact(this.target);
+    }
+
+    @Benchmark
+    public int arity0_reflectAccessor() {
+        return this.reflect0.invokeInt(this.target);
+    }
+
+    @Benchmark
+    public int arity0_asmAccessor() {
+        return this.asm0.invokeInt(this.target);
+    }
+
+    @Benchmark
+    public int arity0_asmBound() {
+        return this.bound0.apply(this.target);
+    }
+
+    @Benchmark
+    public int arity1_direct() {
+        return this.target.arity1(this.a);
+    }
+
+    @Benchmark
+    public Object arity1_methodInvoke() throws Exception {
+        return this.method1.invoke(this.target, this.a);
+    }
+
+    @Benchmark
+    public int arity1_methodHandle() throws Throwable {
+        return (int) this.handle1.invokeExact(this.target, this.a);
+    }
+
+    @Benchmark
+    public int arity1_reflectAccessor() {
+        return this.reflect1.invokeInt(this.target, this.a);
+    }
+
+    @Benchmark
+    public int arity1_asmAccessor() {
+        return this.asm1.invokeInt(this.target, this.a);
+    }
+
+    @Benchmark
+    public int arity1_asmFixedArity() {
+        return this.fixed1.invokeInt(this.target, this.a);
+    }
+
+    @Benchmark
+    public int arity1_asmBound() {
+        return this.bound1.apply(this.target, this.a);
+    }
+
+    @Benchmark
+    public int arity3_direct() {
+        return this.target.arity3(this.a, this.b, this.c);
+    }
+
+    @Benchmark
+    public Object arity3_methodInvoke() throws Exception {
+        return this.method3.invoke(this.target, this.a, this.b, this.c);
+    }
+
+    @Benchmark
+    public int arity3_methodHandle() throws Throwable {
+        return (int) this.handle3.invokeExact(this.target, this.a, this.b, this.c);
+    }
+
+    @Benchmark
+    public int arity3_reflectAccessor() {
+        return this.reflect3.invokeInt(this.target, this.a, this.b, this.c);
+    }
+
+    @Benchmark
+    public int arity3_asmAccessor() {
+        return this.asm3.invokeInt(this.target, this.a, this.b, this.c);
+    }
+
+    @Benchmark
+    public int arity3_asmFixedArity() {
+        return this.fixed3.invokeInt(this.target, this.a, this.b, this.c);
+    }
+
+    @Benchmark
+    public int arity3_asmBound() {
+        return this.bound3.apply(this.target, this.a, this.b, this.c);
+    }
+
+    @Benchmark
+    public int arity3_tieredAccessor() {
+        return this.tiered3.invokeInt(this.target, this.a, this.b, this.c);
+    }
+
+    @Benchmark
+    public int arity3_asmFrame() {
+        return this.asm3.invokeInt(this.target, this.frame.setInt(0, this.a).setInt(1, this.b).setInt(2, this.c));
+    }
+
+    @Benchmark
+    public int arity3_classAccess() {
+        return this.classAccess.invokeInt(this.classAccessIndex3, this.target, this.a, this.b, this.c);
+    }
+
+    @Benchmark
+    public int arity8_direct() {
+        return this.target.arity8(this.a, this.b, this.c, this.d, this.e, this.f, this.g, this.h);
+    }
+
+    @Benchmark
+    public Object arity8_methodInvoke() throws Exception {
+        return this.method8.invoke(this.target, this.a, this.b, this.c, this.d, this.e, this.f, this.g, this.h);
+    }
+
+    @Benchmark
+    public int arity8_methodHandle() throws Throwable {
+        return (int) this.handle8.invokeExact(this.target, this.a, this.b, this.c, this.d, this.e, this.f, this.g, this.h);
+    }
+
+    @Benchmark
+    public int arity8_reflectAccessor() {
+        return this.reflect8.invokeInt(this.target, this.a, this.b, this.c, this.d, this.e, this.f, this.g, this.h);
+    }
+
+    @Benchmark
+    public int arity8_asmAccessor() {
+        return this.asm8.invokeInt(this.target, this.a, this.b, this.c, this.d, this.e, this.f, this.g, this.h);
+    }
+
+    @Benchmark
+    public int arity8_asmFrame() {
+        return this.asm8.invokeInt(this.target, this.frame.setInt(0, this.a).setInt(1, this.b).setInt(2, this.c).setInt(3, this.d)
+                                                           .setInt(4, this.e).setInt(5, this.f).setInt(6, this.g).setInt(7, this.h));
+    }
+
+    @Benchmark
+    public int arity8_asmBound() {
+        return this.bound8.apply(this.target, this.a, this.b, this.c, this.d, this.e, this.f, this.g, this.h);
+    }
+}
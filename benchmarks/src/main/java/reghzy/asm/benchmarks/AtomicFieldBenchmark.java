@@ -0,0 +1,84 @@
+package reghzy.asm.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import reghzy.asm.ASMFieldAccessor;
+import reghzy.asm.AtomicFieldAccessor;
+import reghzy.asm.FieldAccessor;
+
+import java.lang.reflect.Field;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * 4 threads incrementing the same counter field, in a class that "isn't ours" (so it isn't volatile).
+ * Compares locking around reflection or a generated {@link FieldAccessor}, against {@link AtomicFieldAccessor#getAndAddInt(Object, int)},
+ * and an {@link AtomicIntegerFieldUpdater} on a volatile field (which is what you'd use if you did own the class)
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class AtomicFieldBenchmark {
+    public static class Counters {
+        public int hits;
+        public volatile int volatileHits;
+    }
+
+    private static final AtomicIntegerFieldUpdater<Counters> UPDATER = AtomicIntegerFieldUpdater.newUpdater(Counters.class, "volatileHits");
+
+    private final Object lock = new Object();
+    private Counters counters;
+    private Field field;
+    private FieldAccessor<Counters, Integer> accessor;
+    private AtomicFieldAccessor<Counters, Integer> atomic;
+
+    @Setup
+    public void setup() throws Exception {
+        this.counters = new Counters();
+        this.field = Counters.class.getDeclaredField("hits");
+        this.field.setAccessible(true);
+        this.accessor = ASMFieldAccessor.create(this.field);
+        this.atomic = ASMFieldAccessor.createAtomic(this.field);
+    }
+
+    @Benchmark
+    public int lockedReflection() throws Exception {
+        synchronized (this.lock) {
+            int hits = this.field.getInt(this.counters);
+            this.field.setInt(this.counters, hits + 1);
+            return hits;
+        }
+    }
+
+    @Benchmark
+    public int lockedAccessor() {
+        synchronized (this.lock) {
+            int hits = this.accessor.getInt(this.counters);
+            this.accessor.setInt(this.counters, hits + 1);
+            return hits;
+        }
+    }
+
+    @Benchmark
+    public int atomicAccessor() {
+        return this.atomic.getAndAddInt(this.counters, 1);
+    }
+
+    @Benchmark
+    public int atomicFieldUpdater() {
+        return UPDATER.getAndAdd(this.counters, 1);
+    }
+}
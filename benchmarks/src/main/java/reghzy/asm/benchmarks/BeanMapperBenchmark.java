@@ -0,0 +1,112 @@
+package reghzy.asm.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import reghzy.asm.BeanMapper;
+import reghzy.asm.ReflectMethodAccessor;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares copying 6 properties (4 primitives) between 2 beans with a generated {@link BeanMapper}, against going
+ * through each getter and setter with a {@link ReflectMethodAccessor}, and copying them by hand
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BeanMapperBenchmark {
+    public static class PlayerDTO {
+        private String name = "Steve";
+        private int health = 20;
+        private long experience = 123456L;
+        private double x = 12.5;
+        private boolean flying = true;
+        private String world = "overworld";
+
+        public String getName() { return this.name; }
+        public int getHealth() { return this.health; }
+        public long getExperience() { return this.experience; }
+        public double getX() { return this.x; }
+        public boolean isFlying() { return this.flying; }
+        public String getWorld() { return this.world; }
+    }
+
+    public static class Player {
+        private String name;
+        private int health;
+        private long experience;
+        private double x;
+        private boolean flying;
+        private String world;
+
+        public void setName(String name) { this.name = name; }
+        public void setHealth(int health) { this.health = health; }
+        public void setExperience(long experience) { this.experience = experience; }
+        public void setX(double x) { this.x = x; }
+        public void setFlying(boolean flying) { this.flying = flying; }
+        public void setWorld(String world) { this.world = world; }
+    }
+
+    public PlayerDTO source;
+    public Player destination;
+
+    private BeanMapper<PlayerDTO, Player> mapper;
+    private ReflectMethodAccessor<PlayerDTO, Object>[] getters;
+    private ReflectMethodAccessor<Player, Object>[] setters;
+
+    @Setup
+    public void setup() throws Exception {
+        this.source = new PlayerDTO();
+        this.destination = new Player();
+        this.mapper = BeanMapper.create(PlayerDTO.class, Player.class);
+
+        String[] properties = {"Name", "Health", "Experience", "X", "Flying", "World"};
+        this.getters = new ReflectMethodAccessor[properties.length];
+        this.setters = new ReflectMethodAccessor[properties.length];
+        for (int i = 0; i < properties.length; i++) {
+            Method getter = PlayerDTO.class.getMethod((properties[i].equals("Flying") ? "is" : "get") + properties[i]);
+            this.getters[i] = new ReflectMethodAccessor<PlayerDTO, Object>(getter);
+            this.setters[i] = new ReflectMethodAccessor<Player, Object>(Player.class.getMethod("set" + properties[i], getter.getReturnType()));
+        }
+    }
+
+    @Benchmark
+    public Player beanMapper() {
+        this.mapper.map(this.source, this.destination);
+        return this.destination;
+    }
+
+    @Benchmark
+    public Player reflectAccessors() {
+        for (int i = 0; i < this.getters.length; i++) {
+            this.setters[i].invokeVoid(this.destination, this.getters[i].invoke(this.source));
+        }
+
+        return this.destination;
+    }
+
+    @Benchmark
+    public Player direct() {
+        Player destination = this.destination;
+        PlayerDTO source = this.source;
+        destination.setName(source.getName());
+        destination.setHealth(source.getHealth());
+        destination.setExperience(source.getExperience());
+        destination.setX(source.getX());
+        destination.setFlying(source.isFlying());
+        destination.setWorld(source.getWorld());
+        return destination;
+    }
+}
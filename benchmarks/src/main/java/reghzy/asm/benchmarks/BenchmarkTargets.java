@@ -0,0 +1,103 @@
+package reghzy.asm.benchmarks;
+
+/**
+ * The methods that the benchmarks invoke. They're all cheap, so the benchmarks mostly measure the invocation itself
+ */
+public class BenchmarkTargets {
+    public int value = 7;
+
+    // ---------------------- arity ----------------------
+
+    public int arity0() {
+        return this.value;
+    }
+
+    public int arity1(int a) {
+        return this.value + a;
+    }
+
+    public int arity3(int a, int b, int c) {
+        return this.value + a + b + c;
+    }
+
+    public int arity8(int a, int b, int c, int d, int e, int f, int g, int h) {
+        return this.value + a + b + c + d + e + f + g + h;
+    }
+
+    public static int staticArity3(int a, int b, int c) {
+        return a + b + c;
+    }
+
+    // ------------------- return types ------------------
+
+    public byte getByte() {
+        return (byte) this.value;
+    }
+
+    public short getShort() {
+        return (short) this.value;
+    }
+
+    public int getInt() {
+        return this.value;
+    }
+
+    public long getLong() {
+        return this.value;
+    }
+
+    public float getFloat() {
+        return this.value;
+    }
+
+    public double getDouble() {
+        return this.value;
+    }
+
+    public boolean getBool() {
+        return this.value > 0;
+    }
+
+    public char getChar() {
+        return (char) this.value;
+    }
+
+    public void doVoid() {
+        this.value++;
+    }
+
+    // ------------- megamorphic call sites --------------
+    // each of these gets its own generated accessor class
+
+    public int poly0(int a) {
+        return a;
+    }
+
+    public int poly1(int a) {
+        return a + 1;
+    }
+
+    public int poly2(int a) {
+        return a + 2;
+    }
+
+    public int poly3(int a) {
+        return a + 3;
+    }
+
+    public int poly4(int a) {
+        return a + 4;
+    }
+
+    public int poly5(int a) {
+        return a + 5;
+    }
+
+    public int poly6(int a) {
+        return a + 6;
+    }
+
+    public int poly7(int a) {
+        return a + 7;
+    }
+}
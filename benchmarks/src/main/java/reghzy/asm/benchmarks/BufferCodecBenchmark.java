@@ -0,0 +1,104 @@
+package reghzy.asm.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import reghzy.asm.BufferCodec;
+
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares writing and reading an entity's 6 fields into a direct {@link ByteBuffer} with a generated {@link BufferCodec},
+ * against doing the same with reflection (what a field by field serializer would do without it)
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BufferCodecBenchmark {
+    public static class Entity {
+        public int id = 42;
+        public double x = 12.5, y = 64, z = -300.25;
+        public float yaw = 90;
+        public boolean onGround = true;
+    }
+
+    public Entity entity;
+    public Entity into;
+
+    private ByteBuffer buffer;
+    private BufferCodec<Entity> codec;
+    private Field[] fields;
+
+    @Setup
+    public void setup() {
+        this.entity = new Entity();
+        this.into = new Entity();
+        this.buffer = ByteBuffer.allocateDirect(1024);
+        this.codec = BufferCodec.create(Entity.class);
+        List<Field> fields = this.codec.getFields();
+        this.fields = fields.toArray(new Field[fields.size()]);
+    }
+
+    @Benchmark
+    public Entity codec() {
+        ByteBuffer buffer = this.buffer;
+        buffer.clear();
+        this.codec.write(this.entity, buffer);
+        buffer.flip();
+        this.codec.read(buffer, this.into);
+        return this.into;
+    }
+
+    @Benchmark
+    public Entity reflection() throws Exception {
+        ByteBuffer buffer = this.buffer;
+        buffer.clear();
+        for (Field field : this.fields) {
+            Class<?> type = field.getType();
+            if (type == int.class) {
+                buffer.putInt(field.getInt(this.entity));
+            }
+            else if (type == double.class) {
+                buffer.putDouble(field.getDouble(this.entity));
+            }
+            else if (type == float.class) {
+                buffer.putFloat(field.getFloat(this.entity));
+            }
+            else {
+                buffer.put((byte) (field.getBoolean(this.entity) ? 1 : 0));
+            }
+        }
+
+        buffer.flip();
+        for (Field field : this.fields) {
+            Class<?> type = field.getType();
+            if (type == int.class) {
+                field.setInt(this.into, buffer.getInt());
+            }
+            else if (type == double.class) {
+                field.setDouble(this.into, buffer.getDouble());
+            }
+            else if (type == float.class) {
+                field.setFloat(this.into, buffer.getFloat());
+            }
+            else {
+                field.setBoolean(this.into, buffer.get() != 0);
+            }
+        }
+
+        return this.into;
+    }
+}
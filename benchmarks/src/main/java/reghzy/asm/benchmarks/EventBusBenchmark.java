@@ -0,0 +1,91 @@
+package reghzy.asm.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import reghzy.asm.ASMMethodAccessor;
+import reghzy.asm.MethodAccessor;
+import reghzy.asm.events.EventBus;
+import reghzy.asm.events.SubscribeEvent;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares posting an event to N handlers through the {@link EventBus} (one generated dispatcher), against
+ * invoking each handler with reflection or a {@link MethodAccessor} (what an event bus would do without it)
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EventBusBenchmark {
+    public static class TickEvent {
+        public int ticks;
+    }
+
+    public static class Listener {
+        @SubscribeEvent
+        public void onTick(TickEvent event) {
+            event.ticks++;
+        }
+    }
+
+    @Param({"1", "4"})
+    public int handlers;
+
+    public TickEvent event;
+
+    private EventBus bus;
+    private Listener[] listeners;
+    private Method method;
+    private MethodAccessor<Listener, Object> accessor;
+
+    @Setup
+    public void setup() throws Exception {
+        this.event = new TickEvent();
+        this.bus = new EventBus();
+        this.listeners = new Listener[this.handlers];
+        for (int i = 0; i < this.handlers; i++) {
+            this.listeners[i] = new Listener();
+            this.bus.register(this.listeners[i]);
+        }
+
+        this.method = Listener.class.getMethod("onTick", TickEvent.class);
+        this.accessor = ASMMethodAccessor.create(this.method);
+    }
+
+    @Benchmark
+    public int eventBus() {
+        this.bus.post(this.event);
+        return this.event.ticks;
+    }
+
+    @Benchmark
+    public int methodInvoke() throws Exception {
+        for (Listener listener : this.listeners) {
+            this.method.invoke(listener, this.event);
+        }
+
+        return this.event.ticks;
+    }
+
+    @Benchmark
+    public int asmAccessor() {
+        for (Listener listener : this.listeners) {
+            this.accessor.invokeVoid(listener, this.event);
+        }
+
+        return this.event.ticks;
+    }
+}
@@ -0,0 +1,138 @@
+package reghzy.asm.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import reghzy.asm.ASMMethodAccessor;
+import reghzy.asm.IntParamMethodAccessor;
+import reghzy.asm.MethodAccessor;
+import reghzy.asm.ReflectMethodAccessor;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures a single call site that invokes {@link MegamorphicBenchmark#CALLS} accessors in a row. With 1 distinct method the call
+ * site only ever sees one generated class (monomorphic), with 2 it's bimorphic, and with 8 the JIT gives up on inlining (megamorphic)
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MegamorphicBenchmark {
+    private static final int CALLS = 8;
+
+    public interface IntOp { int apply(BenchmarkTargets target, int a); }
+
+    @Param({"1", "2", "8"})
+    public int distinctMethods;
+
+    public int a = 1;
+    public BenchmarkTargets target;
+
+    private Method[] methods;
+    private MethodHandle[] handles;
+    private MethodAccessor<BenchmarkTargets, Integer>[] reflect;
+    private MethodAccessor<BenchmarkTargets, Integer>[] asm;
+    private IntParamMethodAccessor<BenchmarkTargets, Integer>[] fixed;
+    private IntOp[] bound;
+
+    @Setup
+    public void setup() throws Exception {
+        this.target = new BenchmarkTargets();
+        this.methods = new Method[CALLS];
+        this.handles = new MethodHandle[CALLS];
+        this.reflect = new MethodAccessor[CALLS];
+        this.asm = new MethodAccessor[CALLS];
+        this.fixed = new IntParamMethodAccessor[CALLS];
+        this.bound = new IntOp[CALLS];
+        for (int i = 0; i < CALLS; i++) {
+            Method method = BenchmarkTargets.class.getMethod("poly" + (i % this.distinctMethods), int.class);
+            this.methods[i] = method;
+            this.handles[i] = MethodHandles.lookup().unreflect(method);
+            this.reflect[i] = new ReflectMethodAccessor<BenchmarkTargets, Integer>(method);
+            this.asm[i] = ASMMethodAccessor.create(method);
+            this.fixed[i] = ASMMethodAccessor.createIntParam(method);
+            this.bound[i] = ASMMethodAccessor.bind(method, IntOp.class);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CALLS)
+    public int methodInvoke() throws Exception {
+        int sum = 0;
+        for (Method method : this.methods) {
+            sum += (Integer) method.invoke(this.target, this.a);
+        }
+
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CALLS)
+    public int methodHandle() throws Throwable {
+        int sum = 0;
+        for (MethodHandle handle : this.handles) {
+            sum += (int) handle.invokeExact(this.target, this.a);
+        }
+
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CALLS)
+    public int reflectAccessor() {
+        int sum = 0;
+        for (MethodAccessor<BenchmarkTargets, Integer> accessor : this.reflect) {
+            sum += accessor.invokeInt(this.target, this.a);
+        }
+
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CALLS)
+    public int asmAccessor() {
+        int sum = 0;
+        for (MethodAccessor<BenchmarkTargets, Integer> accessor : this.asm) {
+            sum += accessor.invokeInt(this.target, this.a);
+        }
+
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CALLS)
+    public int asmFixedArity() {
+        int sum = 0;
+        for (IntParamMethodAccessor<BenchmarkTargets, Integer> accessor : this.fixed) {
+            sum += accessor.invokeInt(this.target, this.a);
+        }
+
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CALLS)
+    public int asmBound() {
+        int sum = 0;
+        for (IntOp op : this.bound) {
+            sum += op.apply(this.target, this.a);
+        }
+
+        return sum;
+    }
+}
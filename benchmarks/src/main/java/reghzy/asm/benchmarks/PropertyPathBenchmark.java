@@ -0,0 +1,93 @@
+package reghzy.asm.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import reghzy.asm.ASMMethodAccessor;
+import reghzy.asm.ArgumentFrame;
+import reghzy.asm.MethodAccessor;
+import reghzy.asm.PropertyPath;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares navigating world.getChunkAt(x, z).getSection(y).getBlockId(x, y, z) with a compiled {@link PropertyPath},
+ * against calling a {@link MethodAccessor} for each step, and calling them by hand
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PropertyPathBenchmark {
+    public static class Section {
+        private final int[] blocks = new int[16 * 16 * 16];
+
+        public int getBlockId(int x, int y, int z) { return this.blocks[(y << 8) | (z << 4) | x]; }
+    }
+
+    public static class Chunk {
+        private final Section[] sections = new Section[16];
+
+        public Section getSection(int y) { return this.sections[y]; }
+    }
+
+    public static class World {
+        private final Chunk chunk = new Chunk();
+
+        public Chunk getChunkAt(int x, int z) { return this.chunk; }
+    }
+
+    // fields rather than constants, so the JIT can't fold the parameters away
+    public int x = 2250, y = 67, z = -2434;
+    public World world;
+    public ArgumentFrame frame;
+
+    private PropertyPath<World> path;
+    private MethodAccessor<World, Chunk> getChunkAt;
+    private MethodAccessor<Chunk, Section> getSection;
+    private MethodAccessor<Section, Integer> getBlockId;
+
+    @Setup
+    public void setup() throws Exception {
+        this.world = new World();
+        for (int i = 0; i < 16; i++) {
+            this.world.chunk.sections[i] = new Section();
+        }
+
+        this.frame = new ArgumentFrame();
+        this.path = PropertyPath.compile(World.class, "getChunkAt(int, int)?.getSection(int)?.getBlockId(int, int, int)");
+        this.getChunkAt = ASMMethodAccessor.create(World.class, "getChunkAt", int.class, int.class);
+        this.getSection = ASMMethodAccessor.create(Chunk.class, "getSection", int.class);
+        this.getBlockId = ASMMethodAccessor.create(Section.class, "getBlockId", int.class, int.class, int.class);
+    }
+
+    @Benchmark
+    public int propertyPath() {
+        int x = this.x, y = this.y, z = this.z;
+        this.frame.setInt(0, x >> 4).setInt(1, z >> 4).setInt(2, y >> 4).setInt(3, x & 15).setInt(4, y & 15).setInt(5, z & 15);
+        return this.path.getInt(this.world, this.frame);
+    }
+
+    @Benchmark
+    public int chainedAccessors() {
+        int x = this.x, y = this.y, z = this.z;
+        Chunk chunk = this.getChunkAt.invoke(this.world, x >> 4, z >> 4);
+        Section section = this.getSection.invoke(chunk, y >> 4);
+        return this.getBlockId.invokeInt(section, x & 15, y & 15, z & 15);
+    }
+
+    @Benchmark
+    public int direct() {
+        int x = this.x, y = this.y, z = this.z;
+        return this.world.getChunkAt(x >> 4, z >> 4).getSection(y >> 4).getBlockId(x & 15, y & 15, z & 15);
+    }
+}
@@ -0,0 +1,347 @@
+package reghzy.asm.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import reghzy.asm.ASMMethodAccessor;
+import reghzy.asm.MethodAccessor;
+import reghzy.asm.ReflectMethodAccessor;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares every way of invoking a method with no parameters, for every primitive return type
+ * <p>
+ *     The generated accessors return primitives directly, where Method.invoke and {@link ReflectMethodAccessor} have to box them
+ * </p>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ReturnTypeBenchmark {
+    public BenchmarkTargets target;
+
+    private Method methodByte;
+    private MethodHandle handleByte;
+    private ReflectMethodAccessor<BenchmarkTargets, Object> reflectByte;
+    private MethodAccessor<BenchmarkTargets, Object> asmByte;
+
+    private Method methodShort;
+    private MethodHandle handleShort;
+    private ReflectMethodAccessor<BenchmarkTargets, Object> reflectShort;
+    private MethodAccessor<BenchmarkTargets, Object> asmShort;
+
+    private Method methodInt;
+    private MethodHandle handleInt;
+    private ReflectMethodAccessor<BenchmarkTargets, Object> reflectInt;
+    private MethodAccessor<BenchmarkTargets, Object> asmInt;
+
+    private Method methodLong;
+    private MethodHandle handleLong;
+    private ReflectMethodAccessor<BenchmarkTargets, Object> reflectLong;
+    private MethodAccessor<BenchmarkTargets, Object> asmLong;
+
+    private Method methodFloat;
+    private MethodHandle handleFloat;
+    private ReflectMethodAccessor<BenchmarkTargets, Object> reflectFloat;
+    private MethodAccessor<BenchmarkTargets, Object> asmFloat;
+
+    private Method methodDouble;
+    private MethodHandle handleDouble;
+    private ReflectMethodAccessor<BenchmarkTargets, Object> reflectDouble;
+    private MethodAccessor<BenchmarkTargets, Object> asmDouble;
+
+    private Method methodBool;
+    private MethodHandle handleBool;
+    private ReflectMethodAccessor<BenchmarkTargets, Object> reflectBool;
+    private MethodAccessor<BenchmarkTargets, Object> asmBool;
+
+    private Method methodChar;
+    private MethodHandle handleChar;
+    private ReflectMethodAccessor<BenchmarkTargets, Object> reflectChar;
+    private MethodAccessor<BenchmarkTargets, Object> asmChar;
+
+    private Method methodVoid;
+    private MethodHandle handleVoid;
+    private ReflectMethodAccessor<BenchmarkTargets, Object> reflectVoid;
+    private MethodAccessor<BenchmarkTargets, Object> asmVoid;
+
+    @Setup
+    public void setup() throws Exception {
+        this.target = new BenchmarkTargets();
+        this.methodByte = BenchmarkTargets.class.getMethod("getByte");
+        this.handleByte = MethodHandles.lookup().unreflect(this.methodByte);
+        this.reflectByte = new ReflectMethodAccessor<BenchmarkTargets, Object>(this.methodByte);
+        this.asmByte = ASMMethodAccessor.create(this.methodByte);
+        this.methodShort = BenchmarkTargets.class.getMethod("getShort");
+        this.handleShort = MethodHandles.lookup().unreflect(this.methodShort);
+        this.reflectShort = new ReflectMethodAccessor<BenchmarkTargets, Object>(this.methodShort);
+        this.asmShort = ASMMethodAccessor.create(this.methodShort);
+        this.methodInt = BenchmarkTargets.class.getMethod("getInt");
+        this.handleInt = MethodHandles.lookup().unreflect(this.methodInt);
+        this.reflectInt = new ReflectMethodAccessor<BenchmarkTargets, Object>(this.methodInt);
+        this.asmInt = ASMMethodAccessor.create(this.methodInt);
+        this.methodLong = BenchmarkTargets.class.getMethod("getLong");
+        this.handleLong = MethodHandles.lookup().unreflect(this.methodLong);
+        this.reflectLong = new ReflectMethodAccessor<BenchmarkTargets, Object>(this.methodLong);
+        this.asmLong = ASMMethodAccessor.create(this.methodLong);
+        this.methodFloat = BenchmarkTargets.class.getMethod("getFloat");
+        this.handleFloat = MethodHandles.lookup().unreflect(this.methodFloat);
+        this.reflectFloat = new ReflectMethodAccessor<BenchmarkTargets, Object>(this.methodFloat);
+        this.asmFloat = ASMMethodAccessor.create(this.methodFloat);
+        this.methodDouble = BenchmarkTargets.class.getMethod("getDouble");
+        this.handleDouble = MethodHandles.lookup().unreflect(this.methodDouble);
+        this.reflectDouble = new ReflectMethodAccessor<BenchmarkTargets, Object>(this.methodDouble);
+        this.asmDouble = ASMMethodAccessor.create(this.methodDouble);
+        this.methodBool = BenchmarkTargets.class.getMethod("getBool");
+        this.handleBool = MethodHandles.lookup().unreflect(this.methodBool);
+        this.reflectBool = new ReflectMethodAccessor<BenchmarkTargets, Object>(this.methodBool);
+        this.asmBool = ASMMethodAccessor.create(this.methodBool);
+        this.methodChar = BenchmarkTargets.class.getMethod("getChar");
+        this.handleChar = MethodHandles.lookup().unreflect(this.methodChar);
+        this.reflectChar = new ReflectMethodAccessor<BenchmarkTargets, Object>(this.methodChar);
+        this.asmChar = ASMMethodAccessor.create(this.methodChar);
+        this.methodVoid = BenchmarkTargets.class.getMethod("doVoid");
+        this.handleVoid = MethodHandles.lookup().unreflect(this.methodVoid);
+        this.reflectVoid = new ReflectMethodAccessor<BenchmarkTargets, Object>(this.methodVoid);
+        this.asmVoid = ASMMethodAccessor.create(this.methodVoid);
+    }
+
+    @Benchmark
+    public byte byte_direct() {
+        return this.target.getByte();
+    }
+
+    @Benchmark
+    public Object byte_methodInvoke() throws Exception {
+        return this.methodByte.invoke(this.target);
+    }
+
+    @Benchmark
+    public byte byte_methodHandle() throws Throwable {
+        return (byte) this.handleByte.invokeExact(this.target);
+    }
+
+    @Benchmark
+    public byte byte_reflectAccessor() {
+        return this.reflectByte.invokeByte(this.target);
+    }
+
+    @Benchmark
+    public byte byte_asmAccessor() {
+        return this.asmByte.invokeByte(this.target);
+    }
+
+    @Benchmark
+    public short short_direct() {
+        return this.target.getShort();
+    }
+
+    @Benchmark
+    public Object short_methodInvoke() throws Exception {
+        return this.methodShort.invoke(this.target);
+    }
+
+    @Benchmark
+    public short short_methodHandle() throws Throwable {
+        return (short) this.handleShort.invokeExact(this.target);
+    }
+
+    @Benchmark
+    public short short_reflectAccessor() {
+        return this.reflectShort.invokeShort(this.target);
+    }
+
+    @Benchmark
+    public short short_asmAccessor() {
+        return this.asmShort.invokeShort(this.target);
+    }
+
+    @Benchmark
+    public int int_direct() {
+        return this.target.getInt();
+    }
+
+    @Benchmark
+    public Object int_methodInvoke() throws Exception {
+        return this.methodInt.invoke(this.target);
+    }
+
+    @Benchmark
+    public int int_methodHandle() throws Throwable {
+        return (int) this.handleInt.invokeExact(this.target);
+    }
+
+    @Benchmark
+    public int int_reflectAccessor() {
+        return this.reflectInt.invokeInt(this.target);
+    }
+
+    @Benchmark
+    public int int_asmAccessor() {
+        return this.asmInt.invokeInt(this.target);
+    }
+
+    @Benchmark
+    public long long_direct() {
+        return this.target.getLong();
+    }
+
+    @Benchmark
+    public Object long_methodInvoke() throws Exception {
+        return this.methodLong.invoke(this.target);
+    }
+
+    @Benchmark
+    public long long_methodHandle() throws Throwable {
+        return (long) this.handleLong.invokeExact(this.target);
+    }
+
+    @Benchmark
+    public long long_reflectAccessor() {
+        return this.reflectLong.invokeLong(this.target);
+    }
+
+    @Benchmark
+    public long long_asmAccessor() {
+        return this.asmLong.invokeLong(this.target);
+    }
+
+    @Benchmark
+    public float float_direct() {
+        return this.target.getFloat();
+    }
+
+    @Benchmark
+    public Object float_methodInvoke() throws Exception {
+        return this.methodFloat.invoke(this.target);
+    }
+
+    @Benchmark
+    public float float_methodHandle() throws Throwable {
+        return (float) this.handleFloat.invokeExact(this.target);
+    }
+
+    @Benchmark
+    public float float_reflectAccessor() {
+        return this.reflectFloat.invokeFloat(this.target);
+    }
+
+    @Benchmark
+    public float float_asmAccessor() {
+        return this.asmFloat.invokeFloat(this.target);
+    }
+
+    @Benchmark
+    public double double_direct() {
+        return this.target.getDouble();
+    }
+
+    @Benchmark
+    public Object double_methodInvoke() throws Exception {
+        return this.methodDouble.invoke(this.target);
+    }
+
+    @Benchmark
+    public double double_methodHandle() throws Throwable {
+        return (double) this.handleDouble.invokeExact(this.target);
+    }
+
+    @Benchmark
+    public double double_reflectAccessor() {
+        return this.reflectDouble.invokeDouble(this.target);
+    }
+
+    @Benchmark
+    public double double_asmAccessor() {
+        return this.asmDouble.invokeDouble(this.target);
+    }
+
+    @Benchmark
+    public boolean bool_direct() {
+        return this.target.getBool();
+    }
+
+    @Benchmark
+    public Object bool_methodInvoke() throws Exception {
+        return this.methodBool.invoke(this.target);
+    }
+
+    @Benchmark
+    public boolean bool_methodHandle() throws Throwable {
+        return (boolean) this.handleBool.invokeExact(this.target);
+    }
+
+    @Benchmark
+    public boolean bool_reflectAccessor() {
+        return this.reflectBool.invokeBool(this.target);
+    }
+
+    @Benchmark
+    public boolean bool_asmAccessor() {
+        return this.asmBool.invokeBool(this.target);
+    }
+
+    @Benchmark
+    public char char_direct() {
+        return this.target.getChar();
+    }
+
+    @Benchmark
+    public Object char_methodInvoke() throws Exception {
+        return this.methodChar.invoke(this.target);
+    }
+
+    @Benchmark
+    public char char_methodHandle() throws Throwable {
+        return (char) this.handleChar.invokeExact(this.target);
+    }
+
+    @Benchmark
+    public char char_reflectAccessor() {
+        return this.reflectChar.invokeChar(this.target);
+    }
+
+    @Benchmark
+    public char char_asmAccessor() {
+        return this.asmChar.invokeChar(this.target);
+    }
+
+    @Benchmark
+    public void void_direct() {
+        this.target.doVoid();
+    }
+
+    @Benchmark
+    public Object void_methodInvoke() throws Exception {
+        return this.methodVoid.invoke(this.target);
+    }
+
+    @Benchmark
+    public void void_methodHandle() throws Throwable {
+        this.handleVoid.invokeExact(this.target);
+    }
+
+    @Benchmark
+    public void void_reflectAccessor() {
+        this.reflectVoid.invokeVoid(this.target);
+    }
+
+    @Benchmark
+    public void void_asmAccessor() {
+        this.asmVoid.invokeVoid(this.target);
+    }
+}
@@ -0,0 +1,122 @@
+package reghzy.asm.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import reghzy.asm.ASMMethodAccessor;
+import reghzy.asm.IntParamMethodAccessor;
+import reghzy.asm.MethodAccessor;
+import reghzy.asm.ReflectMethodAccessor;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares invoking a static method against an instance method (both take 3 ints and return an int)
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class StaticBenchmark {
+    public int a = 1, b = 2, c = 3;
+    public BenchmarkTargets target;
+
+    private Method staticMethod;
+    private MethodHandle staticHandle;
+    private ReflectMethodAccessor<BenchmarkTargets, Integer> staticReflect;
+    private MethodAccessor<BenchmarkTargets, Integer> staticAsm;
+    private IntParamMethodAccessor<BenchmarkTargets, Integer> staticFixed;
+
+    private Method virtualMethod;
+    private MethodHandle virtualHandle;
+    private ReflectMethodAccessor<BenchmarkTargets, Integer> virtualReflect;
+    private MethodAccessor<BenchmarkTargets, Integer> virtualAsm;
+    private IntParamMethodAccessor<BenchmarkTargets, Integer> virtualFixed;
+
+    @Setup
+    public void setup() throws Exception {
+        this.target = new BenchmarkTargets();
+        this.staticMethod = BenchmarkTargets.class.getMethod("staticArity3", int.class, int.class, int.class);
+        this.staticHandle = MethodHandles.lookup().unreflect(this.staticMethod);
+        this.staticReflect = new ReflectMethodAccessor<BenchmarkTargets, Integer>(this.staticMethod);
+        this.staticAsm = ASMMethodAccessor.create(this.staticMethod);
+        this.staticFixed = ASMMethodAccessor.createIntParam(this.staticMethod);
+        this.virtualMethod = BenchmarkTargets.class.getMethod("arity3", int.class, int.class, int.class);
+        this.virtualHandle = MethodHandles.lookup().unreflect(this.virtualMethod);
+        this.virtualReflect = new ReflectMethodAccessor<BenchmarkTargets, Integer>(this.virtualMethod);
+        this.virtualAsm = ASMMethodAccessor.create(this.virtualMethod);
+        this.virtualFixed = ASMMethodAccessor.createIntParam(this.virtualMethod);
+    }
+
+    @Benchmark
+    public int static_direct() {
+        return BenchmarkTargets.staticArity3(this.a, this.b, this.c);
+    }
+
+    @Benchmark
+    public Object static_methodInvoke() throws Exception {
+        return this.staticMethod.invoke(null, this.a, this.b, this.c);
+    }
+
+    @Benchmark
+    public int static_methodHandle() throws Throwable {
+        return (int) this.staticHandle.invokeExact(this.a, this.b, this.c);
+    }
+
+    @Benchmark
+    public int static_reflectAccessor() {
+        return this.staticReflect.invokeInt(null, this.a, this.b, this.c);
+    }
+
+    @Benchmark
+    public int static_asmAccessor() {
+        return this.staticAsm.invokeInt(null, this.a, this.b, this.c);
+    }
+
+    @Benchmark
+    public int static_asmFixedArity() {
+        return this.staticFixed.invokeInt(null, this.a, this.b, this.c);
+    }
+
+    @Benchmark
+    public int virtual_direct() {
+        return this.target.arity3(this.a, this.b, this.c);
+    }
+
+    @Benchmark
+    public Object virtual_methodInvoke() throws Exception {
+        return this.virtualMethod.invoke(this.target, this.a, this.b, this.c);
+    }
+
+    @Benchmark
+    public int virtual_methodHandle() throws Throwable {
+        return (int) this.virtualHandle.invokeExact(this.target, this.a, this.b, this.c);
+    }
+
+    @Benchmark
+    public int virtual_reflectAccessor() {
+        return this.virtualReflect.invokeInt(this.target, this.a, this.b, this.c);
+    }
+
+    @Benchmark
+    public int virtual_asmAccessor() {
+        return this.virtualAsm.invokeInt(this.target, this.a, this.b, this.c);
+    }
+
+    @Benchmark
+    public int virtual_asmFixedArity() {
+        return this.virtualFixed.invokeInt(this.target, this.a, this.b, this.c);
+    }
+}
@@ -0,0 +1,95 @@
+package reghzy.asm;
+
+import reghzy.asm.utils.AccessorCache;
+import reghzy.asm.utils.AccessorPregenerator;
+import reghzy.asm.utils.ClassGenerator;
+import reghzy.asm.utils.GeneratorBackend;
+import reghzy.asm.utils.ReflectHelper;
+
+import java.lang.reflect.Constructor;
+
+/**
+ * A helper class for creating constructor accessors that use ASM generated classes to create new instances
+ */
+public class ASMConstructorAccessor {
+    private static final AccessorCache<Constructor<?>, ConstructorAccessor<?>> CACHE = new AccessorCache<Constructor<?>, ConstructorAccessor<?>>() {
+        @Override
+        protected ConstructorAccessor<?> generate(Constructor<?> key) {
+            return newAccessor(key);
+        }
+    };
+
+    /**
+     * Generates a constructor accessor for the constructor in the given targetClass with the given parameter types
+     * @param targetClass The class to create instances of
+     * @param parameterTypes The constructor's parameter types
+     * @param <T> Target class type
+     * @return A constructor accessor
+     */
+    public static <T> ConstructorAccessor<T> create(Class<T> targetClass, Class<?>... parameterTypes) {
+        return create(ReflectHelper.findDeclaredConstructor(targetClass, parameterTypes));
+    }
+
+    /**
+     * Creates a constructor accessor around the given constructor
+     * <p>
+     *     If the current {@link ClassGenerator#getBackend() backend} cannot access the constructor (e.g it's private and
+     *     the backend is {@link GeneratorBackend#CLASS_LOADER}), this returns a {@link ReflectConstructorAccessor} instead
+     * </p>
+     * @param constructor The constructor to use
+     * @param <T> Target class type
+     * @return A constructor accessor
+     */
+    public static <T> ConstructorAccessor<T> create(Constructor<T> constructor) {
+        return (ConstructorAccessor<T>) CACHE.get(constructor);
+    }
+
+    /**
+     * Returns the number of times {@link ASMConstructorAccessor#create(Constructor)} returned an already generated accessor
+     */
+    public static long getCacheHits() {
+        return CACHE.getHits();
+    }
+
+    /**
+     * Returns the number of times {@link ASMConstructorAccessor#create(Constructor)} had to generate a new accessor class
+     */
+    public static long getCacheMisses() {
+        return CACHE.getMisses();
+    }
+
+    /**
+     * Returns the number of generated constructor accessors currently cached
+     */
+    public static int getCacheSize() {
+        return CACHE.getSize();
+    }
+
+    private static <T> ConstructorAccessor<?> newAccessor(Constructor<T> constructor) {
+        try {
+            // pre-generated at build time, see AccessorPregenerator. This doesn't need ASM at all
+            Class<?> clazz = AccessorPregenerator.findClass(constructor);
+            if (clazz == null) {
+                if (!ClassGenerator.canAccess(constructor)) {
+                    return new ReflectConstructorAccessor<T>(constructor);
+                }
+
+                clazz = ClassGenerator.generateConstructorAccessor(constructor);
+            }
+
+            return (ConstructorAccessor<?>) clazz.newInstance();
+        }
+        catch (InstantiationException e) {
+            throw new RuntimeException("InstantiationException", e);
+        }
+        catch (IllegalAccessException e) {
+            throw new RuntimeException("IllegalAccessException", e);
+        }
+        catch (RuntimeException e) {
+            throw e;
+        }
+        catch (Throwable e) {
+            throw new RuntimeException("Failed to either generate class, or invoke constructor", e);
+        }
+    }
+}
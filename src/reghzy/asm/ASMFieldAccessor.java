@@ -0,0 +1,156 @@
+package reghzy.asm;
+
+import reghzy.asm.utils.AccessorCache;
+import reghzy.asm.utils.AccessorPregenerator;
+import reghzy.asm.utils.ClassGenerator;
+import reghzy.asm.utils.GeneratorBackend;
+import reghzy.asm.utils.ReflectHelper;
+
+import java.lang.reflect.Field;
+import java.text.MessageFormat;
+
+/**
+ * A helper class for creating field accessors that use ASM generated classes to get and set the field
+ */
+public class ASMFieldAccessor {
+    private static final AccessorCache<Field, FieldAccessor<?, ?>> CACHE = new AccessorCache<Field, FieldAccessor<?, ?>>() {
+        @Override
+        protected FieldAccessor<?, ?> generate(Field key) {
+            return newAccessor(key);
+        }
+    };
+
+    private static final AccessorCache<Field, AtomicFieldAccessor<?, ?>> ATOMIC_CACHE = new AccessorCache<Field, AtomicFieldAccessor<?, ?>>() {
+        @Override
+        protected AtomicFieldAccessor<?, ?> generate(Field key) {
+            return new AtomicFieldAccessor<Object, Object>(key);
+        }
+    };
+
+    /**
+     * Generates a field accessor for a field in the given targetClass, checking that the field's type is the given type
+     * @param targetClass The class in which the field is defined in (can be a derived class, where the field is stored in a super class)
+     * @param fieldType The field's type
+     * @param fieldName The name of the field
+     * @param <T> Target class type (class that the field is defined in)
+     * @param <V> Field type
+     * @return A field accessor
+     */
+    public static <T, V> FieldAccessor<T, V> create(Class<T> targetClass, Class<V> fieldType, String fieldName) {
+        Field field = ReflectHelper.findDeclaredField(targetClass, fieldName);
+        if (fieldType.isAssignableFrom(field.getType())) {
+            return create(field);
+        }
+
+        throw new RuntimeException(MessageFormat.format("Incompatible field type. Field type {0} cannot be assigned to {1}", field.getType().getName(), fieldType.getName()));
+    }
+
+    /**
+     * Generates a field accessor for a field in the given targetClass
+     * @param targetClass The class in which the field is defined in (can be a derived class, where the field is stored in a super class)
+     * @param fieldName The name of the field
+     * @param <T> Target class type (class that the field is defined in)
+     * @param <V> Field type
+     * @return A field accessor
+     */
+    public static <T, V> FieldAccessor<T, V> create(Class<T> targetClass, String fieldName) {
+        return create(ReflectHelper.findDeclaredField(targetClass, fieldName));
+    }
+
+    /**
+     * Creates a field accessor around the given field
+     * <p>
+     *     Only the getter/setter for the field's type are generated (e.g {@link FieldAccessor#getInt(Object)} for an int
+     *     field), and the setter isn't generated for final fields. Calling any other method throws an {@link AbstractMethodError}
+     * </p>
+     * <p>
+     *     If the current {@link ClassGenerator#getBackend() backend} cannot access the field (e.g it's private and
+     *     the backend is {@link GeneratorBackend#CLASS_LOADER}), this returns a {@link ReflectFieldAccessor} instead
+     * </p>
+     * @param field The field to use
+     * @param <T> Target class type (class that the field is defined in)
+     * @param <V> Field type
+     * @return A field accessor
+     */
+    public static <T, V> FieldAccessor<T, V> create(Field field) {
+        return (FieldAccessor<T, V>) CACHE.get(field);
+    }
+
+    /**
+     * Creates an accessor for atomic operations (compare-and-set, get-and-add, volatile and ordered reads and writes)
+     * on an int, long or reference field in the given targetClass
+     * @param targetClass The class in which the field is defined in (can be a derived class, where the field is stored in a super class)
+     * @param fieldName The name of the field
+     * @param <T> Target class type (class that the field is defined in)
+     * @param <V> Field type
+     * @return An atomic field accessor
+     * @see ASMFieldAccessor#createAtomic(Field)
+     */
+    public static <T, V> AtomicFieldAccessor<T, V> createAtomic(Class<T> targetClass, String fieldName) {
+        return createAtomic(ReflectHelper.findDeclaredField(targetClass, fieldName));
+    }
+
+    /**
+     * Creates an accessor for atomic operations (compare-and-set, get-and-add, volatile and ordered reads and writes)
+     * on the given field
+     * <p>
+     *     Nothing is generated for these, they use the JVM's field offset intrinsics directly, so they work on private
+     *     fields with either backend. The field can't be final
+     * </p>
+     * @param field The field to use. It must be an int, long or reference field
+     * @param <T> Target class type (class that the field is defined in)
+     * @param <V> Field type
+     * @return An atomic field accessor
+     * @throws RuntimeException If the field's type isn't supported, it's final, or it doesn't have an offset (e.g it's in a record)
+     * @throws UnsupportedOperationException If this JVM doesn't support it, see {@link AtomicFieldAccessor#isSupported()}
+     */
+    public static <T, V> AtomicFieldAccessor<T, V> createAtomic(Field field) {
+        return (AtomicFieldAccessor<T, V>) ATOMIC_CACHE.get(field);
+    }
+
+    /**
+     * Returns the number of times {@link ASMFieldAccessor#create(Field)} returned an already generated accessor
+     */
+    public static long getCacheHits() {
+        return CACHE.getHits();
+    }
+
+    /**
+     * Returns the number of times {@link ASMFieldAccessor#create(Field)} had to generate a new accessor class
+     */
+    public static long getCacheMisses() {
+        return CACHE.getMisses();
+    }
+
+    /**
+     * Returns the number of generated field accessors currently cached
+     */
+    public static int getCacheSize() {
+        return CACHE.getSize();
+    }
+
+    private static FieldAccessor<?, ?> newAccessor(Field field) {
+        try {
+            // pre-generated at build time, see AccessorPregenerator. This doesn't need ASM at all
+            Class<?> clazz = AccessorPregenerator.findClass(field);
+            if (clazz == null) {
+                if (!ClassGenerator.canAccess(field)) {
+                    return new ReflectFieldAccessor<Object, Object>(field);
+                }
+
+                clazz = ClassGenerator.generateFieldAccessor(field);
+            }
+
+            return (FieldAccessor<?, ?>) clazz.newInstance();
+        }
+        catch (InstantiationException e) {
+            throw new RuntimeException("InstantiationException", e);
+        }
+        catch (IllegalAccessException e) {
+            throw new RuntimeException("IllegalAccessException", e);
+        }
+        catch (Throwable e) {
+            throw new RuntimeException("Failed to either generate class, or invoke constructor", e);
+        }
+    }
+}
@@ -1,14 +1,71 @@
 package reghzy.asm;
 
+import reghzy.asm.metrics.Instrumentation;
+import reghzy.asm.utils.AccessorCache;
+import reghzy.asm.utils.AccessorPregenerator;
 import reghzy.asm.utils.ClassGenerator;
+import reghzy.asm.utils.GeneratorBackend;
+import reghzy.asm.utils.MetaspaceBudget;
 import reghzy.asm.utils.ReflectHelper;
 
 import java.lang.reflect.Method;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 /**
  * A helper class for creating method accessors that use ASM generated classes to invoke the method
  */
 public class ASMMethodAccessor {
+    // the same method will always return the same accessor instance, so
+    // that we don't keep generating (and leaking) classes for the same method
+    private static final AccessorCache<Method, MethodAccessor<?, ?>> CACHE = new AccessorCache<Method, MethodAccessor<?, ?>>() {
+        @Override
+        protected MethodAccessor<?, ?> generate(Method key) {
+            return newAccessor(key);
+        }
+    };
+
+    // bindings and profiled accessors are cached against the plugin's class (usually the interface or the receivers, but
+    // it could be the method's class), so that they don't keep the plugin loaded after it's unloaded
+    private static final AccessorCache<BindingKey, Object> BINDINGS = new AccessorCache<BindingKey, Object>() {
+        @Override
+        protected Class<?> getOwner(BindingKey key) {
+            return getShortestLived(key.method.getDeclaringClass(), key.functionalInterface);
+        }
+
+        @Override
+        protected Object generate(BindingKey key) {
+            return newBinding(key);
+        }
+    };
+
+    private static final AccessorCache<Method, TieredMethodAccessor<?, ?>> TIERED = new AccessorCache<Method, TieredMethodAccessor<?, ?>>() {
+        @Override
+        protected TieredMethodAccessor<?, ?> generate(Method key) {
+            return new TieredMethodAccessor<Object, Object>(key);
+        }
+    };
+
+    private static final AccessorCache<ProfiledKey, MethodAccessor<?, ?>> PROFILED = new AccessorCache<ProfiledKey, MethodAccessor<?, ?>>() {
+        @Override
+        protected Class<?> getOwner(ProfiledKey key) {
+            return getShortestLived(key.method.getDeclaringClass(), key.receiverTypes);
+        }
+
+        @Override
+        protected MethodAccessor<?, ?> generate(ProfiledKey key) {
+            return newProfiledAccessor(key);
+        }
+    };
+
     // Generics are used simply for convenience casting, though they are pretty much
     // useless if the return type is primitive... i guess
 
@@ -23,24 +80,7 @@ public class ASMMethodAccessor {
      */
     public static <T, V> MethodAccessor<T, V> create(Class<T> targetClass, String methodName, Class<?>... parameterTypes) {
         Method method = ReflectHelper.findDeclaredMethod(targetClass, methodName, parameterTypes);
-        // Doesn't do anything
-        // if (!method.isAccessible()) {
-        //     method.setAccessible(true);
-        // }
-
-        try {
-            Class<?> clazz = ClassGenerator.generate(method);
-            return (MethodAccessor<T, V>) clazz.newInstance();
-        }
-        catch (InstantiationException e) {
-            throw new RuntimeException("InstantiationException", e);
-        }
-        catch (IllegalAccessException e) {
-            throw new RuntimeException("IllegalAccessException", e);
-        }
-        catch (Throwable e) {
-            throw new RuntimeException("Failed to either generate class, or invoke constructor", e);
-        }
+        return create(method);
 
         // if (returnType.isAssignableFrom(method.getReturnType())) { }
         // was planning on putting the return type in the create() method... but nah
@@ -50,6 +90,10 @@ public class ASMMethodAccessor {
 
     /**
      * Creates a method accessor around the given method
+     * <p>
+     *     If the current {@link ClassGenerator#getBackend() backend} cannot access the method (e.g it's private and
+     *     the backend is {@link GeneratorBackend#CLASS_LOADER}), this returns a {@link ReflectMethodAccessor} instead
+     * </p>
      * @param method The method to use
      * @param <T> Target class type (class that the method is defined in)
      * @param <V> Return type
@@ -61,9 +105,313 @@ public class ASMMethodAccessor {
         //     method.setAccessible(true);
         // }
 
+        return (MethodAccessor<T, V>) CACHE.get(method);
+    }
+
+    /**
+     * Creates method accessors for all of the given methods, generating them in parallel
+     * <p>
+     *     This is the same as calling {@link ASMMethodAccessor#create(Method)} for each method (the accessors are cached
+     *     the same way), except that the classes are generated and defined on all cores, rather than one after another
+     *     on the calling thread. Useful for warming up all of a plugin's accessors when it loads
+     * </p>
+     * @param methods The methods
+     * @return The accessors, in the same order as the methods
+     * @throws RuntimeException If any of the accessors could not be created
+     */
+    public static List<MethodAccessor<?, ?>> createAll(Collection<Method> methods) {
+        List<Future<MethodAccessor<?, ?>>> futures = prewarmAsync(methods);
+        List<MethodAccessor<?, ?>> accessors = new ArrayList<MethodAccessor<?, ?>>(futures.size());
+        for (Future<MethodAccessor<?, ?>> future : futures) {
+            try {
+                accessors.add(future.get());
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while waiting for the accessors to be generated", e);
+            }
+            catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                else if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+
+                throw new RuntimeException("Failed to generate accessor", cause);
+            }
+        }
+
+        return accessors;
+    }
+
+    /**
+     * Starts creating method accessors for all of the given methods in the background, on a shared {@link ForkJoinPool}
+     * with a thread per core
+     * @see ASMMethodAccessor#prewarmAsync(Collection, ExecutorService)
+     */
+    public static List<Future<MethodAccessor<?, ?>>> prewarmAsync(Collection<Method> methods) {
+        return prewarmAsync(methods, GeneratorPool.POOL);
+    }
+
+    /**
+     * Starts creating method accessors for all of the given methods in the background, using the given executor
+     * <p>
+     *     The accessors are put in the same cache as {@link ASMMethodAccessor#create(Method)}, so once a future is done,
+     *     creating that method's accessor is just a cache lookup. If a method is already being generated by another
+     *     thread, its task just waits for that one
+     * </p>
+     * <p>
+     *     Each task generates and defines its own class; the defines aren't batched per class loader. The
+     *     library's class loaders only lock on the class' name, so the defines already run in parallel (and hidden
+     *     classes are defined one at a time by the JDK anyway), and batching would mean going around the cache
+     * </p>
+     * @param methods The methods
+     * @param executor The executor to generate the accessors on
+     * @return A future for each accessor, in the same order as the methods
+     */
+    public static List<Future<MethodAccessor<?, ?>>> prewarmAsync(Collection<Method> methods, ExecutorService executor) {
+        List<Future<MethodAccessor<?, ?>>> futures = new ArrayList<Future<MethodAccessor<?, ?>>>(methods.size());
+        for (final Method method : methods) {
+            futures.add(executor.submit(new Callable<MethodAccessor<?, ?>>() {
+                @Override
+                public MethodAccessor<?, ?> call() {
+                    return CACHE.get(method);
+                }
+            }));
+        }
+
+        return futures;
+    }
+
+    /**
+     * Creates a tiered accessor for a method in the given class, which uses reflection until it's been invoked enough times
+     * @see ASMMethodAccessor#createTiered(Method)
+     */
+    public static <T, V> TieredMethodAccessor<T, V> createTiered(Class<T> targetClass, String methodName, Class<?>... parameterTypes) {
+        return createTiered(ReflectHelper.findDeclaredMethod(targetClass, methodName, parameterTypes));
+    }
+
+    /**
+     * Creates (or gets the cached) tiered accessor around the given method, which uses reflection until it's been invoked
+     * {@link TieredMethodAccessor#getInflationThreshold() enough times}, and then swaps in the generated accessor
+     * <p>
+     *     This is for methods that might only be called a few times, so that they don't cost a generated class (and the
+     *     time to generate it) unless they get hot. See {@link TieredMethodAccessor}
+     * </p>
+     * @param method The method to use
+     * @param <T> Target class type (class that the method is defined in)
+     * @param <V> Return type
+     * @return A tiered method accessor
+     */
+    public static <T, V> TieredMethodAccessor<T, V> createTiered(Method method) {
+        return (TieredMethodAccessor<T, V>) TIERED.get(method);
+    }
+
+    /**
+     * Creates a method accessor around the given method, which is optimised for targets of the given receiver types
+     * @see ASMMethodAccessor#createProfiled(Method, Class[])
+     */
+    public static <T, V> MethodAccessor<T, V> createProfiled(Class<T> targetClass, String methodName, Class<?>[] parameterTypes, Class<?>... receiverTypes) {
+        return createProfiled(ReflectHelper.findDeclaredMethod(targetClass, methodName, parameterTypes), receiverTypes);
+    }
+
+    /**
+     * Creates a method accessor around the given method, which is optimised for targets of the given receiver types
+     * <p>
+     *     This is mostly for interface (and abstract) methods; a normal accessor has a single INVOKEINTERFACE call site shared
+     *     by every target, which becomes megamorphic once it sees more than 2 implementations. The profiled accessor checks
+     *     the target's exact class against each receiver type first, and invokes the method directly on that class
+     *     (which can be inlined). Targets of any other class still work, they just go through the normal call
+     * </p>
+     * <p>
+     *     Like {@link ASMMethodAccessor#create(Method)}, this falls back to a {@link ReflectMethodAccessor} if the method
+     *     cannot be accessed. Fixed-arity accessors are also profiled, but the batch methods aren't
+     * </p>
+     * @param method The instance method to use
+     * @param receiverTypes The concrete classes that targets usually are, most common first
+     * @param <T> Target class type (class that the method is defined in)
+     * @param <V> Return type
+     * @return A method accessor
+     * @throws RuntimeException If the method is static, or a receiver type isn't a concrete subclass of the method's declaring class
+     * @see ClassGenerator#generateProfiled(Method, Class[])
+     */
+    public static <T, V> MethodAccessor<T, V> createProfiled(Method method, Class<?>... receiverTypes) {
+        if (receiverTypes.length == 0) {
+            return create(method);
+        }
+
+        return (MethodAccessor<T, V>) PROFILED.get(new ProfiledKey(method, receiverTypes.clone()));
+    }
+
+    /**
+     * Creates a fixed-arity accessor for a method whose parameters are all ints
+     * @throws RuntimeException If the method's parameters don't fit a {@link IntParamMethodAccessor}, or the current backend can't access the method
+     * @see ASMMethodAccessor#create(Class, String, Class[])
+     */
+    public static <T, V> IntParamMethodAccessor<T, V> createIntParam(Class<T> targetClass, String methodName, Class<?>... parameterTypes) {
+        return createIntParam(ReflectHelper.findDeclaredMethod(targetClass, methodName, parameterTypes));
+    }
+
+    /**
+     * Creates a fixed-arity accessor for a method whose parameters are all ints
+     * @throws RuntimeException If the method's parameters don't fit a {@link IntParamMethodAccessor}, or the current backend can't access the method
+     */
+    public static <T, V> IntParamMethodAccessor<T, V> createIntParam(Method method) {
+        return (IntParamMethodAccessor<T, V>) createFixedArity(method, IntParamMethodAccessor.class);
+    }
+
+    /**
+     * Creates a fixed-arity accessor for a method whose parameters are all longs
+     * @throws RuntimeException If the method's parameters don't fit a {@link LongParamMethodAccessor}, or the current backend can't access the method
+     * @see ASMMethodAccessor#create(Class, String, Class[])
+     */
+    public static <T, V> LongParamMethodAccessor<T, V> createLongParam(Class<T> targetClass, String methodName, Class<?>... parameterTypes) {
+        return createLongParam(ReflectHelper.findDeclaredMethod(targetClass, methodName, parameterTypes));
+    }
+
+    /**
+     * Creates a fixed-arity accessor for a method whose parameters are all longs
+     * @throws RuntimeException If the method's parameters don't fit a {@link LongParamMethodAccessor}, or the current backend can't access the method
+     */
+    public static <T, V> LongParamMethodAccessor<T, V> createLongParam(Method method) {
+        return (LongParamMethodAccessor<T, V>) createFixedArity(method, LongParamMethodAccessor.class);
+    }
+
+    /**
+     * Creates a fixed-arity accessor for a method whose parameters are all doubles
+     * @throws RuntimeException If the method's parameters don't fit a {@link DoubleParamMethodAccessor}, or the current backend can't access the method
+     * @see ASMMethodAccessor#create(Class, String, Class[])
+     */
+    public static <T, V> DoubleParamMethodAccessor<T, V> createDoubleParam(Class<T> targetClass, String methodName, Class<?>... parameterTypes) {
+        return createDoubleParam(ReflectHelper.findDeclaredMethod(targetClass, methodName, parameterTypes));
+    }
+
+    /**
+     * Creates a fixed-arity accessor for a method whose parameters are all doubles
+     * @throws RuntimeException If the method's parameters don't fit a {@link DoubleParamMethodAccessor}, or the current backend can't access the method
+     */
+    public static <T, V> DoubleParamMethodAccessor<T, V> createDoubleParam(Method method) {
+        return (DoubleParamMethodAccessor<T, V>) createFixedArity(method, DoubleParamMethodAccessor.class);
+    }
+
+    /**
+     * Creates a fixed-arity accessor for a method whose parameters are all references
+     * @throws RuntimeException If the method's parameters don't fit a {@link RefParamMethodAccessor}, or the current backend can't access the method
+     * @see ASMMethodAccessor#create(Class, String, Class[])
+     */
+    public static <T, V> RefParamMethodAccessor<T, V> createRefParam(Class<T> targetClass, String methodName, Class<?>... parameterTypes) {
+        return createRefParam(ReflectHelper.findDeclaredMethod(targetClass, methodName, parameterTypes));
+    }
+
+    /**
+     * Creates a fixed-arity accessor for a method whose parameters are all references
+     * @throws RuntimeException If the method's parameters don't fit a {@link RefParamMethodAccessor}, or the current backend can't access the method
+     */
+    public static <T, V> RefParamMethodAccessor<T, V> createRefParam(Method method) {
+        return (RefParamMethodAccessor<T, V>) createFixedArity(method, RefParamMethodAccessor.class);
+    }
+
+    /**
+     * Generates an implementation of the given functional interface, which directly invokes the given method
+     * <p>
+     *     Unlike {@link MethodAccessor}, nothing is boxed, and because each binding is its own class implementing your
+     *     own interface, call sites that only see one binding can be fully inlined by the JIT
+     * </p>
+     * <pre>
+     * interface BlockIdGetter { int get(World world, int x, int y, int z); }
+     * BlockIdGetter getter = ASMMethodAccessor.bind(getBlockIdMethod, BlockIdGetter.class);
+     * </pre>
+     * @param method The method to invoke
+     * @param functionalInterface An interface with a single abstract method. For instance methods, the first parameter is the target instance
+     * @param <F> The functional interface type
+     * @return An instance of the functional interface
+     * @throws RuntimeException If the interface's method is not compatible with the given method
+     * @see ClassGenerator#generateBinding(Method, Class)
+     */
+    public static <F> F bind(Method method, Class<F> functionalInterface) {
+        return functionalInterface.cast(BINDINGS.get(new BindingKey(method, functionalInterface)));
+    }
+
+    /**
+     * Returns the number of times {@link ASMMethodAccessor#create(Method)} returned an already generated accessor
+     */
+    public static long getCacheHits() {
+        return CACHE.getHits();
+    }
+
+    /**
+     * Returns the number of times {@link ASMMethodAccessor#create(Method)} had to generate a new accessor class
+     */
+    public static long getCacheMisses() {
+        return CACHE.getMisses();
+    }
+
+    /**
+     * Returns the number of generated accessors currently cached
+     */
+    public static int getCacheSize() {
+        return CACHE.getSize();
+    }
+
+    // the generated class already implements the fixed-arity accessor if the method fits it. Those aren't limited by the
+    // metaspace budget, so the generated accessor is used directly (and it stays loaded while it's referenced)
+    private static Object createFixedArity(Method method, Class<?> accessorType) {
+        MethodAccessor<?, ?> accessor = create(method);
+        if (accessor instanceof BoundedMethodAccessor) {
+            accessor = ((BoundedMethodAccessor<?, ?>) accessor).getGenerated();
+        }
+
+        if (accessorType.isInstance(accessor)) {
+            return accessor;
+        }
+
+        if (ClassGenerator.getFixedArityAccessor(method.getParameterTypes()) != accessorType) {
+            throw new RuntimeException(MessageFormat.format("The method {0}.{1} cannot be used with a {2}; the parameters must be 1 to 3 of the same type",
+                                                            method.getDeclaringClass().getName(), method.getName(), accessorType.getSimpleName()));
+        }
+
+        // the parameters fit, but the accessor is a ReflectMethodAccessor, which doesn't have the fixed-arity methods
+        throw new RuntimeException(MessageFormat.format("The method {0}.{1} cannot be used with a {2}, because the {3} backend can''t access it directly (so its accessor uses reflection)",
+                                                        method.getDeclaringClass().getName(), method.getName(), accessorType.getSimpleName(), ClassGenerator.getBackend()));
+    }
+
+    private static Object newBinding(BindingKey key) {
+        try {
+            return ClassGenerator.generateBinding(key.method, key.functionalInterface).newInstance();
+        }
+        catch (InstantiationException e) {
+            throw new RuntimeException("InstantiationException", e);
+        }
+        catch (IllegalAccessException e) {
+            throw new RuntimeException("IllegalAccessException", e);
+        }
+    }
+
+    private static MethodAccessor<?, ?> newAccessor(Method method) {
         try {
-            Class<?> clazz = ClassGenerator.generate(method);
-            return (MethodAccessor<T, V>) clazz.newInstance();
+            // pre-generated at build time, see AccessorPregenerator. This doesn't need ASM at all.
+            // Those aren't instrumented though, so they're only used when the instrumentation is off
+            Class<?> clazz = ClassGenerator.getInstrumentation() == Instrumentation.NONE ? AccessorPregenerator.findClass(method) : null;
+            if (clazz == null) {
+                // e.g private methods with the ASMClassLoader backend. Reflection is slow, but at least it works
+                if (!ClassGenerator.canAccess(method)) {
+                    return new ReflectMethodAccessor<Object, Object>(method);
+                }
+
+                // the class is generated straight away, so any problems still show up here
+                MetaspaceBudget budget = ClassGenerator.getMetaspaceBudget();
+                if (budget != null) {
+                    BoundedMethodAccessor<?, ?> accessor = new BoundedMethodAccessor<Object, Object>(method, budget);
+                    accessor.getGenerated();
+                    return accessor;
+                }
+
+                clazz = ClassGenerator.generate(method);
+            }
+
+            return (MethodAccessor<?, ?>) clazz.newInstance();
         }
         catch (InstantiationException e) {
             throw new RuntimeException("InstantiationException", e);
@@ -75,4 +423,75 @@ public class ASMMethodAccessor {
             throw new RuntimeException("Failed to either generate class, or invoke constructor", e);
         }
     }
+
+    private static MethodAccessor<?, ?> newProfiledAccessor(ProfiledKey key) {
+        if (!ClassGenerator.canAccess(key.method)) {
+            return new ReflectMethodAccessor<Object, Object>(key.method);
+        }
+
+        try {
+            return (MethodAccessor<?, ?>) ClassGenerator.generateProfiled(key.method, key.receiverTypes).newInstance();
+        }
+        catch (InstantiationException e) {
+            throw new RuntimeException("InstantiationException", e);
+        }
+        catch (IllegalAccessException e) {
+            throw new RuntimeException("IllegalAccessException", e);
+        }
+    }
+
+    // only created if createAll/prewarmAsync (or tiered accessors) are used. The worker threads are daemons, so this never stops the JVM exiting
+    static final class GeneratorPool {
+        static final ForkJoinPool POOL = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    }
+
+    private static final class ProfiledKey {
+        private final Method method;
+        private final Class<?>[] receiverTypes;
+
+        private ProfiledKey(Method method, Class<?>[] receiverTypes) {
+            this.method = method;
+            this.receiverTypes = receiverTypes;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof ProfiledKey)) {
+                return false;
+            }
+
+            ProfiledKey key = (ProfiledKey) obj;
+            return this.method.equals(key.method) && Arrays.equals(this.receiverTypes, key.receiverTypes);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.method.hashCode() * 31 + Arrays.hashCode(this.receiverTypes);
+        }
+    }
+
+    private static final class BindingKey {
+        private final Method method;
+        private final Class<?> functionalInterface;
+
+        private BindingKey(Method method, Class<?> functionalInterface) {
+            this.method = method;
+            this.functionalInterface = functionalInterface;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof BindingKey)) {
+                return false;
+            }
+
+            BindingKey key = (BindingKey) obj;
+            return this.method.equals(key.method) && this.functionalInterface == key.functionalInterface;
+        }
+
+        @Override
+        public int hashCode() {
+            return this.method.hashCode() * 31 + this.functionalInterface.hashCode();
+        }
+    }
 }
@@ -0,0 +1,179 @@
+package reghzy.asm;
+
+import reghzy.asm.utils.ASMHelper;
+import reghzy.asm.utils.ClassGenerator;
+import reghzy.asm.utils.MethodIndex;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.ConstantCallSite;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.text.MessageFormat;
+
+/**
+ * Links method handles and invokedynamic call sites to a specific {@link MethodAccessor}
+ * <p>
+ *     Calling an accessor through the {@link MethodAccessor} interface only gets inlined while the JIT has only seen a
+ *     couple of accessor classes at that call site. A call site shared by lots of accessors (e.g in a helper method)
+ *     goes megamorphic, and every call becomes a virtual call. A linked handle has the accessor bound into it as a
+ *     constant, so when the handle itself is a constant (a static final field, or a {@link ConstantCallSite}) the JIT
+ *     inlines through the accessor to the real method, no matter what the other call sites see
+ * </p>
+ * <pre>
+ * static final MethodHandle GET_BLOCK_ID = AccessorLinker.link(getBlockIdMethod); // (World, int, int, int)int
+ * int blockId = (int) GET_BLOCK_ID.invokeExact(world, 2250, 67, -2434);
+ * </pre>
+ * <p>
+ *     Generated code can use {@link ASMHelper#visitLinkedInvoke(org.objectweb.asm.MethodVisitor, Method)}, which emits
+ *     an invokedynamic instruction that is linked by {@link AccessorLinker#bootstrap(MethodHandles.Lookup, String, MethodType, Class, MethodType)}
+ * </p>
+ */
+public final class AccessorLinker {
+    /**
+     * The internal name of this class, for the bootstrap method handle
+     */
+    public static final String INTERNAL_NAME = "reghzy/asm/AccessorLinker";
+
+    /**
+     * The name of the bootstrap method
+     */
+    public static final String BOOTSTRAP_NAME = "bootstrap";
+
+    /**
+     * The descriptor of {@link AccessorLinker#bootstrap(MethodHandles.Lookup, String, MethodType, Class, MethodType)}
+     */
+    public static final String BOOTSTRAP_DESCRIPTOR = "(Ljava/lang/invoke/MethodHandles$Lookup;Ljava/lang/String;Ljava/lang/invoke/MethodType;Ljava/lang/Class;Ljava/lang/invoke/MethodType;)Ljava/lang/invoke/CallSite;";
+
+    private AccessorLinker() {
+    }
+
+    /**
+     * The invokedynamic bootstrap method. Links the call site to the accessor of the method with the given name, that
+     * is declared in the given owner class with the given type. The call site's class must be able to access the method,
+     * like it would have to for an invokevirtual/invokestatic instruction
+     * @param caller The class that contains the call site
+     * @param name The name of the method
+     * @param type The type of the call site. For instance methods, the first parameter is the target
+     * @param owner The class that declares the method
+     * @param methodType The method's type (its return type and parameters, without the target)
+     * @return A constant call site that invokes the method's accessor
+     * @throws RuntimeException If the method doesn't exist, the caller can't access it, or the call site's type doesn't fit it
+     */
+    public static CallSite bootstrap(MethodHandles.Lookup caller, String name, MethodType type, Class<?> owner, MethodType methodType) {
+        // not ReflectHelper.findDeclaredMethod, as that makes the method accessible, which unreflect wouldn't check
+        Method method = MethodIndex.find(owner, name, methodType.parameterArray());
+        if (method == null) {
+            throw new RuntimeException(MessageFormat.format("Could not find the method {0}.{1}{2}", owner.getName(), name, methodType));
+        }
+        else if (method.getReturnType() != methodType.returnType()) {
+            throw new RuntimeException(MessageFormat.format("{0}.{1} returns {2}, not {3}", owner.getName(), name, method.getReturnType().getName(), methodType.returnType().getName()));
+        }
+
+        // the accessor may be able to invoke methods that the caller can't (e.g with the hidden class backend)
+        try {
+            caller.unreflect(method);
+        }
+        catch (IllegalAccessException e) {
+            throw new RuntimeException(MessageFormat.format("{0} can''t access {1}", caller.lookupClass().getName(), method), e);
+        }
+
+        return createCallSite(ASMMethodAccessor.create(method), method, type);
+    }
+
+    /**
+     * Creates a method handle that invokes the method through its accessor (see {@link ASMMethodAccessor#create(Method)})
+     * @param method The method
+     * @return A handle with the type {@link AccessorLinker#getCallSiteType(Method)}
+     */
+    public static MethodHandle link(Method method) {
+        return link(ASMMethodAccessor.<Object, Object>create(method), method);
+    }
+
+    /**
+     * Creates a method handle that invokes the given accessor
+     * <p>
+     *     If the accessor implements the fixed-arity accessor that fits the method (e.g {@link IntParamMethodAccessor}),
+     *     the handle calls that and nothing is boxed. Otherwise, the parameters are collected into an Object[] for the
+     *     {@link MethodAccessor} invoke methods (or for methods without parameters, it calls the invoke methods that only take the target)
+     * </p>
+     * @param accessor The accessor to invoke. This must be an accessor for the given method
+     * @param method The method that the accessor invokes
+     * @return A handle with the type {@link AccessorLinker#getCallSiteType(Method)}
+     */
+    public static MethodHandle link(MethodAccessor<?, ?> accessor, Method method) {
+        return link(accessor, method, getCallSiteType(method));
+    }
+
+    /**
+     * Creates a constant call site that invokes the given accessor
+     * @param accessor The accessor to invoke. This must be an accessor for the given method
+     * @param method The method that the accessor invokes
+     * @param type The type of the call site. This must have the same number of parameters as {@link AccessorLinker#getCallSiteType(Method)},
+     *             but they (and the return type) can be any type that they can be converted to, see {@link MethodHandle#asType(MethodType)}
+     * @return The call site
+     */
+    public static ConstantCallSite createCallSite(MethodAccessor<?, ?> accessor, Method method, MethodType type) {
+        return new ConstantCallSite(link(accessor, method, type));
+    }
+
+    /**
+     * Gets the type of a handle that invokes the given method, which is the method's type with its declaring class
+     * as the first parameter (unless it's static)
+     */
+    public static MethodType getCallSiteType(Method method) {
+        MethodType type = MethodType.methodType(method.getReturnType(), method.getParameterTypes());
+        return Modifier.isStatic(method.getModifiers()) ? type : type.insertParameterTypes(0, method.getDeclaringClass());
+    }
+
+    private static MethodHandle link(MethodAccessor<?, ?> accessor, Method method, MethodType type) {
+        Class<?>[] parameters = method.getParameterTypes();
+        boolean isStatic = Modifier.isStatic(method.getModifiers());
+        if (type.parameterCount() != parameters.length + (isStatic ? 0 : 1)) {
+            throw new RuntimeException(MessageFormat.format("The call site type {0} doesn''t fit the method {1}", type, method));
+        }
+
+        Class<?> returnType = method.getReturnType();
+        Class<?> erasedReturnType = returnType.isPrimitive() ? returnType : Object.class;
+        String invokeName = ClassGenerator.getInvokeName(returnType);
+        Class<?> fixedArityAccessor = ClassGenerator.getFixedArityAccessor(parameters);
+        MethodHandle handle;
+        try {
+            if (fixedArityAccessor != null && fixedArityAccessor.isInstance(accessor)) {
+                // the fixed-arity parameters are all the same kind (int, long, double or Object), so the
+                // call site's parameters just get widened (or cast) to that
+                Class<?> kind = parameters[0].isPrimitive() ? parameters[0] : Object.class;
+                Class<?>[] kinds = new Class<?>[parameters.length + 1];
+                kinds[0] = Object.class;
+                for (int i = 1; i < kinds.length; i++) {
+                    kinds[i] = kind;
+                }
+
+                handle = MethodHandles.publicLookup().findVirtual(fixedArityAccessor, invokeName, MethodType.methodType(erasedReturnType, kinds)).bindTo(accessor);
+            }
+            else if (parameters.length == 0) {
+                // only the invoke methods without the Object[] are generated for methods without parameters
+                handle = MethodHandles.publicLookup().findVirtual(MethodAccessor.class, invokeName, MethodType.methodType(erasedReturnType, Object.class)).bindTo(accessor);
+            }
+            else {
+                handle = MethodHandles.publicLookup().findVirtual(MethodAccessor.class, invokeName, MethodType.methodType(erasedReturnType, Object.class, Object[].class)).bindTo(accessor);
+                handle = handle.asCollector(Object[].class, parameters.length);
+            }
+        }
+        catch (NoSuchMethodException e) {
+            throw new RuntimeException(MessageFormat.format("Failed to find {0} for {1}", invokeName, method), e);
+        }
+        catch (IllegalAccessException e) {
+            throw new RuntimeException(MessageFormat.format("Failed to access {0} for {1}", invokeName, method), e);
+        }
+
+        if (isStatic) {
+            // the accessor ignores the target for static methods
+            handle = MethodHandles.insertArguments(handle, 0, (Object) null);
+        }
+
+        return handle.asType(type);
+    }
+}
@@ -0,0 +1,169 @@
+package reghzy.asm;
+
+import java.text.MessageFormat;
+
+/**
+ * A reusable set of parameters for {@link MethodAccessor}'s invoke(target, frame) methods, which don't need an Object[]
+ * or any boxing. Each parameter index has a typed slot that the generated code reads directly (with GETFIELD)
+ * <pre>
+ * ArgumentFrame frame = new ArgumentFrame(); // one per thread or call site, and reuse it
+ * frame.setInt(0, 2250).setInt(1, 67).setInt(2, -2434);
+ * int blockId = getBlockId.invokeInt(world, frame);
+ * </pre>
+ * <p>
+ *     The slot of a parameter must be set with the setter of that parameter's type (e.g {@link ArgumentFrame#setInt(int, int)}
+ *     for an int parameter, {@link ArgumentFrame#setObject(int, Object)} for any reference). Up to {@link ArgumentFrame#MAX_SLOTS}
+ *     parameters are supported; the frame invoke methods of accessors for methods with more parameters throw an {@link UnsupportedOperationException}
+ * </p>
+ * <p>
+ *     This is not thread safe. References stay in the frame until they're replaced or {@link ArgumentFrame#clear()} is called
+ * </p>
+ */
+public final class ArgumentFrame {
+    public static final int MAX_SLOTS = 8;
+
+    // these are only public so that the generated classes can read them. Use the setters
+
+    // byte, short, int, long, boolean and char parameters
+    public long p0, p1, p2, p3, p4, p5, p6, p7;
+
+    // float and double parameters
+    public double d0, d1, d2, d3, d4, d5, d6, d7;
+
+    // reference parameters
+    public Object r0, r1, r2, r3, r4, r5, r6, r7;
+
+    public ArgumentFrame setByte(int index, byte value) {
+        return setIntegral(index, value);
+    }
+
+    public ArgumentFrame setShort(int index, short value) {
+        return setIntegral(index, value);
+    }
+
+    public ArgumentFrame setInt(int index, int value) {
+        return setIntegral(index, value);
+    }
+
+    public ArgumentFrame setLong(int index, long value) {
+        return setIntegral(index, value);
+    }
+
+    public ArgumentFrame setBool(int index, boolean value) {
+        return setIntegral(index, value ? 1 : 0);
+    }
+
+    public ArgumentFrame setChar(int index, char value) {
+        return setIntegral(index, value);
+    }
+
+    public ArgumentFrame setFloat(int index, float value) {
+        return setDouble(index, value);
+    }
+
+    public ArgumentFrame setDouble(int index, double value) {
+        switch (index) {
+            case 0: this.d0 = value; break;
+            case 1: this.d1 = value; break;
+            case 2: this.d2 = value; break;
+            case 3: this.d3 = value; break;
+            case 4: this.d4 = value; break;
+            case 5: this.d5 = value; break;
+            case 6: this.d6 = value; break;
+            case 7: this.d7 = value; break;
+            default: throw invalidIndex(index);
+        }
+
+        return this;
+    }
+
+    public ArgumentFrame setObject(int index, Object value) {
+        switch (index) {
+            case 0: this.r0 = value; break;
+            case 1: this.r1 = value; break;
+            case 2: this.r2 = value; break;
+            case 3: this.r3 = value; break;
+            case 4: this.r4 = value; break;
+            case 5: this.r5 = value; break;
+            case 6: this.r6 = value; break;
+            case 7: this.r7 = value; break;
+            default: throw invalidIndex(index);
+        }
+
+        return this;
+    }
+
+    /**
+     * Clears the reference slots, so that the frame doesn't keep the objects alive
+     */
+    public ArgumentFrame clear() {
+        this.r0 = this.r1 = this.r2 = this.r3 = this.r4 = this.r5 = this.r6 = this.r7 = null;
+        return this;
+    }
+
+    private ArgumentFrame setIntegral(int index, long value) {
+        switch (index) {
+            case 0: this.p0 = value; break;
+            case 1: this.p1 = value; break;
+            case 2: this.p2 = value; break;
+            case 3: this.p3 = value; break;
+            case 4: this.p4 = value; break;
+            case 5: this.p5 = value; break;
+            case 6: this.p6 = value; break;
+            case 7: this.p7 = value; break;
+            default: throw invalidIndex(index);
+        }
+
+        return this;
+    }
+
+    /**
+     * Boxes the slots of the given parameter types into an array, for accessors that use reflection
+     */
+    Object[] toArray(Class<?>[] parameterTypes) {
+        if (parameterTypes.length > MAX_SLOTS) {
+            throw new IllegalArgumentException(MessageFormat.format("An argument frame only has {0} slots, but there are {1} parameters", MAX_SLOTS, parameterTypes.length));
+        }
+
+        long[] integrals = {this.p0, this.p1, this.p2, this.p3, this.p4, this.p5, this.p6, this.p7};
+        double[] floats = {this.d0, this.d1, this.d2, this.d3, this.d4, this.d5, this.d6, this.d7};
+        Object[] references = {this.r0, this.r1, this.r2, this.r3, this.r4, this.r5, this.r6, this.r7};
+        Object[] params = new Object[parameterTypes.length];
+        for (int i = 0; i < params.length; i++) {
+            Class<?> type = parameterTypes[i];
+            if (type == byte.class) {
+                params[i] = (byte) integrals[i];
+            }
+            else if (type == short.class) {
+                params[i] = (short) integrals[i];
+            }
+            else if (type == int.class) {
+                params[i] = (int) integrals[i];
+            }
+            else if (type == long.class) {
+                params[i] = integrals[i];
+            }
+            else if (type == boolean.class) {
+                params[i] = integrals[i] != 0;
+            }
+            else if (type == char.class) {
+                params[i] = (char) integrals[i];
+            }
+            else if (type == float.class) {
+                params[i] = (float) floats[i];
+            }
+            else if (type == double.class) {
+                params[i] = floats[i];
+            }
+            else {
+                params[i] = references[i];
+            }
+        }
+
+        return params;
+    }
+
+    private static IndexOutOfBoundsException invalidIndex(int index) {
+        return new IndexOutOfBoundsException(MessageFormat.format("Argument index {0} is out of range (there are {1} slots)", index, MAX_SLOTS));
+    }
+}
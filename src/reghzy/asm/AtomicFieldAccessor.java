@@ -0,0 +1,380 @@
+package reghzy.asm;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.text.MessageFormat;
+
+/**
+ * Atomic and ordered operations on an int, long or reference field of a class that you don't own, without locking,
+ * see {@link ASMFieldAccessor#createAtomic(Field)}
+ * <pre>
+ * AtomicFieldAccessor&lt;Plugin, Object&gt; hits = ASMFieldAccessor.createAtomic(Plugin.class, "hits");
+ * hits.getAndAddInt(plugin, 1);
+ * if (hits.compareAndSetInt(plugin, 0, 1)) { ... }
+ * </pre>
+ * <p>
+ *     These use the JVM's field offset intrinsics (sun.misc.Unsafe, which is looked up with reflection so that this
+ *     compiles without it), so e.g compareAndSetInt is a single compare-and-swap instruction once it's JIT compiled.
+ *     Unlike {@link java.util.concurrent.atomic.AtomicIntegerFieldUpdater}, the field doesn't have to be volatile, but
+ *     any code that reads or writes it normally (e.g the plugin itself) isn't ordered with these operations
+ * </p>
+ * <p>
+ *     The acquire reads are volatile reads (which are at least as strong), and the release writes are lazy sets
+ *     (which don't wait for the write to be visible to other threads). Every method checks the field's type, and that
+ *     the target is an instance of the field's class (the target is ignored for static fields)
+ * </p>
+ * @param <T> The type of class in which the field is defined in
+ * @param <V> The field's value type
+ */
+public final class AtomicFieldAccessor<T, V> {
+    private static final Object UNSAFE;
+    private static final Method OBJECT_FIELD_OFFSET;  // Unsafe.objectFieldOffset(Field)
+    private static final Method STATIC_FIELD_BASE;    // Unsafe.staticFieldBase(Field)
+    private static final Method STATIC_FIELD_OFFSET;  // Unsafe.staticFieldOffset(Field)
+
+    // these are bound to the Unsafe instance, and they're static finals so that the JIT inlines straight through to the intrinsics
+    private static final MethodHandle GET_INT_VOLATILE;
+    private static final MethodHandle PUT_INT_VOLATILE;
+    private static final MethodHandle PUT_ORDERED_INT;
+    private static final MethodHandle COMPARE_AND_SWAP_INT;
+    private static final MethodHandle GET_AND_ADD_INT;
+    private static final MethodHandle GET_LONG_VOLATILE;
+    private static final MethodHandle PUT_LONG_VOLATILE;
+    private static final MethodHandle PUT_ORDERED_LONG;
+    private static final MethodHandle COMPARE_AND_SWAP_LONG;
+    private static final MethodHandle GET_AND_ADD_LONG;
+    private static final MethodHandle GET_OBJECT_VOLATILE;
+    private static final MethodHandle PUT_OBJECT_VOLATILE;
+    private static final MethodHandle PUT_ORDERED_OBJECT;
+    private static final MethodHandle COMPARE_AND_SWAP_OBJECT;
+
+    static {
+        Object unsafe = null;
+        Method objectFieldOffset = null;
+        Method staticFieldBase = null;
+        Method staticFieldOffset = null;
+        MethodHandle[] handles = new MethodHandle[14];
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            unsafe = theUnsafe.get(null);
+            objectFieldOffset = unsafeClass.getMethod("objectFieldOffset", Field.class);
+            staticFieldBase = unsafeClass.getMethod("staticFieldBase", Field.class);
+            staticFieldOffset = unsafeClass.getMethod("staticFieldOffset", Field.class);
+            handles[0] = findHandle(unsafeClass, unsafe, "getIntVolatile", Object.class, long.class);
+            handles[1] = findHandle(unsafeClass, unsafe, "putIntVolatile", Object.class, long.class, int.class);
+            handles[2] = findHandle(unsafeClass, unsafe, "putOrderedInt", Object.class, long.class, int.class);
+            handles[3] = findHandle(unsafeClass, unsafe, "compareAndSwapInt", Object.class, long.class, int.class, int.class);
+            handles[4] = findHandle(unsafeClass, unsafe, "getAndAddInt", Object.class, long.class, int.class);
+            handles[5] = findHandle(unsafeClass, unsafe, "getLongVolatile", Object.class, long.class);
+            handles[6] = findHandle(unsafeClass, unsafe, "putLongVolatile", Object.class, long.class, long.class);
+            handles[7] = findHandle(unsafeClass, unsafe, "putOrderedLong", Object.class, long.class, long.class);
+            handles[8] = findHandle(unsafeClass, unsafe, "compareAndSwapLong", Object.class, long.class, long.class, long.class);
+            handles[9] = findHandle(unsafeClass, unsafe, "getAndAddLong", Object.class, long.class, long.class);
+            handles[10] = findHandle(unsafeClass, unsafe, "getObjectVolatile", Object.class, long.class);
+            handles[11] = findHandle(unsafeClass, unsafe, "putObjectVolatile", Object.class, long.class, Object.class);
+            handles[12] = findHandle(unsafeClass, unsafe, "putOrderedObject", Object.class, long.class, Object.class);
+            handles[13] = findHandle(unsafeClass, unsafe, "compareAndSwapObject", Object.class, long.class, Object.class, Object.class);
+        }
+        catch (Throwable e) {
+            // not available on this JVM (or it's locked down), so isSupported() is false
+            unsafe = null;
+        }
+
+        UNSAFE = unsafe;
+        OBJECT_FIELD_OFFSET = objectFieldOffset;
+        STATIC_FIELD_BASE = staticFieldBase;
+        STATIC_FIELD_OFFSET = staticFieldOffset;
+        GET_INT_VOLATILE = handles[0];
+        PUT_INT_VOLATILE = handles[1];
+        PUT_ORDERED_INT = handles[2];
+        COMPARE_AND_SWAP_INT = handles[3];
+        GET_AND_ADD_INT = handles[4];
+        GET_LONG_VOLATILE = handles[5];
+        PUT_LONG_VOLATILE = handles[6];
+        PUT_ORDERED_LONG = handles[7];
+        COMPARE_AND_SWAP_LONG = handles[8];
+        GET_AND_ADD_LONG = handles[9];
+        GET_OBJECT_VOLATILE = handles[10];
+        PUT_OBJECT_VOLATILE = handles[11];
+        PUT_ORDERED_OBJECT = handles[12];
+        COMPARE_AND_SWAP_OBJECT = handles[13];
+    }
+
+    private final Field field;
+    private final Class<?> declaringClass;
+    private final Class<?> type;
+    private final Object staticBase; // null for instance fields
+    private final long offset;
+
+    AtomicFieldAccessor(Field field) {
+        if (!isSupported()) {
+            throw new UnsupportedOperationException("Atomic field accessors need sun.misc.Unsafe, which isn't available");
+        }
+
+        Class<?> type = field.getType();
+        if (type != int.class && type != long.class && type.isPrimitive()) {
+            throw new RuntimeException(MessageFormat.format("The field {0}.{1} is a {2}, only int, long and reference fields can be accessed atomically", field.getDeclaringClass().getName(), field.getName(), type.getName()));
+        }
+
+        if (Modifier.isFinal(field.getModifiers())) {
+            throw new RuntimeException(MessageFormat.format("The field {0}.{1} is final", field.getDeclaringClass().getName(), field.getName()));
+        }
+
+        this.field = field;
+        this.declaringClass = field.getDeclaringClass();
+        this.type = type;
+        try {
+            if (Modifier.isStatic(field.getModifiers())) {
+                // the static base is just memory, so reading it doesn't initialise the class like a GETSTATIC would
+                Class.forName(this.declaringClass.getName(), true, this.declaringClass.getClassLoader());
+                this.staticBase = STATIC_FIELD_BASE.invoke(UNSAFE, field);
+                this.offset = (Long) STATIC_FIELD_OFFSET.invoke(UNSAFE, field);
+            }
+            else {
+                this.staticBase = null;
+                this.offset = (Long) OBJECT_FIELD_OFFSET.invoke(UNSAFE, field);
+            }
+        }
+        catch (Exception e) {
+            // e.g fields of records and hidden classes don't have offsets
+            throw new RuntimeException(MessageFormat.format("Failed to get the offset of the field {0}.{1}", field.getDeclaringClass().getName(), field.getName()), e);
+        }
+    }
+
+    /**
+     * Whether atomic field accessors can be created on this JVM
+     */
+    public static boolean isSupported() {
+        return UNSAFE != null;
+    }
+
+    public Field getField() {
+        return this.field;
+    }
+
+    public int getIntVolatile(T target) {
+        Object base = getBase(target, int.class);
+        try {
+            return (int) GET_INT_VOLATILE.invokeExact(base, this.offset);
+        }
+        catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    public int getIntAcquire(T target) {
+        return getIntVolatile(target);
+    }
+
+    public void setIntVolatile(T target, int value) {
+        Object base = getBase(target, int.class);
+        try {
+            PUT_INT_VOLATILE.invokeExact(base, this.offset, value);
+        }
+        catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    public void setIntRelease(T target, int value) {
+        Object base = getBase(target, int.class);
+        try {
+            PUT_ORDERED_INT.invokeExact(base, this.offset, value);
+        }
+        catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    /**
+     * Sets the field to the given value if it's currently the expected value, as one atomic operation
+     * @return True if it was set, false if the field wasn't the expected value
+     */
+    public boolean compareAndSetInt(T target, int expected, int value) {
+        Object base = getBase(target, int.class);
+        try {
+            return (boolean) COMPARE_AND_SWAP_INT.invokeExact(base, this.offset, expected, value);
+        }
+        catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    /**
+     * Adds the given value to the field, as one atomic operation
+     * @return The field's previous value
+     */
+    public int getAndAddInt(T target, int delta) {
+        Object base = getBase(target, int.class);
+        try {
+            return (int) GET_AND_ADD_INT.invokeExact(base, this.offset, delta);
+        }
+        catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    public long getLongVolatile(T target) {
+        Object base = getBase(target, long.class);
+        try {
+            return (long) GET_LONG_VOLATILE.invokeExact(base, this.offset);
+        }
+        catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    public long getLongAcquire(T target) {
+        return getLongVolatile(target);
+    }
+
+    public void setLongVolatile(T target, long value) {
+        Object base = getBase(target, long.class);
+        try {
+            PUT_LONG_VOLATILE.invokeExact(base, this.offset, value);
+        }
+        catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    public void setLongRelease(T target, long value) {
+        Object base = getBase(target, long.class);
+        try {
+            PUT_ORDERED_LONG.invokeExact(base, this.offset, value);
+        }
+        catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    /**
+     * Sets the field to the given value if it's currently the expected value, as one atomic operation
+     * @return True if it was set, false if the field wasn't the expected value
+     */
+    public boolean compareAndSetLong(T target, long expected, long value) {
+        Object base = getBase(target, long.class);
+        try {
+            return (boolean) COMPARE_AND_SWAP_LONG.invokeExact(base, this.offset, expected, value);
+        }
+        catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    /**
+     * Adds the given value to the field, as one atomic operation
+     * @return The field's previous value
+     */
+    public long getAndAddLong(T target, long delta) {
+        Object base = getBase(target, long.class);
+        try {
+            return (long) GET_AND_ADD_LONG.invokeExact(base, this.offset, delta);
+        }
+        catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    public V getRefVolatile(T target) {
+        Object base = getBase(target, Object.class);
+        try {
+            return (V) (Object) GET_OBJECT_VOLATILE.invokeExact(base, this.offset);
+        }
+        catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    public V getRefAcquire(T target) {
+        return getRefVolatile(target);
+    }
+
+    public void setRefVolatile(T target, V value) {
+        Object base = getBase(target, Object.class);
+        checkValue(value);
+        try {
+            PUT_OBJECT_VOLATILE.invokeExact(base, this.offset, (Object) value);
+        }
+        catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    public void setRefRelease(T target, V value) {
+        Object base = getBase(target, Object.class);
+        checkValue(value);
+        try {
+            PUT_ORDERED_OBJECT.invokeExact(base, this.offset, (Object) value);
+        }
+        catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    /**
+     * Sets the field to the given value if it's currently the expected reference (compared with ==, not equals), as one atomic operation
+     * @return True if it was set, false if the field wasn't the expected reference
+     */
+    public boolean compareAndSetRef(T target, V expected, V value) {
+        Object base = getBase(target, Object.class);
+        checkValue(value);
+        try {
+            return (boolean) COMPARE_AND_SWAP_OBJECT.invokeExact(base, this.offset, (Object) expected, (Object) value);
+        }
+        catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return MessageFormat.format("AtomicFieldAccessor({0}.{1})", this.declaringClass.getName(), this.field.getName());
+    }
+
+    // the object that the offset is relative to. The raw offset must never be used with the wrong kind of field
+    // or an object of the wrong class, as that reads or writes some other part of the heap
+    private Object getBase(Object target, Class<?> kind) {
+        if (kind == Object.class ? this.type.isPrimitive() : this.type != kind) {
+            throw new UnsupportedOperationException(MessageFormat.format("The field {0}.{1} is a {2}, not {3}", this.declaringClass.getName(), this.field.getName(), this.type.getName(), kind == Object.class ? "a reference" : kind.getName()));
+        }
+
+        if (this.staticBase != null) {
+            return this.staticBase;
+        }
+        else if (target == null) {
+            throw new NullPointerException(MessageFormat.format("The target for the instance field {0}.{1} is null", this.declaringClass.getName(), this.field.getName()));
+        }
+        else if (!this.declaringClass.isInstance(target)) {
+            throw new ClassCastException(MessageFormat.format("{0} is not an instance of {1}", target.getClass().getName(), this.declaringClass.getName()));
+        }
+
+        return target;
+    }
+
+    private void checkValue(Object value) {
+        if (value != null && !this.type.isInstance(value)) {
+            throw new ClassCastException(MessageFormat.format("{0} can''t be stored in the field {1}.{2} ({3})", value.getClass().getName(), this.declaringClass.getName(), this.field.getName(), this.type.getName()));
+        }
+    }
+
+    private static MethodHandle findHandle(Class<?> unsafeClass, Object unsafe, String name, Class<?>... parameterTypes) throws Exception {
+        return MethodHandles.lookup().unreflect(unsafeClass.getMethod(name, parameterTypes)).bindTo(unsafe);
+    }
+
+    private static RuntimeException rethrow(Throwable e) {
+        if (e instanceof RuntimeException) {
+            return (RuntimeException) e;
+        }
+        else if (e instanceof Error) {
+            throw (Error) e;
+        }
+
+        return new RuntimeException(e);
+    }
+}
@@ -0,0 +1,318 @@
+package reghzy.asm;
+
+import reghzy.asm.utils.AccessorCache;
+import reghzy.asm.utils.ClassGenerator;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Copies the properties of one class into another, using a single generated class that directly calls each getter
+ * (or reads each field) and the matching setter (or writes the field). Primitives are copied without boxing
+ * <pre>
+ * BeanMapper&lt;PlayerDTO, Player&gt; mapper = BeanMapper.create(PlayerDTO.class, Player.class);
+ * mapper.map(dto, player);
+ * </pre>
+ * <p>
+ *     A property is a public getter (getX(), or isX() for booleans) or public field in the source class, and a public
+ *     setter (setX(value)) or public non-final field with the same name in the destination class. Getters and setters are
+ *     used over fields with the same name. The types must be the same, or the destination type must be a super type of
+ *     the source type, or there must be a {@link PropertyConverter} for the exact types. Properties that don't match are
+ *     not copied; see {@link BeanMapper#getProperties()}
+ * </p>
+ * <p>
+ *     Both classes must be public. The generated class is always defined in an ASMClassLoader (like event dispatchers),
+ *     as it can't be a nestmate of both classes
+ * </p>
+ * @param <S> The source type
+ * @param <D> The destination type
+ */
+public abstract class BeanMapper<S, D> {
+    private static final AccessorCache<MapperKey, MapperPlan> CACHE = new AccessorCache<MapperKey, MapperPlan>() {
+        @Override
+        protected Class<?> getOwner(MapperKey key) {
+            // the destination, or a converted type, may be from a shorter lived loader than the source
+            Class<?>[] others = new Class<?>[key.conversions.length + 1];
+            others[0] = key.destinationType;
+            System.arraycopy(key.conversions, 0, others, 1, key.conversions.length);
+            return getShortestLived(key.sourceType, others);
+        }
+
+        @Override
+        protected MapperPlan generate(MapperKey key) {
+            return newPlan(key);
+        }
+    };
+
+    private final Class<S> sourceType;
+    private final Class<D> destinationType;
+    private final String[] properties;
+
+    // the converter of each property (by index), or null if it isn't converted. Used by the generated code
+    protected final PropertyConverter<Object, Object>[] converters;
+
+    protected BeanMapper(Class<S> sourceType, Class<D> destinationType, String[] properties, PropertyConverter<Object, Object>[] converters) {
+        this.sourceType = sourceType;
+        this.destinationType = destinationType;
+        this.properties = properties;
+        this.converters = converters;
+    }
+
+    /**
+     * Creates (or gets the cached class of) a mapper from the given source class to the destination class
+     * @param sourceType The class to copy properties from
+     * @param destinationType The class to copy properties into
+     * @param converters Converters for properties with the same name but different types. Only 1 per source/destination type pair
+     * @param <S> The source type
+     * @param <D> The destination type
+     * @return The mapper
+     * @throws RuntimeException If either class isn't public, or there are multiple converters for the same types
+     */
+    public static <S, D> BeanMapper<S, D> create(Class<S> sourceType, Class<D> destinationType, PropertyConverter<?, ?>... converters) {
+        // the generated class only depends on which types are converted, so mappers with different converter
+        // instances (of the same types) share the same class
+        Class<?>[] conversions = new Class<?>[converters.length * 2];
+        for (int i = 0; i < converters.length; i++) {
+            conversions[i * 2] = converters[i].getSourceType();
+            conversions[i * 2 + 1] = converters[i].getDestinationType();
+            for (int j = 0; j < i; j++) {
+                if (conversions[j * 2] == conversions[i * 2] && conversions[j * 2 + 1] == conversions[i * 2 + 1]) {
+                    throw new RuntimeException(MessageFormat.format("There are multiple converters from {0} to {1}", conversions[i * 2].getName(), conversions[i * 2 + 1].getName()));
+                }
+            }
+        }
+
+        MapperPlan plan = CACHE.get(new MapperKey(sourceType, destinationType, conversions));
+        PropertyConverter<?, ?>[] propertyConverters = new PropertyConverter<?, ?>[plan.properties.length];
+        for (int i = 0; i < propertyConverters.length; i++) {
+            if (plan.converterIndices[i] != -1) {
+                propertyConverters[i] = converters[plan.converterIndices[i]];
+            }
+        }
+
+        try {
+            return (BeanMapper<S, D>) plan.mapperClass.getConstructor(Class.class, Class.class, String[].class, PropertyConverter[].class)
+                                                     .newInstance(sourceType, destinationType, plan.properties, propertyConverters);
+        }
+        catch (Throwable e) {
+            throw new RuntimeException("Failed to create the bean mapper", e);
+        }
+    }
+
+    /**
+     * Copies every property of the source into the destination
+     */
+    public abstract void map(S source, D destination);
+
+    public Class<S> getSourceType() {
+        return this.sourceType;
+    }
+
+    public Class<D> getDestinationType() {
+        return this.destinationType;
+    }
+
+    /**
+     * The names of the properties that are copied, in the order that they're copied
+     */
+    public List<String> getProperties() {
+        return Collections.unmodifiableList(Arrays.asList(this.properties));
+    }
+
+    @Override
+    public String toString() {
+        return MessageFormat.format("BeanMapper({0} -> {1}, {2} properties)", this.sourceType.getName(), this.destinationType.getName(), this.properties.length);
+    }
+
+    private static MapperPlan newPlan(MapperKey key) {
+        if (!Modifier.isPublic(key.sourceType.getModifiers()) || !Modifier.isPublic(key.destinationType.getModifiers())) {
+            throw new RuntimeException(MessageFormat.format("Cannot map {0} to {1}, both classes must be public", key.sourceType.getName(), key.destinationType.getName()));
+        }
+
+        Map<String, Member> readers = getReaders(key.sourceType);
+        Map<String, List<Member>> writers = getWriters(key.destinationType);
+        List<String> properties = new ArrayList<String>();
+        List<Member> propertyReaders = new ArrayList<Member>();
+        List<Member> propertyWriters = new ArrayList<Member>();
+        List<Integer> converterIndices = new ArrayList<Integer>();
+        for (Map.Entry<String, Member> entry : readers.entrySet()) {
+            List<Member> candidates = writers.get(entry.getKey());
+            if (candidates == null) {
+                continue;
+            }
+
+            // same type, then a converter, then a super type
+            Class<?> type = getType(entry.getValue(), false);
+            Member writer = null;
+            int converter = -1;
+            for (int pass = 0; pass < 3 && writer == null; pass++) {
+                for (Member candidate : candidates) {
+                    Class<?> writerType = getType(candidate, true);
+                    if (pass == 0 && writerType == type) {
+                        writer = candidate;
+                    }
+                    else if (pass == 1 && (converter = findConverter(key.conversions, type, writerType)) != -1) {
+                        writer = candidate;
+                    }
+                    else if (pass == 2 && !type.isPrimitive() && writerType.isAssignableFrom(type)) {
+                        writer = candidate;
+                    }
+
+                    if (writer != null) {
+                        break;
+                    }
+                }
+            }
+
+            if (writer != null) {
+                properties.add(entry.getKey());
+                propertyReaders.add(entry.getValue());
+                propertyWriters.add(writer);
+                converterIndices.add(converter);
+            }
+        }
+
+        int[] indices = new int[converterIndices.size()];
+        boolean[] converted = new boolean[indices.length];
+        for (int i = 0; i < indices.length; i++) {
+            indices[i] = converterIndices.get(i);
+            converted[i] = indices[i] != -1;
+        }
+
+        Class<?> clazz = ClassGenerator.generateBeanMapper(key.sourceType, key.destinationType,
+                                                           propertyReaders.toArray(new Member[propertyReaders.size()]),
+                                                           propertyWriters.toArray(new Member[propertyWriters.size()]),
+                                                           converted);
+        return new MapperPlan(clazz, properties.toArray(new String[properties.size()]), indices);
+    }
+
+    // property name -> getter or field. Sorted by name, so the order is always the same
+    private static Map<String, Member> getReaders(Class<?> type) {
+        Map<String, Member> readers = new TreeMap<String, Member>();
+        for (Field field : type.getFields()) {
+            if (!Modifier.isStatic(field.getModifiers())) {
+                readers.put(field.getName(), field);
+            }
+        }
+
+        for (Method method : type.getMethods()) {
+            if (Modifier.isStatic(method.getModifiers()) || method.isBridge() || method.getParameterTypes().length != 0 || method.getReturnType() == void.class) {
+                continue;
+            }
+
+            String name = method.getName();
+            if (name.startsWith("get") && name.length() > 3 && !name.equals("getClass")) {
+                readers.put(getPropertyName(name.substring(3)), method);
+            }
+            else if (name.startsWith("is") && name.length() > 2 && method.getReturnType() == boolean.class) {
+                readers.put(getPropertyName(name.substring(2)), method);
+            }
+        }
+
+        return readers;
+    }
+
+    // property name -> setters (there may be overloads) or field
+    private static Map<String, List<Member>> getWriters(Class<?> type) {
+        Map<String, List<Member>> writers = new HashMap<String, List<Member>>();
+        for (Method method : type.getMethods()) {
+            String name = method.getName();
+            if (!Modifier.isStatic(method.getModifiers()) && !method.isBridge() && method.getParameterTypes().length == 1 && name.startsWith("set") && name.length() > 3) {
+                getOrCreate(writers, getPropertyName(name.substring(3))).add(method);
+            }
+        }
+
+        for (Field field : type.getFields()) {
+            if (!Modifier.isStatic(field.getModifiers()) && !Modifier.isFinal(field.getModifiers()) && !writers.containsKey(field.getName())) {
+                getOrCreate(writers, field.getName()).add(field);
+            }
+        }
+
+        return writers;
+    }
+
+    private static List<Member> getOrCreate(Map<String, List<Member>> map, String name) {
+        List<Member> list = map.get(name);
+        if (list == null) {
+            map.put(name, list = new ArrayList<Member>());
+        }
+
+        return list;
+    }
+
+    // like the java beans' decapitalize: Name -> name, but URL stays as URL
+    private static String getPropertyName(String name) {
+        if (name.length() > 1 && Character.isUpperCase(name.charAt(0)) && Character.isUpperCase(name.charAt(1))) {
+            return name;
+        }
+
+        return Character.toLowerCase(name.charAt(0)) + name.substring(1);
+    }
+
+    private static Class<?> getType(Member member, boolean isWriter) {
+        if (member instanceof Field) {
+            return ((Field) member).getType();
+        }
+
+        return isWriter ? ((Method) member).getParameterTypes()[0] : ((Method) member).getReturnType();
+    }
+
+    private static int findConverter(Class<?>[] conversions, Class<?> sourceType, Class<?> destinationType) {
+        for (int i = 0; i < conversions.length; i += 2) {
+            if (conversions[i] == sourceType && conversions[i + 1] == destinationType) {
+                return i / 2;
+            }
+        }
+
+        return -1;
+    }
+
+    private static final class MapperPlan {
+        private final Class<?> mapperClass;
+        private final String[] properties;
+        private final int[] converterIndices; // index into the converters given to create(), or -1
+
+        private MapperPlan(Class<?> mapperClass, String[] properties, int[] converterIndices) {
+            this.mapperClass = mapperClass;
+            this.properties = properties;
+            this.converterIndices = converterIndices;
+        }
+    }
+
+    private static final class MapperKey {
+        private final Class<?> sourceType;
+        private final Class<?> destinationType;
+        private final Class<?>[] conversions; // source type, destination type, source type, ...
+
+        private MapperKey(Class<?> sourceType, Class<?> destinationType, Class<?>[] conversions) {
+            this.sourceType = sourceType;
+            this.destinationType = destinationType;
+            this.conversions = conversions;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof MapperKey)) {
+                return false;
+            }
+
+            MapperKey key = (MapperKey) obj;
+            return this.sourceType == key.sourceType && this.destinationType == key.destinationType && Arrays.equals(this.conversions, key.conversions);
+        }
+
+        @Override
+        public int hashCode() {
+            return (this.sourceType.hashCode() * 31 + this.destinationType.hashCode()) * 31 + Arrays.hashCode(this.conversions);
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package reghzy.asm;
+
+import reghzy.asm.utils.ClassGenerator;
+import reghzy.asm.utils.MetaspaceBudget;
+
+import java.lang.reflect.Method;
+import java.text.MessageFormat;
+
+/**
+ * A method accessor whose generated class is loaded in a {@link MetaspaceBudget}'s loader group, which is what
+ * {@link ASMMethodAccessor#create(Method)} returns when a budget is {@link ClassGenerator#setMetaspaceBudget(MetaspaceBudget) set}
+ * <p>
+ *     When its group is evicted, this drops the generated accessor (so the group's loader can be unloaded) and generates
+ *     it again the next time it's invoked. Otherwise, it just passes each invocation to the generated accessor
+ * </p>
+ * @param <T> The type of class in which the method is defined in
+ * @param <V> The method's return type
+ */
+public final class BoundedMethodAccessor<T, V> extends MetaspaceBudget.Resident implements MethodAccessor<T, V> {
+    private final Method method;
+    private final MetaspaceBudget budget;
+    private volatile MethodAccessor<T, V> delegate;
+
+    BoundedMethodAccessor(Method method, MetaspaceBudget budget) {
+        this.method = method;
+        this.budget = budget;
+    }
+
+    public Method getMethod() {
+        return this.method;
+    }
+
+    public MetaspaceBudget getBudget() {
+        return this.budget;
+    }
+
+    /**
+     * Whether the generated class is currently loaded (it hasn't been evicted, or it has been regenerated since)
+     */
+    public boolean isResident() {
+        return this.delegate != null;
+    }
+
+    /**
+     * Gets the generated accessor, generating it again if it was evicted. It isn't evicted while it's referenced, so this
+     * shouldn't be kept for long
+     */
+    public MethodAccessor<T, V> getGenerated() {
+        return next();
+    }
+
+    @Override
+    protected void onEvicted() {
+        this.delegate = null;
+    }
+
+    private MethodAccessor<T, V> next() {
+        MethodAccessor<T, V> delegate = this.delegate;
+        if (delegate == null) {
+            delegate = load();
+        }
+
+        touch();
+        return delegate;
+    }
+
+    private synchronized MethodAccessor<T, V> load() {
+        MethodAccessor<T, V> delegate = this.delegate;
+        if (delegate != null) {
+            return delegate;
+        }
+
+        int evictions = getEvictions();
+        try {
+            delegate = (MethodAccessor<T, V>) ClassGenerator.generate(this.method, this.budget, this).newInstance();
+        }
+        catch (InstantiationException e) {
+            throw new RuntimeException("InstantiationException", e);
+        }
+        catch (IllegalAccessException e) {
+            throw new RuntimeException("IllegalAccessException", e);
+        }
+
+        // if the group was already evicted (the budget is tiny), it's only used for this invocation
+        if (getEvictions() == evictions) {
+            this.delegate = delegate;
+        }
+
+        return delegate;
+    }
+
+    @Override
+    public V invoke(T target) {
+        return next().invoke(target);
+    }
+
+    @Override
+    public V invoke(T target, Object... params) {
+        return next().invoke(target, params);
+    }
+
+    @Override
+    public V invoke(T target, ArgumentFrame frame) {
+        return next().invoke(target, frame);
+    }
+
+    @Override
+    public byte invokeByte(T target) {
+        return next().invokeByte(target);
+    }
+
+    @Override
+    public byte invokeByte(T target, Object... params) {
+        return next().invokeByte(target, params);
+    }
+
+    @Override
+    public byte invokeByte(T target, ArgumentFrame frame) {
+        return next().invokeByte(target, frame);
+    }
+
+    @Override
+    public short invokeShort(T target) {
+        return next().invokeShort(target);
+    }
+
+    @Override
+    public short invokeShort(T target, Object... params) {
+        return next().invokeShort(target, params);
+    }
+
+    @Override
+    public short invokeShort(T target, ArgumentFrame frame) {
+        return next().invokeShort(target, frame);
+    }
+
+    @Override
+    public int invokeInt(T target) {
+        return next().invokeInt(target);
+    }
+
+    @Override
+    public int invokeInt(T target, Object... params) {
+        return next().invokeInt(target, params);
+    }
+
+    @Override
+    public int invokeInt(T target, ArgumentFrame frame) {
+        return next().invokeInt(target, frame);
+    }
+
+    @Override
+    public long invokeLong(T target) {
+        return next().invokeLong(target);
+    }
+
+    @Override
+    public long invokeLong(T target, Object... params) {
+        return next().invokeLong(target, params);
+    }
+
+    @Override
+    public long invokeLong(T target, ArgumentFrame frame) {
+        return next().invokeLong(target, frame);
+    }
+
+    @Override
+    public float invokeFloat(T target) {
+        return next().invokeFloat(target);
+    }
+
+    @Override
+    public float invokeFloat(T target, Object... params) {
+        return next().invokeFloat(target, params);
+    }
+
+    @Override
+    public float invokeFloat(T target, ArgumentFrame frame) {
+        return next().invokeFloat(target, frame);
+    }
+
+    @Override
+    public double invokeDouble(T target) {
+        return next().invokeDouble(target);
+    }
+
+    @Override
+    public double invokeDouble(T target, Object... params) {
+        return next().invokeDouble(target, params);
+    }
+
+    @Override
+    public double invokeDouble(T target, ArgumentFrame frame) {
+        return next().invokeDouble(target, frame);
+    }
+
+    @Override
+    public boolean invokeBool(T target) {
+        return next().invokeBool(target);
+    }
+
+    @Override
+    public boolean invokeBool(T target, Object... params) {
+        return next().invokeBool(target, params);
+    }
+
+    @Override
+    public boolean invokeBool(T target, ArgumentFrame frame) {
+        return next().invokeBool(target, frame);
+    }
+
+    @Override
+    public char invokeChar(T target) {
+        return next().invokeChar(target);
+    }
+
+    @Override
+    public char invokeChar(T target, Object... params) {
+        return next().invokeChar(target, params);
+    }
+
+    @Override
+    public char invokeChar(T target, ArgumentFrame frame) {
+        return next().invokeChar(target, frame);
+    }
+
+    @Override
+    public void invokeVoid(T target) {
+        next().invokeVoid(target);
+    }
+
+    @Override
+    public void invokeVoid(T target, Object... params) {
+        next().invokeVoid(target, params);
+    }
+
+    @Override
+    public void invokeVoid(T target, ArgumentFrame frame) {
+        next().invokeVoid(target, frame);
+    }
+
+    @Override
+    public String toString() {
+        return MessageFormat.format("BoundedMethodAccessor({0}.{1}, {2})", this.method.getDeclaringClass().getName(), this.method.getName(), isResident() ? "resident" : "evicted");
+    }
+}
@@ -0,0 +1,295 @@
+package reghzy.asm;
+
+import org.objectweb.asm.Type;
+import reghzy.asm.utils.AccessorCache;
+import reghzy.asm.utils.ClassGenerator;
+import reghzy.asm.utils.GeneratorBackend;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Writes the fields of an object straight into a {@link ByteBuffer} (and reads them back), using a generated class that
+ * calls putInt/getInt/etc. for each field directly. Primitive fields are never boxed
+ * <pre>
+ * BufferCodec&lt;Entity&gt; codec = BufferCodec.create(Entity.class);
+ * codec.write(entity, buffer);
+ * buffer.flip();
+ * Entity copy = codec.read(buffer);
+ * </pre>
+ * <p>
+ *     The fields are every non-static, non-transient field of the class and its super classes (super classes first, then
+ *     by name). Supported types are primitives, {@link String}, byte[] and enums; anything else must be transient.
+ *     With the {@link GeneratorBackend#CLASS_LOADER} backend the fields must be public, and with {@link GeneratorBackend#HIDDEN_CLASS}
+ *     they must be declared in the class itself (or be public). Fields can't be final, as they couldn't be read back
+ * </p>
+ * <p>
+ *     Every write starts with the {@link BufferCodec#getSchemaHash() schema hash}, a hash of the fields' names and types (and enums' constants),
+ *     and reading checks it, so data written by a different version of the class is detected rather than read as garbage.
+ *     The buffer's byte order is used as it is
+ * </p>
+ * @param <T> The class type
+ */
+public abstract class BufferCodec<T> {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final AccessorCache<Class<?>, BufferCodec<?>> CACHE = new AccessorCache<Class<?>, BufferCodec<?>>() {
+        @Override
+        protected Class<?> getOwner(Class<?> key) {
+            return key;
+        }
+
+        @Override
+        protected BufferCodec<?> generate(Class<?> key) {
+            return newCodec(key);
+        }
+    };
+
+    private static final ClassValue<Object[]> ENUM_CONSTANTS = new ClassValue<Object[]>() {
+        @Override
+        protected Object[] computeValue(Class<?> type) {
+            return type.getEnumConstants();
+        }
+    };
+
+    private static final Comparator<Field> FIELD_ORDER = new Comparator<Field>() {
+        @Override
+        public int compare(Field a, Field b) {
+            return a.getName().compareTo(b.getName());
+        }
+    };
+
+    private final Class<T> type;
+    private final Field[] fields;
+    private final long schemaHash;
+
+    protected BufferCodec(Class<T> type, Field[] fields, long schemaHash) {
+        this.type = type;
+        this.fields = fields;
+        this.schemaHash = schemaHash;
+    }
+
+    /**
+     * Creates (or gets the cached) codec for the given class
+     * @param type The class
+     * @param <T> The class type
+     * @return The codec
+     * @throws RuntimeException If a field's type isn't supported, or it can't be accessed or written
+     */
+    public static <T> BufferCodec<T> create(Class<T> type) {
+        return (BufferCodec<T>) CACHE.get(type);
+    }
+
+    /**
+     * Writes the schema hash and then every field of the object into the buffer
+     * @throws java.nio.BufferOverflowException If there isn't enough space in the buffer
+     */
+    public abstract void write(T object, ByteBuffer buffer);
+
+    /**
+     * Reads the schema hash and every field from the buffer into the given object
+     * @throws RuntimeException If the schema hash doesn't match, or the data has an invalid length or enum ordinal
+     * @throws java.nio.BufferUnderflowException If the buffer ends before all of the fields were read
+     */
+    public abstract void read(ByteBuffer buffer, T object);
+
+    /**
+     * Creates a new instance (with the class' no-args constructor) and reads the schema hash and every field from the buffer into it
+     * @throws RuntimeException If the schema hash doesn't match, or the data has an invalid length or enum ordinal
+     * @throws UnsupportedOperationException If the class doesn't have a no-args constructor that can be accessed
+     */
+    public T read(ByteBuffer buffer) {
+        throw new UnsupportedOperationException(MessageFormat.format("{0} doesn''t have a no-args constructor that can be accessed; use read(ByteBuffer, T)", this.type.getName()));
+    }
+
+    public Class<T> getType() {
+        return this.type;
+    }
+
+    /**
+     * The fields, in the order they're written
+     */
+    public List<Field> getFields() {
+        return Collections.unmodifiableList(Arrays.asList(this.fields));
+    }
+
+    /**
+     * A hash of the fields' names and types (in order), which is written before the fields
+     */
+    public long getSchemaHash() {
+        return this.schemaHash;
+    }
+
+    @Override
+    public String toString() {
+        return MessageFormat.format("BufferCodec({0}, {1} fields, schema {2})", this.type.getName(), this.fields.length, Long.toHexString(this.schemaHash));
+    }
+
+    // the rest are used by the generated code
+
+    protected void checkSchema(ByteBuffer buffer) {
+        long hash = buffer.getLong();
+        if (hash != this.schemaHash) {
+            throw new RuntimeException(MessageFormat.format("Schema mismatch for {0}; expected {1} but the data has {2}. It was written by a different version of the class",
+                                                            this.type.getName(), Long.toHexString(this.schemaHash), Long.toHexString(hash)));
+        }
+    }
+
+    // length (-1 for null) then the UTF-8 bytes
+    protected static void writeString(ByteBuffer buffer, String value) {
+        writeBytes(buffer, value == null ? null : value.getBytes(UTF_8));
+    }
+
+    protected static String readString(ByteBuffer buffer) {
+        byte[] bytes = readBytes(buffer);
+        return bytes == null ? null : new String(bytes, UTF_8);
+    }
+
+    // length (-1 for null) then the bytes
+    protected static void writeBytes(ByteBuffer buffer, byte[] value) {
+        if (value == null) {
+            buffer.putInt(-1);
+        }
+        else {
+            buffer.putInt(value.length);
+            buffer.put(value);
+        }
+    }
+
+    protected static byte[] readBytes(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length == -1) {
+            return null;
+        }
+        else if (length < -1 || length > buffer.remaining()) {
+            throw new RuntimeException(MessageFormat.format("Invalid length {0} at position {1}; only {2} bytes remain", Integer.toString(length), Integer.toString(buffer.position() - 4), Integer.toString(buffer.remaining())));
+        }
+
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    // the ordinal, or -1 for null
+    protected static void writeEnum(ByteBuffer buffer, Enum<?> value) {
+        buffer.putInt(value == null ? -1 : value.ordinal());
+    }
+
+    protected static Object readEnum(ByteBuffer buffer, Class<?> enumType) {
+        int ordinal = buffer.getInt();
+        if (ordinal == -1) {
+            return null;
+        }
+
+        Object[] constants = ENUM_CONSTANTS.get(enumType);
+        if (ordinal < 0 || ordinal >= constants.length) {
+            throw new RuntimeException(MessageFormat.format("Invalid ordinal {0} for {1} at position {2}; it only has {3} constants", Integer.toString(ordinal), enumType.getName(), Integer.toString(buffer.position() - 4), constants.length));
+        }
+
+        return constants[ordinal];
+    }
+
+    private static BufferCodec<?> newCodec(Class<?> type) {
+        Field[] fields = getFields(type);
+        long schemaHash = getSchemaHash(fields);
+        Class<?> clazz = ClassGenerator.generateBufferCodec(type, fields, schemaHash, hasConstructor(type));
+        try {
+            return (BufferCodec<?>) clazz.getConstructor(Class.class, Field[].class, long.class).newInstance(type, fields, schemaHash);
+        }
+        catch (Throwable e) {
+            throw new RuntimeException("Failed to either generate class, or invoke constructor", e);
+        }
+    }
+
+    private static Field[] getFields(Class<?> type) {
+        GeneratorBackend backend = ClassGenerator.getBackend();
+        List<Class<?>> hierarchy = new ArrayList<Class<?>>();
+        for (Class<?> clazz = type; clazz != null && clazz != Object.class; clazz = clazz.getSuperclass()) {
+            hierarchy.add(0, clazz);
+        }
+
+        List<Field> fields = new ArrayList<Field>();
+        for (Class<?> clazz : hierarchy) {
+            Field[] declared = clazz.getDeclaredFields();
+            Arrays.sort(declared, FIELD_ORDER);
+            for (Field field : declared) {
+                int modifiers = field.getModifiers();
+                if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers) || field.isSynthetic()) {
+                    continue;
+                }
+
+                Class<?> fieldType = field.getType();
+                if (!fieldType.isPrimitive() && fieldType != String.class && fieldType != byte[].class && !fieldType.isEnum()) {
+                    throw new RuntimeException(MessageFormat.format("The field {0}.{1} has an unsupported type ({2}); make it transient to skip it", clazz.getName(), field.getName(), fieldType.getName()));
+                }
+                else if (Modifier.isFinal(modifiers)) {
+                    throw new RuntimeException(MessageFormat.format("The field {0}.{1} is final, so it can''t be read back; make it transient to skip it", clazz.getName(), field.getName()));
+                }
+                else if (!canAccess(backend, type, field)) {
+                    throw new RuntimeException(MessageFormat.format("The field {0}.{1} can''t be accessed with the {2} backend; make it transient to skip it", clazz.getName(), field.getName(), backend));
+                }
+
+                fields.add(field);
+            }
+        }
+
+        return fields.toArray(new Field[fields.size()]);
+    }
+
+    private static boolean canAccess(GeneratorBackend backend, Class<?> type, Field field) {
+        // enum fields are cast to their type, so that has to be accessible too
+        Class<?> fieldType = field.getType();
+        if (backend == GeneratorBackend.HIDDEN_CLASS) {
+            boolean samePackage = fieldType.getPackage() == type.getPackage() && fieldType.getClassLoader() == type.getClassLoader();
+            return (field.getDeclaringClass() == type || Modifier.isPublic(field.getModifiers())) && (Modifier.isPublic(fieldType.getModifiers()) || samePackage);
+        }
+
+        return Modifier.isPublic(field.getModifiers()) && Modifier.isPublic(type.getModifiers()) && Modifier.isPublic(fieldType.getModifiers());
+    }
+
+    private static boolean hasConstructor(Class<?> type) {
+        if (Modifier.isAbstract(type.getModifiers()) || type.isInterface()) {
+            return false;
+        }
+
+        try {
+            Constructor<?> constructor = type.getDeclaredConstructor();
+            return ClassGenerator.getBackend() == GeneratorBackend.HIDDEN_CLASS || (Modifier.isPublic(constructor.getModifiers()) && Modifier.isPublic(type.getModifiers()));
+        }
+        catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    // 64 bit FNV-1a of "name:descriptor;" for each field. Enums are written as ordinals, so their
+    // constants' names are hashed too (in order), e.g "name:descriptor=A,B,C;"
+    private static long getSchemaHash(Field[] fields) {
+        long hash = 0xcbf29ce484222325L;
+        for (Field field : fields) {
+            StringBuilder builder = new StringBuilder().append(field.getName()).append(':').append(Type.getDescriptor(field.getType()));
+            if (field.getType().isEnum()) {
+                char separator = '=';
+                for (Object constant : ENUM_CONSTANTS.get(field.getType())) {
+                    builder.append(separator).append(((Enum<?>) constant).name());
+                    separator = ',';
+                }
+            }
+
+            String entry = builder.append(';').toString();
+            for (int i = 0; i < entry.length(); i++) {
+                hash ^= entry.charAt(i);
+                hash *= 0x100000001b3L;
+            }
+        }
+
+        return hash;
+    }
+}
@@ -0,0 +1,267 @@
+package reghzy.asm;
+
+import org.objectweb.asm.Type;
+import reghzy.asm.utils.AccessorCache;
+import reghzy.asm.utils.ClassGenerator;
+import reghzy.asm.utils.GeneratorBackend;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Invokes any method of a class by its index, using a single generated class for the whole class rather than one per method
+ * <p>
+ *     Each invoke method is a tableswitch over the method index, so this costs a tiny bit more per call than a
+ *     {@link MethodAccessor}, but a class with 200 methods only needs 1 generated class instead of 200
+ * </p>
+ * <pre>
+ * ClassAccess&lt;World&gt; access = ClassAccess.create(World.class);
+ * int getBlockId = access.getIndex("getBlockId", int.class, int.class, int.class); // do this once
+ * int blockId = access.invokeInt(getBlockId, overworld, 2250, 67, -2434);
+ * </pre>
+ * <p>
+ *     Like {@link MethodAccessor}, only the typed invoke method matching a method's return type works with that method's
+ *     index (e.g {@link ClassAccess#invokeInt(int, Object, Object...)} for int methods, {@link ClassAccess#invokeVoid(int, Object, Object...)}
+ *     for void methods), and the others throw an {@link IllegalArgumentException}. {@link ClassAccess#invoke(int, Object, Object...)}
+ *     works with every method, and boxes primitive return values (null for void)
+ * </p>
+ * <p>
+ *     The methods are the class' public methods (including inherited ones) in public classes, plus all of its own declared
+ *     methods with the {@link GeneratorBackend#HIDDEN_CLASS} backend. They're sorted by name and descriptor, so the indices
+ *     are the same every time for the same class
+ * </p>
+ * @param <T> The class type
+ */
+public abstract class ClassAccess<T> {
+    private static final AccessorCache<Class<?>, ClassAccess<?>> CACHE = new AccessorCache<Class<?>, ClassAccess<?>>() {
+        @Override
+        protected Class<?> getOwner(Class<?> key) {
+            return key;
+        }
+
+        @Override
+        protected ClassAccess<?> generate(Class<?> key) {
+            return newAccess(key);
+        }
+    };
+
+    private static final Comparator<Method> METHOD_ORDER = new Comparator<Method>() {
+        @Override
+        public int compare(Method a, Method b) {
+            int name = a.getName().compareTo(b.getName());
+            return name != 0 ? name : Type.getMethodDescriptor(a).compareTo(Type.getMethodDescriptor(b));
+        }
+    };
+
+    private final Class<T> type;
+    private final Method[] methods;
+    private final Map<String, Integer> indices;     // name + descriptor (and name + parameter descriptor) -> index
+    private final Map<String, Integer> nameIndices; // name -> index, or -1 if the name is overloaded
+
+    protected ClassAccess(Class<T> type, Method[] methods) {
+        this.type = type;
+        this.methods = methods;
+        this.indices = new HashMap<String, Integer>();
+        this.nameIndices = new HashMap<String, Integer>();
+        for (int i = 0; i < methods.length; i++) {
+            String descriptor = Type.getMethodDescriptor(methods[i]);
+            this.indices.put(methods[i].getName() + descriptor, i);
+            this.indices.put(methods[i].getName() + descriptor.substring(0, descriptor.indexOf(')') + 1), i);
+            Integer existing = this.nameIndices.put(methods[i].getName(), i);
+            if (existing != null) {
+                this.nameIndices.put(methods[i].getName(), -1);
+            }
+        }
+    }
+
+    /**
+     * Creates (or gets the cached) class access for the given class
+     * @param type The class
+     * @param <T> The class type
+     * @return The class access
+     */
+    public static <T> ClassAccess<T> create(Class<T> type) {
+        return (ClassAccess<T>) CACHE.get(type);
+    }
+
+    /**
+     * Returns the number of times {@link ClassAccess#create(Class)} returned an already generated class access
+     */
+    public static long getCacheHits() {
+        return CACHE.getHits();
+    }
+
+    /**
+     * Returns the number of times {@link ClassAccess#create(Class)} had to generate a new class
+     */
+    public static long getCacheMisses() {
+        return CACHE.getMisses();
+    }
+
+    /**
+     * Returns the number of generated class accesses currently cached
+     */
+    public static int getCacheSize() {
+        return CACHE.getSize();
+    }
+
+    public Class<T> getType() {
+        return this.type;
+    }
+
+    /**
+     * The number of methods that can be invoked. Indices go from 0 to this - 1
+     */
+    public int getMethodCount() {
+        return this.methods.length;
+    }
+
+    /**
+     * Gets the method at the given index
+     */
+    public Method getMethod(int index) {
+        return this.methods[index];
+    }
+
+    /**
+     * Gets the index of the method with the given name, which must not be overloaded
+     * @throws RuntimeException If there's no method with that name, or there are multiple
+     */
+    public int getIndex(String name) {
+        Integer index = this.nameIndices.get(name);
+        if (index == null) {
+            throw new RuntimeException(MessageFormat.format("No accessible method named {0} in {1}", name, this.type.getName()));
+        }
+        else if (index == -1) {
+            throw new RuntimeException(MessageFormat.format("The method {0} in {1} is overloaded; the parameter types must be given", name, this.type.getName()));
+        }
+
+        return index;
+    }
+
+    /**
+     * Gets the index of the method with the given name and parameter types
+     * @throws RuntimeException If there's no method with that name and parameter types
+     */
+    public int getIndex(String name, Class<?>... parameterTypes) {
+        Type[] types = new Type[parameterTypes.length];
+        for (int i = 0; i < parameterTypes.length; i++) {
+            types[i] = Type.getType(parameterTypes[i]);
+        }
+
+        String descriptor = Type.getMethodDescriptor(Type.VOID_TYPE, types);
+        return getIndexByDescriptor(name, descriptor.substring(0, descriptor.length() - 1));
+    }
+
+    /**
+     * Gets the index of the method with the given name and descriptor, e.g "(III)I". The return type can be left out, e.g "(III)"
+     * @throws RuntimeException If there's no method with that name and descriptor
+     */
+    public int getIndexByDescriptor(String name, String descriptor) {
+        Integer index = this.indices.get(name + descriptor);
+        if (index == null) {
+            throw new RuntimeException(MessageFormat.format("No accessible method {0}{1} in {2}", name, descriptor, this.type.getName()));
+        }
+
+        return index;
+    }
+
+    // the generated class only overrides the invoke methods that have at least 1 method with that return type,
+    // and calls this for the indices of methods with other return types
+
+    public Object invoke(int index, T target, Object... params) {
+        throw invalidIndex(index, "Object");
+    }
+
+    public byte invokeByte(int index, T target, Object... params) {
+        throw invalidIndex(index, "byte");
+    }
+
+    public short invokeShort(int index, T target, Object... params) {
+        throw invalidIndex(index, "short");
+    }
+
+    public int invokeInt(int index, T target, Object... params) {
+        throw invalidIndex(index, "int");
+    }
+
+    public long invokeLong(int index, T target, Object... params) {
+        throw invalidIndex(index, "long");
+    }
+
+    public float invokeFloat(int index, T target, Object... params) {
+        throw invalidIndex(index, "float");
+    }
+
+    public double invokeDouble(int index, T target, Object... params) {
+        throw invalidIndex(index, "double");
+    }
+
+    public boolean invokeBool(int index, T target, Object... params) {
+        throw invalidIndex(index, "boolean");
+    }
+
+    public char invokeChar(int index, T target, Object... params) {
+        throw invalidIndex(index, "char");
+    }
+
+    public void invokeVoid(int index, T target, Object... params) {
+        throw invalidIndex(index, "void");
+    }
+
+    protected RuntimeException invalidIndex(int index, String returnType) {
+        if (index < 0 || index >= this.methods.length) {
+            return new IllegalArgumentException(MessageFormat.format("Method index {0} is out of range (there are {1} methods)", index, this.methods.length));
+        }
+
+        Method method = this.methods[index];
+        return new IllegalArgumentException(MessageFormat.format("The method {0}.{1} returns {2}, it cannot be invoked with the {3} invoke method",
+                                                                 method.getDeclaringClass().getName(), method.getName(), method.getReturnType().getName(), returnType));
+    }
+
+    private static ClassAccess<?> newAccess(Class<?> type) {
+        Method[] methods = getMethods(type);
+        Class<?> clazz = ClassGenerator.generateClassAccess(type, methods);
+        try {
+            return (ClassAccess<?>) clazz.getConstructor(Class.class, Method[].class).newInstance(type, methods);
+        }
+        catch (Throwable e) {
+            throw new RuntimeException("Failed to either generate class, or invoke constructor", e);
+        }
+    }
+
+    private static Method[] getMethods(Class<?> type) {
+        List<Method> methods = new ArrayList<Method>();
+        Set<String> signatures = new HashSet<String>();
+        for (Method method : type.getMethods()) {
+            if (!method.isBridge() && ClassGenerator.canAccess(method) && signatures.add(method.getName() + Type.getMethodDescriptor(method))) {
+                methods.add(method);
+            }
+        }
+
+        if (ClassGenerator.getBackend() == GeneratorBackend.HIDDEN_CLASS) {
+            for (Method method : type.getDeclaredMethods()) {
+                if (!method.isBridge() && !Modifier.isPublic(method.getModifiers()) && ClassGenerator.canAccess(method) && signatures.add(method.getName() + Type.getMethodDescriptor(method))) {
+                    methods.add(method);
+                }
+            }
+        }
+
+        Collections.sort(methods, METHOD_ORDER);
+        return methods.toArray(new Method[methods.size()]);
+    }
+
+    @Override
+    public String toString() {
+        return MessageFormat.format("ClassAccess({0}, {1} methods)", this.type.getName(), this.methods.length);
+    }
+}
@@ -0,0 +1,41 @@
+package reghzy.asm;
+
+/**
+ * A class which has access to invoking a constructor, creating new instances of a class
+ * <p>
+ *     Like {@link MethodAccessor}, only the methods that match the constructor are generated. {@link ConstructorAccessor#newInstance(Object...)}
+ *     (or {@link ConstructorAccessor#newInstance()} if there are no parameters) is always generated. If the constructor has 1 to 3
+ *     parameters that are all ints, longs, doubles or references, the matching newInstanceInt/Long/Double/Ref method is also
+ *     generated, which takes the parameters directly so nothing is boxed
+ * </p>
+ * @param <T> The type of class being created
+ */
+public interface ConstructorAccessor<T> {
+    T newInstance();
+
+    T newInstance(Object... params);
+
+    T newInstanceInt(int p0);
+
+    T newInstanceInt(int p0, int p1);
+
+    T newInstanceInt(int p0, int p1, int p2);
+
+    T newInstanceLong(long p0);
+
+    T newInstanceLong(long p0, long p1);
+
+    T newInstanceLong(long p0, long p1, long p2);
+
+    T newInstanceDouble(double p0);
+
+    T newInstanceDouble(double p0, double p1);
+
+    T newInstanceDouble(double p0, double p1, double p2);
+
+    T newInstanceRef(Object p0);
+
+    T newInstanceRef(Object p0, Object p1);
+
+    T newInstanceRef(Object p0, Object p1, Object p2);
+}
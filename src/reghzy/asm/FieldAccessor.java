@@ -1,4 +1,4 @@
-package reghzy.asm.unused;
+package reghzy.asm;
 
 /**
  * A class which has access to getting and setting a field
@@ -0,0 +1,25 @@
+package reghzy.asm;
+
+/**
+ * Listens for {@link TieredMethodAccessor}s swapping reflection for a generated accessor, see
+ * {@link TieredMethodAccessor#addInflationListener(InflationListener)}
+ * <p>
+ *     These are called on the thread that generated the class (the inflation executor), so they should be quick
+ * </p>
+ */
+public interface InflationListener {
+    /**
+     * Called after the generated accessor has been swapped in
+     * @param accessor The tiered accessor
+     * @param generated The generated accessor it now uses
+     * @param nanos How long it took to generate (or find the cached) accessor
+     */
+    void onInflated(TieredMethodAccessor<?, ?> accessor, MethodAccessor<?, ?> generated, long nanos);
+
+    /**
+     * Called if the accessor couldn't be generated. The tiered accessor keeps using reflection, and doesn't try again
+     * @param accessor The tiered accessor
+     * @param cause Why it couldn't be generated
+     */
+    void onInflationFailed(TieredMethodAccessor<?, ?> accessor, Throwable cause);
+}
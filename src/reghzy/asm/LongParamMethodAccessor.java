@@ -0,0 +1,140 @@
+package reghzy.asm;
+
+/**
+ * A fixed-arity version of {@link MethodAccessor}, for methods whose parameters are all {@code long}
+ * <p>
+ *     Unlike {@link MethodAccessor#invoke(Object, Object...)}, the parameters are passed as longs, so
+ *     nothing gets auto-boxed and no Object[] gets created per call
+ * </p>
+ * <p>
+ *     Only the method matching the return type and parameter count gets generated, the same as {@link MethodAccessor}
+ * </p>
+ * <p>
+ *     The batch methods (e.g invokeIntBatch) invoke the method for every index from (inclusive) to (exclusive), using
+ *     targets[i] and p0[i], p1[i], etc. as the parameters, and store the result in out[i]. The loop runs inside the generated
+ *     class, so the method is invoked directly rather than through this interface each time. For static methods, targets is ignored
+ * </p>
+ * @param <T> The type of class in which the method is defined in
+ * @param <V> The method's return type (or null for void return types)
+ */
+public interface LongParamMethodAccessor<T, V> {
+    V invoke(T target, long p0);
+
+    V invoke(T target, long p0, long p1);
+
+    V invoke(T target, long p0, long p1, long p2);
+
+    byte invokeByte(T target, long p0);
+
+    byte invokeByte(T target, long p0, long p1);
+
+    byte invokeByte(T target, long p0, long p1, long p2);
+
+    short invokeShort(T target, long p0);
+
+    short invokeShort(T target, long p0, long p1);
+
+    short invokeShort(T target, long p0, long p1, long p2);
+
+    int invokeInt(T target, long p0);
+
+    int invokeInt(T target, long p0, long p1);
+
+    int invokeInt(T target, long p0, long p1, long p2);
+
+    long invokeLong(T target, long p0);
+
+    long invokeLong(T target, long p0, long p1);
+
+    long invokeLong(T target, long p0, long p1, long p2);
+
+    float invokeFloat(T target, long p0);
+
+    float invokeFloat(T target, long p0, long p1);
+
+    float invokeFloat(T target, long p0, long p1, long p2);
+
+    double invokeDouble(T target, long p0);
+
+    double invokeDouble(T target, long p0, long p1);
+
+    double invokeDouble(T target, long p0, long p1, long p2);
+
+    boolean invokeBool(T target, long p0);
+
+    boolean invokeBool(T target, long p0, long p1);
+
+    boolean invokeBool(T target, long p0, long p1, long p2);
+
+    char invokeChar(T target, long p0);
+
+    char invokeChar(T target, long p0, long p1);
+
+    char invokeChar(T target, long p0, long p1, long p2);
+
+    void invokeVoid(T target, long p0);
+
+    void invokeVoid(T target, long p0, long p1);
+
+    void invokeVoid(T target, long p0, long p1, long p2);
+
+    void invokeBatch(T[] targets, long[] p0, V[] out, int from, int to);
+
+    void invokeBatch(T[] targets, long[] p0, long[] p1, V[] out, int from, int to);
+
+    void invokeBatch(T[] targets, long[] p0, long[] p1, long[] p2, V[] out, int from, int to);
+
+    void invokeByteBatch(T[] targets, long[] p0, byte[] out, int from, int to);
+
+    void invokeByteBatch(T[] targets, long[] p0, long[] p1, byte[] out, int from, int to);
+
+    void invokeByteBatch(T[] targets, long[] p0, long[] p1, long[] p2, byte[] out, int from, int to);
+
+    void invokeShortBatch(T[] targets, long[] p0, short[] out, int from, int to);
+
+    void invokeShortBatch(T[] targets, long[] p0, long[] p1, short[] out, int from, int to);
+
+    void invokeShortBatch(T[] targets, long[] p0, long[] p1, long[] p2, short[] out, int from, int to);
+
+    void invokeIntBatch(T[] targets, long[] p0, int[] out, int from, int to);
+
+    void invokeIntBatch(T[] targets, long[] p0, long[] p1, int[] out, int from, int to);
+
+    void invokeIntBatch(T[] targets, long[] p0, long[] p1, long[] p2, int[] out, int from, int to);
+
+    void invokeLongBatch(T[] targets, long[] p0, long[] out, int from, int to);
+
+    void invokeLongBatch(T[] targets, long[] p0, long[] p1, long[] out, int from, int to);
+
+    void invokeLongBatch(T[] targets, long[] p0, long[] p1, long[] p2, long[] out, int from, int to);
+
+    void invokeFloatBatch(T[] targets, long[] p0, float[] out, int from, int to);
+
+    void invokeFloatBatch(T[] targets, long[] p0, long[] p1, float[] out, int from, int to);
+
+    void invokeFloatBatch(T[] targets, long[] p0, long[] p1, long[] p2, float[] out, int from, int to);
+
+    void invokeDoubleBatch(T[] targets, long[] p0, double[] out, int from, int to);
+
+    void invokeDoubleBatch(T[] targets, long[] p0, long[] p1, double[] out, int from, int to);
+
+    void invokeDoubleBatch(T[] targets, long[] p0, long[] p1, long[] p2, double[] out, int from, int to);
+
+    void invokeBoolBatch(T[] targets, long[] p0, boolean[] out, int from, int to);
+
+    void invokeBoolBatch(T[] targets, long[] p0, long[] p1, boolean[] out, int from, int to);
+
+    void invokeBoolBatch(T[] targets, long[] p0, long[] p1, long[] p2, boolean[] out, int from, int to);
+
+    void invokeCharBatch(T[] targets, long[] p0, char[] out, int from, int to);
+
+    void invokeCharBatch(T[] targets, long[] p0, long[] p1, char[] out, int from, int to);
+
+    void invokeCharBatch(T[] targets, long[] p0, long[] p1, long[] p2, char[] out, int from, int to);
+
+    void invokeVoidBatch(T[] targets, long[] p0, int from, int to);
+
+    void invokeVoidBatch(T[] targets, long[] p0, long[] p1, int from, int to);
+
+    void invokeVoidBatch(T[] targets, long[] p0, long[] p1, long[] p2, int from, int to);
+}
@@ -1,5 +1,12 @@
 package reghzy.asm;
 
+import reghzy.asm.utils.ClassGenerator;
+import reghzy.asm.utils.GeneratorBackend;
+
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+
 public class Main {
     /**
      * <h1>
@@ -9,7 +16,7 @@ public class Main {
      *     You cannot access private/protected methods with this, because of java access security
      * </h3>
      */
-    public static void main(String[] args) {
+    public static void main(String[] args) throws Exception {
         // creates the accessor. This instance is purely generated, and the only way to access the source code
         // would be to write the bytes to a file. Look in ClassGenerator on how to do that :)
         MethodAccessor<MyWorld, Integer> accessor = ASMMethodAccessor.create(MyWorld.class, "getBlockId", int.class, int.class, int.class);
@@ -27,17 +34,95 @@ public class Main {
         double value = addNumbersAccessor.invokeDouble(null, 5.0d, 10.0d);
         System.out.println("5.0 + 10.0 = " + value);
 
-        // there is more room to upgrade though. This simply removes the autoboxing/auto-unboxing of the method return types
-        // but the parameters are obviously still going to get auto-boxed, due to the object array
-        // an update could be to use some sort of "IntHolder" class (with a non-final int field), that asm will use?
-        // that would remove the autoboxing of the int parameters...
+        // accessors are cached, so asking for the same method again won't generate another class
+        MethodAccessor<MyWorld, Integer> cachedAccessor = ASMMethodAccessor.create(MyWorld.class, "getBlockId", int.class, int.class, int.class);
+        System.out.println("Same accessor: " + (cachedAccessor == accessor) + ", cache hits = " + ASMMethodAccessor.getCacheHits() + ", misses = " + ASMMethodAccessor.getCacheMisses());
+
+        // fixed-arity accessors take the parameters directly, so nothing is boxed and no array is created
+        IntParamMethodAccessor<MyWorld, Integer> fastAccessor = ASMMethodAccessor.createIntParam(MyWorld.class, "getBlockId", int.class, int.class, int.class);
+        System.out.println("Fixed-arity block id: " + fastAccessor.invokeInt(new MyWorld(), 5, 10, 15));
+
+        // the default backend can't invoke private methods, so the accessor falls back to reflection.
+        // The hidden class backend (java 15+) defines the accessor as a nestmate of MyWorld instead, so it can
+        MethodAccessor<MyWorld, Integer> secretAccessor = ASMMethodAccessor.create(MyWorld.class, "getSecretBlockId", int.class);
+        System.out.println("Secret block id: " + secretAccessor.invokeInt(new MyWorld(), 5) + " using " + secretAccessor.getClass().getSimpleName());
+        if (GeneratorBackend.HIDDEN_CLASS.isSupported()) {
+            ClassGenerator.setBackend(GeneratorBackend.HIDDEN_CLASS);
+            MethodAccessor<Main, Integer> hiddenAccessor = ASMMethodAccessor.create(Main.class, "getSecretNumber");
+            System.out.println("Secret number: " + hiddenAccessor.invokeInt(null) + " using " + hiddenAccessor.getClass().getName());
+            checkForeignHiddenClasses();
+            ClassGenerator.setBackend(GeneratorBackend.CLASS_LOADER);
+        }
+
+        // fields work the same way. Only getInt/setInt are generated for an int field, so nothing gets boxed
+        FieldAccessor<MyWorld, Integer> timeAccessor = ASMFieldAccessor.create(MyWorld.class, "time");
+        MyWorld world = new MyWorld();
+        timeAccessor.setInt(world, 24000);
+        System.out.println("World time: " + timeAccessor.getInt(world) + " (" + world.time + ")");
+
+        // and constructors, which don't need Constructor.newInstance or boxing either
+        ConstructorAccessor<MyWorld> worldFactory = ASMConstructorAccessor.create(MyWorld.class, int.class);
+        System.out.println("New world time: " + worldFactory.newInstanceInt(6000).time);
+
+        // the Object... params still get boxed though, due to the object array. An ArgumentFrame has a typed field
+        // for each parameter which the generated class reads directly, so reusing one means nothing gets boxed
+        ArgumentFrame frame = new ArgumentFrame();
+        System.out.println("Frame sum: " + addNumbersAccessor.invokeDouble(null, frame.setDouble(0, 5.0d).setDouble(1, 10.0d)));
+    }
+
+    // hidden classes can only be defined in classes from this library's class loader, so with a copy of MyWorld from
+    // another loader (like a plugin's), public methods still use the class loader backend and private ones use reflection
+    private static void checkForeignHiddenClasses() throws Exception {
+        // like a plugin's class loader, which can see this library but loads its own classes
+        URL location = Main.class.getProtectionDomain().getCodeSource().getLocation();
+        URLClassLoader foreignLoader = new URLClassLoader(new URL[]{location}, Main.class.getClassLoader()) {
+            @Override
+            protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+                // MyWorld and Main (its declaring class, which getSimpleName looks up)
+                if (!name.startsWith(Main.class.getName())) {
+                    return super.loadClass(name, resolve);
+                }
+
+                synchronized (getClassLoadingLock(name)) {
+                    Class<?> loaded = findLoadedClass(name);
+                    return loaded != null ? loaded : findClass(name);
+                }
+            }
+        };
+
+        Class<?> foreignWorld = foreignLoader.loadClass(MyWorld.class.getName());
+        Object world = foreignWorld.newInstance();
+
+        MethodAccessor<Object, Integer> blockIdAccessor = ASMMethodAccessor.create(foreignWorld.getMethod("getBlockId", int.class, int.class, int.class));
+        Method secretMethod = foreignWorld.getDeclaredMethod("getSecretBlockId", int.class);
+        MethodAccessor<Object, Integer> secretAccessor = ASMMethodAccessor.create(secretMethod);
+        int secret = new ReflectMethodAccessor<Object, Integer>(secretMethod).invokeInt(world, 5);
+        if (ClassGenerator.canAccess(secretMethod) || !(secretAccessor instanceof ReflectMethodAccessor) || secretAccessor.invokeInt(world, 5) != secret) {
+            throw new IllegalStateException("The private method of a class from another class loader should use reflection, but it used " + secretAccessor.getClass().getName());
+        }
+
+        System.out.println("Foreign block id: " + blockIdAccessor.invokeInt(world, 5, 10, 15) + " using " + blockIdAccessor.getClass().getName() +
+                           ", foreign secret block id: " + secretAccessor.invokeInt(world, 5) + " using " + secretAccessor.getClass().getSimpleName());
     }
 
     public static double addNumbers(double a, double b) {
         return a + b;
     }
 
+    private static int getSecretNumber() {
+        return 42;
+    }
+
     public static class MyWorld {
+        public int time;
+
+        public MyWorld() {
+        }
+
+        public MyWorld(int time) {
+            this.time = time;
+        }
+
         public int getBlockId(int x, int y, int z) {
             return x + y + z;
         }
@@ -45,5 +130,9 @@ public class Main {
         public void sayHello() {
             System.out.println("hello!!!!");
         }
+
+        private int getSecretBlockId(int x) {
+            return x * 2;
+        }
     }
 }
@@ -4,6 +4,11 @@ package reghzy.asm;
  * A class which has access to invoking methods
  * @param <T> The type of class in which the method is defined in (e.g ArrayList, for size())
  * @param <V> The method's return type (e.g {@link Integer} for size(), or null for void return types)
+ * <p>
+ *     The invoke methods that take an {@link ArgumentFrame} read the parameters from the frame's typed slots, rather than
+ *     an Object[], so nothing is allocated or boxed (as long as the frame is reused). Generated accessors implement them
+ *     directly; other implementations get default ones that box the frame into an Object[] using {@link MethodAccessor#getParameterTypes()}
+ * </p>
  */
 public interface MethodAccessor<T, V> {
     V invoke(T target);
@@ -45,4 +50,52 @@ public interface MethodAccessor<T, V> {
     void invokeVoid(T target);
 
     void invokeVoid(T target, Object... params);
+
+    /**
+     * Gets the parameter types of the method, which the default frame invoke methods use to box the frame's slots
+     * @throws UnsupportedOperationException If this accessor doesn't know its method's parameter types
+     */
+    default Class<?>[] getParameterTypes() {
+        throw new UnsupportedOperationException(getClass().getName() + " doesn't support argument frames (its method has more parameters than a frame has slots, or it doesn't override getParameterTypes())");
+    }
+
+    default V invoke(T target, ArgumentFrame frame) {
+        return invoke(target, frame.toArray(getParameterTypes()));
+    }
+
+    default byte invokeByte(T target, ArgumentFrame frame) {
+        return invokeByte(target, frame.toArray(getParameterTypes()));
+    }
+
+    default short invokeShort(T target, ArgumentFrame frame) {
+        return invokeShort(target, frame.toArray(getParameterTypes()));
+    }
+
+    default int invokeInt(T target, ArgumentFrame frame) {
+        return invokeInt(target, frame.toArray(getParameterTypes()));
+    }
+
+    default long invokeLong(T target, ArgumentFrame frame) {
+        return invokeLong(target, frame.toArray(getParameterTypes()));
+    }
+
+    default float invokeFloat(T target, ArgumentFrame frame) {
+        return invokeFloat(target, frame.toArray(getParameterTypes()));
+    }
+
+    default double invokeDouble(T target, ArgumentFrame frame) {
+        return invokeDouble(target, frame.toArray(getParameterTypes()));
+    }
+
+    default boolean invokeBool(T target, ArgumentFrame frame) {
+        return invokeBool(target, frame.toArray(getParameterTypes()));
+    }
+
+    default char invokeChar(T target, ArgumentFrame frame) {
+        return invokeChar(target, frame.toArray(getParameterTypes()));
+    }
+
+    default void invokeVoid(T target, ArgumentFrame frame) {
+        invokeVoid(target, frame.toArray(getParameterTypes()));
+    }
 }
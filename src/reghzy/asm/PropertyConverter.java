@@ -0,0 +1,47 @@
+package reghzy.asm;
+
+/**
+ * Converts a property's value when a {@link BeanMapper} copies it between 2 properties of different types
+ * <pre>
+ * PropertyConverter&lt;Integer, String&gt; intToString = new PropertyConverter&lt;Integer, String&gt;(int.class, String.class) {
+ *     public String convert(Integer value) {
+ *         return String.valueOf(value);
+ *     }
+ * };
+ * </pre>
+ * <p>
+ *     Primitive values are boxed before being passed to the converter, and the result is unboxed if the destination is primitive
+ * </p>
+ * @param <A> The source property's type (the wrapper, for primitives)
+ * @param <B> The destination property's type (the wrapper, for primitives)
+ */
+public abstract class PropertyConverter<A, B> {
+    private final Class<A> sourceType;
+    private final Class<B> destinationType;
+
+    /**
+     * @param sourceType The exact type of the source properties to convert (e.g int.class rather than Integer.class, for int properties)
+     * @param destinationType The exact type of the destination properties
+     */
+    protected PropertyConverter(Class<A> sourceType, Class<B> destinationType) {
+        if (sourceType == null || destinationType == null) {
+            throw new NullPointerException("The source and destination types cannot be null");
+        }
+
+        this.sourceType = sourceType;
+        this.destinationType = destinationType;
+    }
+
+    public Class<A> getSourceType() {
+        return this.sourceType;
+    }
+
+    public Class<B> getDestinationType() {
+        return this.destinationType;
+    }
+
+    /**
+     * Converts the source property's value into the destination property's type
+     */
+    public abstract B convert(A value);
+}
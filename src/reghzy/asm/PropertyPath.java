@@ -0,0 +1,493 @@
+package reghzy.asm;
+
+import reghzy.asm.utils.AccessorCache;
+import reghzy.asm.utils.ClassGenerator;
+import reghzy.asm.utils.MethodIndex;
+import reghzy.asm.utils.ReflectHelper;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Navigates a chain of getters, methods and fields (e.g world.getChunkAt(x, z).getSection(y).getBlockId(x, y, z)) using a
+ * single generated class, which calls each step directly one after another. Primitive results are never boxed
+ * <pre>
+ * PropertyPath&lt;World&gt; blockIdPath = PropertyPath.compile(World.class, "getChunkAt(int, int)?.getSection(int).getBlockId(int, int, int)");
+ * ArgumentFrame frame = new ArgumentFrame().setInt(0, x &gt;&gt; 4).setInt(1, z &gt;&gt; 4).setInt(2, y &gt;&gt; 4)
+ *                                          .setInt(3, x &amp; 15).setInt(4, y &amp; 15).setInt(5, z &amp; 15);
+ * int blockId = blockIdPath.getInt(world, frame);
+ * </pre>
+ * <p>
+ *     Steps are separated by a '.', and are either a property name (the getter getX() or isX(), the method x() or the field x,
+ *     in that order) or a method with its parameter types in brackets (primitives or class names; java.lang classes can use
+ *     their simple name). The parameters of the method steps are read from the {@link ArgumentFrame}'s slots in order, so a
+ *     path can have up to {@link ArgumentFrame#MAX_SLOTS} of them in total. The frame can be null if there aren't any
+ * </p>
+ * <p>
+ *     Using "?." instead of "." before a step returns null (or 0/false for a primitive result) from the path when the value
+ *     before it is null, rather than throwing a NullPointerException. Every step must be public, and every value that a step
+ *     is used on must be of a public class. Like {@link BeanMapper}, the generated class is always defined in an ASMClassLoader
+ * </p>
+ * <p>
+ *     Only the typed getter for the result type works (e.g {@link PropertyPath#getInt(Object, ArgumentFrame)} for an int
+ *     result), and the others throw an {@link UnsupportedOperationException}. {@link PropertyPath#get(Object, ArgumentFrame)}
+ *     works with every path, and boxes primitive results
+ * </p>
+ * @param <T> The root type
+ */
+public abstract class PropertyPath<T> {
+    private static final AccessorCache<PathKey, PropertyPath<?>> CACHE = new AccessorCache<PathKey, PropertyPath<?>>() {
+        @Override
+        protected Class<?> getOwner(PathKey key) {
+            // the steps may be in (or return) classes from other loaders, e.g a plugin's class returned by one of ours
+            List<Class<?>> types = new ArrayList<Class<?>>();
+            for (Member step : key.steps) {
+                types.add(step.getDeclaringClass());
+                types.add(getStepType(step));
+                if (step instanceof Method) {
+                    Collections.addAll(types, ((Method) step).getParameterTypes());
+                }
+            }
+
+            return getShortestLived(key.rootType, types.toArray(new Class<?>[types.size()]));
+        }
+
+        @Override
+        protected PropertyPath<?> generate(PathKey key) {
+            return newPath(key);
+        }
+    };
+
+    private final Class<T> rootType;
+    private final String expression;
+    private final Member[] steps;
+
+    protected PropertyPath(Class<T> rootType, String expression, Member[] steps) {
+        this.rootType = rootType;
+        this.expression = expression;
+        this.steps = steps;
+    }
+
+    /**
+     * Compiles (or gets the cached) path for the given expression, e.g "getChunkAt(int, int)?.getSection(int).blockCount"
+     * @param rootType The class that the path starts at
+     * @param expression The steps
+     * @param <T> The root type
+     * @return The compiled path
+     * @throws RuntimeException If the expression is invalid, or a step can't be found or accessed
+     */
+    public static <T> PropertyPath<T> compile(Class<T> rootType, String expression) {
+        return compile(rootType, parse(expression));
+    }
+
+    /**
+     * Creates a builder for a path starting at the given class, for when the parameter types are already known classes
+     * <pre>
+     * PropertyPath.builder(World.class).step("getChunkAt", int.class, int.class).nullSafe().step("getSection", int.class).build();
+     * </pre>
+     */
+    public static <T> Builder<T> builder(Class<T> rootType) {
+        return new Builder<T>(rootType);
+    }
+
+    private static <T> PropertyPath<T> compile(Class<T> rootType, Segment[] segments) {
+        if (rootType == null) {
+            throw new NullPointerException("Root type cannot be null");
+        }
+
+        return (PropertyPath<T>) CACHE.get(new PathKey(rootType, segments));
+    }
+
+    public abstract Object get(T root, ArgumentFrame frame);
+
+    public byte getByte(T root, ArgumentFrame frame) {
+        throw wrongType("byte");
+    }
+
+    public short getShort(T root, ArgumentFrame frame) {
+        throw wrongType("short");
+    }
+
+    public int getInt(T root, ArgumentFrame frame) {
+        throw wrongType("int");
+    }
+
+    public long getLong(T root, ArgumentFrame frame) {
+        throw wrongType("long");
+    }
+
+    public float getFloat(T root, ArgumentFrame frame) {
+        throw wrongType("float");
+    }
+
+    public double getDouble(T root, ArgumentFrame frame) {
+        throw wrongType("double");
+    }
+
+    public boolean getBool(T root, ArgumentFrame frame) {
+        throw wrongType("boolean");
+    }
+
+    public char getChar(T root, ArgumentFrame frame) {
+        throw wrongType("char");
+    }
+
+    public Class<T> getRootType() {
+        return this.rootType;
+    }
+
+    /**
+     * The expression, with any whitespace removed
+     */
+    public String getExpression() {
+        return this.expression;
+    }
+
+    /**
+     * The getters/methods or fields that are used, in order
+     */
+    public List<Member> getSteps() {
+        return Collections.unmodifiableList(Arrays.asList(this.steps));
+    }
+
+    /**
+     * The type of the last step
+     */
+    public Class<?> getResultType() {
+        return getStepType(this.steps[this.steps.length - 1]);
+    }
+
+    /**
+     * The number of {@link ArgumentFrame} slots that the method steps use
+     */
+    public int getParameterCount() {
+        int count = 0;
+        for (Member step : this.steps) {
+            if (step instanceof Method) {
+                count += ((Method) step).getParameterTypes().length;
+            }
+        }
+
+        return count;
+    }
+
+    @Override
+    public String toString() {
+        return MessageFormat.format("PropertyPath({0}: {1} -> {2})", this.rootType.getName(), this.expression, getResultType().getName());
+    }
+
+    private UnsupportedOperationException wrongType(String type) {
+        return new UnsupportedOperationException(MessageFormat.format("The path {0} returns {1}, it cannot be read as {2}", this.expression, getResultType().getName(), type));
+    }
+
+    private static PropertyPath<?> newPath(PathKey key) {
+        boolean[] nullChecks = new boolean[key.segments.length];
+        for (int i = 0; i < nullChecks.length; i++) {
+            nullChecks[i] = key.segments[i].nullCheck;
+        }
+
+        Class<?> clazz = ClassGenerator.generatePropertyPath(key.rootType, key.steps, nullChecks);
+        try {
+            return (PropertyPath<?>) clazz.getConstructor(Class.class, String.class, Member[].class).newInstance(key.rootType, key.expression, key.steps);
+        }
+        catch (Throwable e) {
+            throw new RuntimeException("Failed to either generate class, or invoke constructor", e);
+        }
+    }
+
+    private static Member[] findSteps(Class<?> rootType, Segment[] segments, String expression) {
+        Member[] steps = new Member[segments.length];
+        Class<?> type = rootType;
+        int slots = 0;
+        for (int i = 0; i < steps.length; i++) {
+            Segment segment = segments[i];
+            if (type.isPrimitive()) {
+                throw new RuntimeException(MessageFormat.format("The step before {0} in {1} returns a primitive ({2}), so it must be the last step", segment.name, expression, type.getName()));
+            }
+
+            Member step = findStep(type, segment);
+            if (Modifier.isStatic(step.getModifiers())) {
+                throw new RuntimeException(MessageFormat.format("The step {0} in {1} is static", segment.name, expression));
+            }
+            else if (!Modifier.isPublic(step.getModifiers()) || !Modifier.isPublic(type.getModifiers())) {
+                throw new RuntimeException(MessageFormat.format("The step {0} in {1} can''t be accessed; it must be public, and {2} must be a public class", segment.name, expression, type.getName()));
+            }
+
+            type = getStepType(step);
+            if (type == void.class) {
+                throw new RuntimeException(MessageFormat.format("The step {0} in {1} returns void", segment.name, expression));
+            }
+
+            if (step instanceof Method) {
+                slots += ((Method) step).getParameterTypes().length;
+            }
+
+            steps[i] = step;
+        }
+
+        if (slots > ArgumentFrame.MAX_SLOTS) {
+            throw new RuntimeException(MessageFormat.format("The path {0} has {1} parameters, but an argument frame only has {2} slots", expression, slots, ArgumentFrame.MAX_SLOTS));
+        }
+
+        return steps;
+    }
+
+    private static Member findStep(Class<?> type, Segment segment) {
+        if (segment.parameterTypes != null || segment.parameterTypeNames != null) {
+            Class<?>[] parameterTypes = segment.parameterTypes;
+            if (parameterTypes == null) {
+                parameterTypes = new Class<?>[segment.parameterTypeNames.length];
+                for (int i = 0; i < parameterTypes.length; i++) {
+                    parameterTypes[i] = findType(type, segment.parameterTypeNames[i]);
+                }
+            }
+
+            return ReflectHelper.findDeclaredMethod(type, segment.name, parameterTypes);
+        }
+
+        // getX(), isX(), x(), then the field
+        String capitalised = Character.toUpperCase(segment.name.charAt(0)) + segment.name.substring(1);
+        for (String name : new String[]{"get" + capitalised, "is" + capitalised, segment.name}) {
+            Method method = MethodIndex.find(type, name);
+            if (method != null && Modifier.isPublic(method.getModifiers()) && (!name.startsWith("is") || method.getReturnType() == boolean.class)) {
+                return method;
+            }
+        }
+
+        try {
+            return type.getField(segment.name);
+        }
+        catch (NoSuchFieldException e) {
+            throw new RuntimeException(MessageFormat.format("There''s no public getter, method or field named {0} in {1}", segment.name, type.getName()));
+        }
+    }
+
+    // loads the class with the loader of the class the method is in, so it can be one of that plugin's classes
+    private static Class<?> findType(Class<?> owner, String name) {
+        if (name.endsWith("[]")) {
+            return Array.newInstance(findType(owner, name.substring(0, name.length() - 2)), 0).getClass();
+        }
+
+        for (Class<?> primitive : new Class<?>[]{byte.class, short.class, int.class, long.class, float.class, double.class, boolean.class, char.class}) {
+            if (primitive.getName().equals(name)) {
+                return primitive;
+            }
+        }
+
+        try {
+            return Class.forName(name.indexOf('.') == -1 ? "java.lang." + name : name, false, owner.getClassLoader());
+        }
+        catch (ClassNotFoundException e) {
+            throw new RuntimeException(MessageFormat.format("Could not find the parameter type {0} (from {1})", name, owner.getName()), e);
+        }
+    }
+
+    private static Class<?> getStepType(Member step) {
+        return step instanceof Field ? ((Field) step).getType() : ((Method) step).getReturnType();
+    }
+
+    private static Segment[] parse(String expression) {
+        List<Segment> segments = new ArrayList<Segment>();
+        boolean nullCheck = false;
+        boolean inBrackets = false;
+        int start = 0;
+
+        // the end is treated like a '.', to add the last step
+        for (int i = 0; i <= expression.length(); i++) {
+            char c = i < expression.length() ? expression.charAt(i) : '.';
+            if (c == '(' || c == ')') {
+                if (inBrackets == (c == '(')) {
+                    throw new RuntimeException(MessageFormat.format("Unexpected ''{0}'' at {1} in {2}", c, i, expression));
+                }
+
+                inBrackets = c == '(';
+            }
+            else if (c == '.' && !inBrackets) {
+                boolean nextNullCheck = i > start && expression.charAt(i - 1) == '?';
+                segments.add(parseSegment(expression, expression.substring(start, nextNullCheck ? i - 1 : i).trim(), nullCheck));
+                nullCheck = nextNullCheck;
+                start = i + 1;
+            }
+        }
+
+        if (inBrackets) {
+            throw new RuntimeException(MessageFormat.format("Missing a '')'' in {0}", expression));
+        }
+        else if (nullCheck) {
+            throw new RuntimeException(MessageFormat.format("The expression {0} ends with a ''?''", expression));
+        }
+
+        return segments.toArray(new Segment[segments.size()]);
+    }
+
+    private static Segment parseSegment(String expression, String text, boolean nullCheck) {
+        int bracket = text.indexOf('(');
+        String name = bracket == -1 ? text : text.substring(0, bracket).trim();
+        checkName(expression, name);
+        if (bracket == -1) {
+            return new Segment(name, null, null, nullCheck);
+        }
+        else if (!text.endsWith(")")) {
+            throw new RuntimeException(MessageFormat.format("Unexpected text after the parameters of {0} in {1}", name, expression));
+        }
+
+        String parameters = text.substring(bracket + 1, text.length() - 1).trim();
+        String[] typeNames = parameters.isEmpty() ? new String[0] : parameters.split(",");
+        for (int i = 0; i < typeNames.length; i++) {
+            typeNames[i] = typeNames[i].trim();
+            if (typeNames[i].isEmpty()) {
+                throw new RuntimeException(MessageFormat.format("Missing a parameter type for {0} in {1}", name, expression));
+            }
+        }
+
+        return new Segment(name, typeNames, null, nullCheck);
+    }
+
+    private static void checkName(String expression, String name) {
+        boolean valid = !name.isEmpty() && Character.isJavaIdentifierStart(name.charAt(0));
+        for (int i = 1; i < name.length() && valid; i++) {
+            valid = Character.isJavaIdentifierPart(name.charAt(i));
+        }
+
+        if (!valid) {
+            throw new RuntimeException(MessageFormat.format("Invalid step name ''{0}'' in {1}", name, expression));
+        }
+    }
+
+    private static String getTypeName(Class<?> type) {
+        return type.isArray() ? getTypeName(type.getComponentType()) + "[]" : type.getName();
+    }
+
+    public static final class Builder<T> {
+        private final Class<T> rootType;
+        private final List<Segment> segments;
+        private boolean nullCheck;
+
+        private Builder(Class<T> rootType) {
+            this.rootType = rootType;
+            this.segments = new ArrayList<Segment>();
+        }
+
+        /**
+         * Adds a property step (the getter getX() or isX(), the method x() or the field x)
+         */
+        public Builder<T> step(String name) {
+            return addSegment(name, null);
+        }
+
+        /**
+         * Adds a method step, whose parameters are read from the next slots of the {@link ArgumentFrame}
+         */
+        public Builder<T> step(String name, Class<?>... parameterTypes) {
+            return addSegment(name, parameterTypes.clone());
+        }
+
+        /**
+         * Makes the path return null (or 0/false) if the value of the last added step is null, rather than using it for the next step
+         */
+        public Builder<T> nullSafe() {
+            if (this.segments.isEmpty()) {
+                throw new IllegalStateException("There isn't a step to check for null yet");
+            }
+
+            this.nullCheck = true;
+            return this;
+        }
+
+        /**
+         * Compiles (or gets the cached) path
+         * @throws RuntimeException If there are no steps, or a step can't be found or accessed
+         */
+        public PropertyPath<T> build() {
+            if (this.segments.isEmpty()) {
+                throw new IllegalStateException("A path needs at least 1 step");
+            }
+            else if (this.nullCheck) {
+                throw new IllegalStateException("The last step can't be null safe, as there isn't a step after it");
+            }
+
+            return compile(this.rootType, this.segments.toArray(new Segment[this.segments.size()]));
+        }
+
+        private Builder<T> addSegment(String name, Class<?>[] parameterTypes) {
+            checkName(name, name);
+            this.segments.add(new Segment(name, null, parameterTypes, this.nullCheck));
+            this.nullCheck = false;
+            return this;
+        }
+    }
+
+    private static final class Segment {
+        private final String name;
+        private final String[] parameterTypeNames; // from an expression, loaded when the step is found
+        private final Class<?>[] parameterTypes;   // from a builder
+        private final boolean nullCheck;          // whether the value before this step is checked for null
+
+        private Segment(String name, String[] parameterTypeNames, Class<?>[] parameterTypes, boolean nullCheck) {
+            this.name = name;
+            this.parameterTypeNames = parameterTypeNames;
+            this.parameterTypes = parameterTypes;
+            this.nullCheck = nullCheck;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder(this.name);
+            if (this.parameterTypeNames != null || this.parameterTypes != null) {
+                builder.append('(');
+                int count = this.parameterTypes != null ? this.parameterTypes.length : this.parameterTypeNames.length;
+                for (int i = 0; i < count; i++) {
+                    builder.append(i == 0 ? "" : ",").append(this.parameterTypes != null ? getTypeName(this.parameterTypes[i]) : this.parameterTypeNames[i]);
+                }
+
+                builder.append(')');
+            }
+
+            return builder.toString();
+        }
+    }
+
+    // paths with the same root type and expression (without whitespace) share the same generated class. The steps are
+    // found up front (rather than when generating), as the path is cached against the shortest lived of their classes
+    private static final class PathKey {
+        private final Class<?> rootType;
+        private final Segment[] segments;
+        private final String expression;
+        private final Member[] steps;
+
+        private PathKey(Class<?> rootType, Segment[] segments) {
+            this.rootType = rootType;
+            this.segments = segments;
+            StringBuilder builder = new StringBuilder();
+            for (int i = 0; i < segments.length; i++) {
+                builder.append(i == 0 ? "" : segments[i].nullCheck ? "?." : ".").append(segments[i]);
+            }
+
+            this.expression = builder.toString();
+            this.steps = findSteps(rootType, segments, this.expression);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof PathKey)) {
+                return false;
+            }
+
+            PathKey key = (PathKey) obj;
+            return this.rootType == key.rootType && this.expression.equals(key.expression);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.rootType.hashCode() * 31 + this.expression.hashCode();
+        }
+    }
+}
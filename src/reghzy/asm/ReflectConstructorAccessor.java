@@ -0,0 +1,131 @@
+package reghzy.asm;
+
+import reghzy.asm.utils.ReflectHelper;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+
+/**
+ * A constructor accessor that uses reflection to create instances
+ * @param <T> The type of class being created
+ */
+public class ReflectConstructorAccessor<T> implements ConstructorAccessor<T> {
+    private static final Object[] EMPTY_ARR = new Object[0];
+
+    private final Class<T> ownerClass;
+    private final Constructor<T> constructor;
+
+    /**
+     * Crates a reflect constructor accessor that uses the given constructor
+     */
+    public ReflectConstructorAccessor(Constructor<T> constructor) {
+        if (!constructor.isAccessible()) {
+            constructor.setAccessible(true);
+        }
+
+        this.constructor = constructor;
+        this.ownerClass = constructor.getDeclaringClass();
+    }
+
+    /**
+     * Creates a constructor accessor that uses reflection to create instances
+     * @param targetClass The class to create instances of
+     * @param parameterTypes The constructor's parameter types
+     * @param <T> Target class type
+     * @return A constructor accessor
+     */
+    public static <T> ReflectConstructorAccessor<T> create(Class<T> targetClass, Class<?>... parameterTypes) {
+        return new ReflectConstructorAccessor<T>(ReflectHelper.findDeclaredConstructor(targetClass, parameterTypes));
+    }
+
+    public Class<T> getOwnerClass() {
+        return this.ownerClass;
+    }
+
+    public Constructor<T> getConstructor() {
+        return this.constructor;
+    }
+
+    @Override
+    public T newInstance() {
+        return newInstance(EMPTY_ARR);
+    }
+
+    @Override
+    public T newInstance(Object... params) {
+        try {
+            return this.constructor.newInstance(params);
+        }
+        catch (InstantiationException e) {
+            throw new RuntimeException("Cannot create an instance of an abstract class; InstantiationException", e);
+        }
+        catch (IllegalAccessException e) {
+            throw new RuntimeException("Constructor access was externally changed; IllegalAccessException", e);
+        }
+        catch (InvocationTargetException e) {
+            throw new RuntimeException("Unhandled exception while invoking constructor", e);
+        }
+    }
+
+    // the fixed-arity versions still have to box everything... not nice!
+
+    @Override
+    public T newInstanceInt(int p0) {
+        return newInstance(new Object[]{p0});
+    }
+
+    @Override
+    public T newInstanceInt(int p0, int p1) {
+        return newInstance(new Object[]{p0, p1});
+    }
+
+    @Override
+    public T newInstanceInt(int p0, int p1, int p2) {
+        return newInstance(new Object[]{p0, p1, p2});
+    }
+
+    @Override
+    public T newInstanceLong(long p0) {
+        return newInstance(new Object[]{p0});
+    }
+
+    @Override
+    public T newInstanceLong(long p0, long p1) {
+        return newInstance(new Object[]{p0, p1});
+    }
+
+    @Override
+    public T newInstanceLong(long p0, long p1, long p2) {
+        return newInstance(new Object[]{p0, p1, p2});
+    }
+
+    @Override
+    public T newInstanceDouble(double p0) {
+        return newInstance(new Object[]{p0});
+    }
+
+    @Override
+    public T newInstanceDouble(double p0, double p1) {
+        return newInstance(new Object[]{p0, p1});
+    }
+
+    @Override
+    public T newInstanceDouble(double p0, double p1, double p2) {
+        return newInstance(new Object[]{p0, p1, p2});
+    }
+
+    @Override
+    public T newInstanceRef(Object p0) {
+        return newInstance(new Object[]{p0});
+    }
+
+    @Override
+    public T newInstanceRef(Object p0, Object p1) {
+        return newInstance(new Object[]{p0, p1});
+    }
+
+    @Override
+    public T newInstanceRef(Object p0, Object p1, Object p2) {
+        return newInstance(new Object[]{p0, p1, p2});
+    }
+}
@@ -0,0 +1,264 @@
+package reghzy.asm;
+
+import reghzy.asm.utils.ReflectHelper;
+
+import java.lang.reflect.Field;
+import java.text.MessageFormat;
+
+/**
+ * A field accessor that uses reflection to get and set fields
+ * @param <T> The type of class in which the field is defined in (e.g ArrayList for elementData)
+ * @param <V> The field's value type
+ */
+public class ReflectFieldAccessor<T, V> implements FieldAccessor<T, V> {
+    private final Class<T> ownerClass;
+    private final Class<V> fieldType;
+    private final String fieldName;
+    private final Field field;
+
+    /**
+     * Crates a reflect field accessor that uses the given field
+     */
+    public ReflectFieldAccessor(Field field) {
+        if (!field.isAccessible()) {
+            field.setAccessible(true);
+        }
+
+        this.field = field;
+        this.ownerClass = (Class<T>) field.getDeclaringClass();
+        this.fieldType = (Class<V>) field.getType();
+        this.fieldName = field.getName();
+    }
+
+    /**
+     * Creates a field accessor that uses reflection to get/set the field
+     * @param targetClass The class in which the given field is stored in (can be a derived class, where the field is stored in a super class)
+     * @param fieldType   The class/type of the field. This will be checked against the actual field in the given target class
+     * @param fieldName   Name of the field
+     * @param <T>         Target class type
+     * @param <V>         Field type
+     * @return A field accessor
+     */
+    public static <T, V> ReflectFieldAccessor<T, V> create(Class<T> targetClass, Class<V> fieldType, String fieldName) {
+        Field field = ReflectHelper.findDeclaredField(targetClass, fieldName);
+        if (fieldType.isAssignableFrom(field.getType())) {
+            return new ReflectFieldAccessor<T, V>(field);
+        }
+
+        throw new RuntimeException(MessageFormat.format("Incompatible field type. Field type {0} cannot be assigned to {1}", field.getType().getName(), fieldType.getName()));
+    }
+
+    /**
+     * Creates a field accessor that uses reflection to get/set the field
+     * <p>
+     * This bypasses the field type checks that {@link ReflectFieldAccessor#create(Class, Class, String)}
+     * does, therefore assuming the correct type is always passed
+     * </p>
+     * @param targetClass The class in which the given field is stored in (can be a derived class, where the field is stored in a super class)
+     * @param fieldName   Name of the field
+     * @param <T>         Target class type
+     * @param <V>         Field type
+     * @return A field accessor
+     */
+    public static <T, V> ReflectFieldAccessor<T, V> create(Class<T> targetClass, String fieldName) {
+        return new ReflectFieldAccessor<T, V>(ReflectHelper.findDeclaredField(targetClass, fieldName));
+    }
+
+    public Class<T> getOwnerClass() {
+        return this.ownerClass;
+    }
+
+    public Class<V> getFieldType() {
+        return this.fieldType;
+    }
+
+    public String getFieldName() {
+        return this.fieldName;
+    }
+
+    public Field getField() {
+        return this.field;
+    }
+
+    @Override
+    public V get(T target) {
+        try {
+            return (V) this.field.get(target);
+        }
+        catch (IllegalAccessException e) {
+            throw new RuntimeException("Field access was externally changed; IllegalAccessException", e);
+        }
+    }
+
+    // the typed getters/setters don't box, reflection has its own primitive versions
+
+    @Override
+    public byte getByte(T target) {
+        try {
+            return this.field.getByte(target);
+        }
+        catch (IllegalAccessException e) {
+            throw new RuntimeException("Field access was externally changed; IllegalAccessException", e);
+        }
+    }
+
+    @Override
+    public short getShort(T target) {
+        try {
+            return this.field.getShort(target);
+        }
+        catch (IllegalAccessException e) {
+            throw new RuntimeException("Field access was externally changed; IllegalAccessException", e);
+        }
+    }
+
+    @Override
+    public int getInt(T target) {
+        try {
+            return this.field.getInt(target);
+        }
+        catch (IllegalAccessException e) {
+            throw new RuntimeException("Field access was externally changed; IllegalAccessException", e);
+        }
+    }
+
+    @Override
+    public long getLong(T target) {
+        try {
+            return this.field.getLong(target);
+        }
+        catch (IllegalAccessException e) {
+            throw new RuntimeException("Field access was externally changed; IllegalAccessException", e);
+        }
+    }
+
+    @Override
+    public float getFloat(T target) {
+        try {
+            return this.field.getFloat(target);
+        }
+        catch (IllegalAccessException e) {
+            throw new RuntimeException("Field access was externally changed; IllegalAccessException", e);
+        }
+    }
+
+    @Override
+    public double getDouble(T target) {
+        try {
+            return this.field.getDouble(target);
+        }
+        catch (IllegalAccessException e) {
+            throw new RuntimeException("Field access was externally changed; IllegalAccessException", e);
+        }
+    }
+
+    @Override
+    public boolean getBool(T target) {
+        try {
+            return this.field.getBoolean(target);
+        }
+        catch (IllegalAccessException e) {
+            throw new RuntimeException("Field access was externally changed; IllegalAccessException", e);
+        }
+    }
+
+    @Override
+    public char getChar(T target) {
+        try {
+            return this.field.getChar(target);
+        }
+        catch (IllegalAccessException e) {
+            throw new RuntimeException("Field access was externally changed; IllegalAccessException", e);
+        }
+    }
+
+    @Override
+    public void set(T target, V value) {
+        try {
+            this.field.set(target, value);
+        }
+        catch (IllegalAccessException e) {
+            throw new RuntimeException("Field access was externally changed; IllegalAccessException", e);
+        }
+    }
+
+    @Override
+    public void setByte(T target, byte value) {
+        try {
+            this.field.setByte(target, value);
+        }
+        catch (IllegalAccessException e) {
+            throw new RuntimeException("Field access was externally changed; IllegalAccessException", e);
+        }
+    }
+
+    @Override
+    public void setShort(T target, short value) {
+        try {
+            this.field.setShort(target, value);
+        }
+        catch (IllegalAccessException e) {
+            throw new RuntimeException("Field access was externally changed; IllegalAccessException", e);
+        }
+    }
+
+    @Override
+    public void setInt(T target, int value) {
+        try {
+            this.field.setInt(target, value);
+        }
+        catch (IllegalAccessException e) {
+            throw new RuntimeException("Field access was externally changed; IllegalAccessException", e);
+        }
+    }
+
+    @Override
+    public void setLong(T target, long value) {
+        try {
+            this.field.setLong(target, value);
+        }
+        catch (IllegalAccessException e) {
+            throw new RuntimeException("Field access was externally changed; IllegalAccessException", e);
+        }
+    }
+
+    @Override
+    public void setFloat(T target, float value) {
+        try {
+            this.field.setFloat(target, value);
+        }
+        catch (IllegalAccessException e) {
+            throw new RuntimeException("Field access was externally changed; IllegalAccessException", e);
+        }
+    }
+
+    @Override
+    public void setDouble(T target, double value) {
+        try {
+            this.field.setDouble(target, value);
+        }
+        catch (IllegalAccessException e) {
+            throw new RuntimeException("Field access was externally changed; IllegalAccessException", e);
+        }
+    }
+
+    @Override
+    public void setBool(T target, boolean value) {
+        try {
+            this.field.setBoolean(target, value);
+        }
+        catch (IllegalAccessException e) {
+            throw new RuntimeException("Field access was externally changed; IllegalAccessException", e);
+        }
+    }
+
+    @Override
+    public void setChar(T target, char value) {
+        try {
+            this.field.setChar(target, value);
+        }
+        catch (IllegalAccessException e) {
+            throw new RuntimeException("Field access was externally changed; IllegalAccessException", e);
+        }
+    }
+}
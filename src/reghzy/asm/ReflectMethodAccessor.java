@@ -236,4 +236,56 @@ public class ReflectMethodAccessor<T, V> implements MethodAccessor<T, V> {
             throw new RuntimeException("Unhandled exception while invoking method", e);
         }
     }
+
+    // the frame's slots are boxed into an array, so this isn't any faster than the Object[] methods
+
+    @Override
+    public V invoke(T target, ArgumentFrame frame) {
+        return invoke(target, frame.toArray(this.method.getParameterTypes()));
+    }
+
+    @Override
+    public byte invokeByte(T target, ArgumentFrame frame) {
+        return (Byte) invoke(target, frame);
+    }
+
+    @Override
+    public short invokeShort(T target, ArgumentFrame frame) {
+        return (Short) invoke(target, frame);
+    }
+
+    @Override
+    public int invokeInt(T target, ArgumentFrame frame) {
+        return (Integer) invoke(target, frame);
+    }
+
+    @Override
+    public long invokeLong(T target, ArgumentFrame frame) {
+        return (Long) invoke(target, frame);
+    }
+
+    @Override
+    public float invokeFloat(T target, ArgumentFrame frame) {
+        return (Float) invoke(target, frame);
+    }
+
+    @Override
+    public double invokeDouble(T target, ArgumentFrame frame) {
+        return (Double) invoke(target, frame);
+    }
+
+    @Override
+    public boolean invokeBool(T target, ArgumentFrame frame) {
+        return (Boolean) invoke(target, frame);
+    }
+
+    @Override
+    public char invokeChar(T target, ArgumentFrame frame) {
+        return (Character) invoke(target, frame);
+    }
+
+    @Override
+    public void invokeVoid(T target, ArgumentFrame frame) {
+        invokeVoid(target, frame.toArray(this.method.getParameterTypes()));
+    }
 }
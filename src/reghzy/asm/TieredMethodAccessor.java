@@ -0,0 +1,360 @@
+package reghzy.asm;
+
+import reghzy.asm.utils.ClassGenerator;
+
+import java.lang.reflect.Method;
+import java.text.MessageFormat;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * A method accessor that starts out using reflection, and swaps itself over to a generated accessor once it has been
+ * invoked enough times (like the JDK's own reflection "inflation"). Methods that are only called once or twice never
+ * cost a generated class
+ * <pre>
+ * MethodAccessor&lt;World, Integer&gt; accessor = ASMMethodAccessor.createTiered(World.class, "getBlockId", int.class, int.class, int.class);
+ * </pre>
+ * <p>
+ *     Once the invocation count goes over the {@link TieredMethodAccessor#setInflationThreshold(int) threshold}, the
+ *     accessor is generated on the {@link TieredMethodAccessor#setInflationExecutor(Executor) inflation executor}
+ *     (so the calling thread never waits for ASM), and calls keep using reflection until it's ready. The generated
+ *     accessor is the same one that {@link ASMMethodAccessor#create(Method)} returns
+ * </p>
+ * <p>
+ *     The invocation count isn't atomic, so with lots of threads it may inflate a little after the threshold.
+ *     Methods that the current backend can't access stay reflective (and the listeners are told it failed)
+ * </p>
+ * @param <T> The type of class in which the method is defined in
+ * @param <V> The method's return type
+ */
+public final class TieredMethodAccessor<T, V> implements MethodAccessor<T, V> {
+    private static final int REFLECTIVE = 0;
+    private static final int INFLATING = 1;
+    private static final int INFLATED = 2;
+    private static final int FAILED = 3;
+
+    private static final AtomicIntegerFieldUpdater<TieredMethodAccessor<?, ?>> STATE = newStateUpdater();
+    private static final List<InflationListener> LISTENERS = new CopyOnWriteArrayList<InflationListener>();
+    private static volatile int INFLATION_THRESHOLD = 15;
+    private static volatile Executor INFLATION_EXECUTOR; // null for the shared generator pool
+
+    private final Method method;
+    private volatile MethodAccessor<T, V> delegate;
+    private volatile int state;
+    private int invocations; // not atomic, it only needs to be roughly right
+
+    TieredMethodAccessor(Method method) {
+        this.method = method;
+        this.delegate = new ReflectMethodAccessor<T, V>(method);
+    }
+
+    /**
+     * Gets the number of invocations after which tiered accessors are inflated
+     */
+    public static int getInflationThreshold() {
+        return INFLATION_THRESHOLD;
+    }
+
+    /**
+     * Sets the number of invocations after which tiered accessors are inflated. This applies to existing accessors too
+     * @param threshold The threshold. 0 inflates on the first invocation, and {@link Integer#MAX_VALUE} never does
+     */
+    public static void setInflationThreshold(int threshold) {
+        if (threshold < 0) {
+            throw new IllegalArgumentException("The inflation threshold cannot be negative: " + threshold);
+        }
+
+        INFLATION_THRESHOLD = threshold;
+    }
+
+    /**
+     * Gets the executor that accessors are generated on, or null if it's the shared generator pool (the same one as
+     * {@link ASMMethodAccessor#prewarmAsync(java.util.Collection)})
+     */
+    public static Executor getInflationExecutor() {
+        return INFLATION_EXECUTOR;
+    }
+
+    /**
+     * Sets the executor that accessors are generated on. An executor that runs the task straight away
+     * inflates on the calling thread
+     * @param executor The executor, or null to use the shared generator pool
+     */
+    public static void setInflationExecutor(Executor executor) {
+        INFLATION_EXECUTOR = executor;
+    }
+
+    public static void addInflationListener(InflationListener listener) {
+        if (listener == null) {
+            throw new NullPointerException("Listener cannot be null");
+        }
+
+        LISTENERS.add(listener);
+    }
+
+    public static void removeInflationListener(InflationListener listener) {
+        LISTENERS.remove(listener);
+    }
+
+    // newUpdater only takes the raw class, so this narrows it to the wildcard type (the class is the same either way)
+    @SuppressWarnings("unchecked")
+    private static AtomicIntegerFieldUpdater<TieredMethodAccessor<?, ?>> newStateUpdater() {
+        Class<TieredMethodAccessor<?, ?>> type = (Class<TieredMethodAccessor<?, ?>>) (Class<?>) TieredMethodAccessor.class;
+        return AtomicIntegerFieldUpdater.newUpdater(type, "state");
+    }
+
+    public Method getMethod() {
+        return this.method;
+    }
+
+    /**
+     * Whether the generated accessor has been swapped in
+     */
+    public boolean isInflated() {
+        return this.state == INFLATED;
+    }
+
+    /**
+     * The number of times this was invoked before it was inflated (roughly, see the class' docs)
+     */
+    public int getInvocationCount() {
+        return this.invocations;
+    }
+
+    /**
+     * The accessor that's currently used, either a {@link ReflectMethodAccessor} or the generated one
+     */
+    public MethodAccessor<T, V> getDelegate() {
+        return this.delegate;
+    }
+
+    /**
+     * Generates the accessor on the calling thread and swaps it in now, rather than waiting for the threshold.
+     * Does nothing if it's already inflated or being inflated
+     * @return This accessor
+     */
+    public TieredMethodAccessor<T, V> inflate() {
+        if (STATE.compareAndSet(this, REFLECTIVE, INFLATING)) {
+            runInflation();
+        }
+
+        return this;
+    }
+
+    private MethodAccessor<T, V> next() {
+        MethodAccessor<T, V> delegate = this.delegate;
+        if (this.state == REFLECTIVE && ++this.invocations > INFLATION_THRESHOLD) {
+            scheduleInflation();
+        }
+
+        return delegate;
+    }
+
+    private void scheduleInflation() {
+        if (!STATE.compareAndSet(this, REFLECTIVE, INFLATING)) {
+            return;
+        }
+
+        Executor executor = INFLATION_EXECUTOR;
+        try {
+            (executor != null ? executor : ASMMethodAccessor.GeneratorPool.POOL).execute(new Runnable() {
+                @Override
+                public void run() {
+                    runInflation();
+                }
+            });
+        }
+        catch (RejectedExecutionException e) {
+            // e.g the executor was shut down. Try again after another threshold's worth of invocations
+            this.invocations = 0;
+            this.state = REFLECTIVE;
+        }
+    }
+
+    private void runInflation() {
+        long start = System.nanoTime();
+        MethodAccessor<T, V> generated;
+        try {
+            if (!ClassGenerator.canAccess(this.method)) {
+                throw new RuntimeException(MessageFormat.format("The method {0}.{1} cannot be accessed by the {2} backend",
+                                                                this.method.getDeclaringClass().getName(), this.method.getName(), ClassGenerator.getBackend()));
+            }
+
+            generated = ASMMethodAccessor.create(this.method);
+        }
+        catch (Throwable e) {
+            this.state = FAILED;
+            for (InflationListener listener : LISTENERS) {
+                listener.onInflationFailed(this, e);
+            }
+
+            return;
+        }
+
+        long nanos = System.nanoTime() - start;
+        this.delegate = generated;
+        this.state = INFLATED;
+        for (InflationListener listener : LISTENERS) {
+            listener.onInflated(this, generated, nanos);
+        }
+    }
+
+    @Override
+    public V invoke(T target) {
+        return next().invoke(target);
+    }
+
+    @Override
+    public V invoke(T target, Object... params) {
+        return next().invoke(target, params);
+    }
+
+    @Override
+    public V invoke(T target, ArgumentFrame frame) {
+        return next().invoke(target, frame);
+    }
+
+    @Override
+    public byte invokeByte(T target) {
+        return next().invokeByte(target);
+    }
+
+    @Override
+    public byte invokeByte(T target, Object... params) {
+        return next().invokeByte(target, params);
+    }
+
+    @Override
+    public byte invokeByte(T target, ArgumentFrame frame) {
+        return next().invokeByte(target, frame);
+    }
+
+    @Override
+    public short invokeShort(T target) {
+        return next().invokeShort(target);
+    }
+
+    @Override
+    public short invokeShort(T target, Object... params) {
+        return next().invokeShort(target, params);
+    }
+
+    @Override
+    public short invokeShort(T target, ArgumentFrame frame) {
+        return next().invokeShort(target, frame);
+    }
+
+    @Override
+    public int invokeInt(T target) {
+        return next().invokeInt(target);
+    }
+
+    @Override
+    public int invokeInt(T target, Object... params) {
+        return next().invokeInt(target, params);
+    }
+
+    @Override
+    public int invokeInt(T target, ArgumentFrame frame) {
+        return next().invokeInt(target, frame);
+    }
+
+    @Override
+    public long invokeLong(T target) {
+        return next().invokeLong(target);
+    }
+
+    @Override
+    public long invokeLong(T target, Object... params) {
+        return next().invokeLong(target, params);
+    }
+
+    @Override
+    public long invokeLong(T target, ArgumentFrame frame) {
+        return next().invokeLong(target, frame);
+    }
+
+    @Override
+    public float invokeFloat(T target) {
+        return next().invokeFloat(target);
+    }
+
+    @Override
+    public float invokeFloat(T target, Object... params) {
+        return next().invokeFloat(target, params);
+    }
+
+    @Override
+    public float invokeFloat(T target, ArgumentFrame frame) {
+        return next().invokeFloat(target, frame);
+    }
+
+    @Override
+    public double invokeDouble(T target) {
+        return next().invokeDouble(target);
+    }
+
+    @Override
+    public double invokeDouble(T target, Object... params) {
+        return next().invokeDouble(target, params);
+    }
+
+    @Override
+    public double invokeDouble(T target, ArgumentFrame frame) {
+        return next().invokeDouble(target, frame);
+    }
+
+    @Override
+    public boolean invokeBool(T target) {
+        return next().invokeBool(target);
+    }
+
+    @Override
+    public boolean invokeBool(T target, Object... params) {
+        return next().invokeBool(target, params);
+    }
+
+    @Override
+    public boolean invokeBool(T target, ArgumentFrame frame) {
+        return next().invokeBool(target, frame);
+    }
+
+    @Override
+    public char invokeChar(T target) {
+        return next().invokeChar(target);
+    }
+
+    @Override
+    public char invokeChar(T target, Object... params) {
+        return next().invokeChar(target, params);
+    }
+
+    @Override
+    public char invokeChar(T target, ArgumentFrame frame) {
+        return next().invokeChar(target, frame);
+    }
+
+    @Override
+    public void invokeVoid(T target) {
+        next().invokeVoid(target);
+    }
+
+    @Override
+    public void invokeVoid(T target, Object... params) {
+        next().invokeVoid(target, params);
+    }
+
+    @Override
+    public void invokeVoid(T target, ArgumentFrame frame) {
+        next().invokeVoid(target, frame);
+    }
+
+    @Override
+    public String toString() {
+        String state = this.state == INFLATED ? "inflated" : this.state == FAILED ? "failed" : this.state == INFLATING ? "inflating" : "reflective";
+        return MessageFormat.format("TieredMethodAccessor({0}.{1}, {2}, {3} invocations)", this.method.getDeclaringClass().getName(), this.method.getName(), state, this.invocations);
+    }
+}
@@ -0,0 +1,275 @@
+package reghzy.asm.events;
+
+import reghzy.asm.utils.ClassGenerator;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * An event bus that compiles the handlers of each event type into a single generated class, which directly invokes every
+ * handler in priority order (no accessors, reflection or Object[] in between)
+ * <pre>
+ * public class MyListener {
+ *     &#64;SubscribeEvent(priority = EventPriority.HIGH)
+ *     public void onBlockBreak(BlockBreakEvent event) { ... }
+ * }
+ *
+ * bus.register(new MyListener());
+ * bus.post(new BlockBreakEvent(...));
+ * </pre>
+ * <p>
+ *     Registering and unregistering are lock-free; they swap in a new (copy-on-write) array of handlers, so posting never
+ *     blocks and never sees a half-updated list. The dispatcher for an event type is only regenerated the next time that
+ *     event type is posted after the handlers changed (and only if its own handlers changed)
+ * </p>
+ * <p>
+ *     Handlers receive events of their parameter type and any type that extends it. If a handler isn't public (or is in
+ *     a non-public class), that event type's handlers are invoked with reflection instead
+ * </p>
+ */
+public class EventBus {
+    private static final Subscriber[] NO_SUBSCRIBERS = new Subscriber[0];
+    private static final EventDispatcher NO_HANDLERS = new EventDispatcher() {
+        @Override
+        public void dispatch(Object event) { }
+    };
+
+    private static final Comparator<Subscriber> PRIORITY_ORDER = new Comparator<Subscriber>() {
+        @Override
+        public int compare(Subscriber a, Subscriber b) {
+            int priority = a.priority.compareTo(b.priority);
+            return priority != 0 ? priority : (a.order < b.order ? -1 : (a.order == b.order ? 0 : 1));
+        }
+    };
+
+    // every handler, in priority order. Replaced (never modified) when handlers are registered/unregistered
+    private final AtomicReference<Subscriber[]> subscribers = new AtomicReference<Subscriber[]>(NO_SUBSCRIBERS);
+    private final AtomicLong nextOrder = new AtomicLong();
+    private final AtomicLong compiledDispatchers = new AtomicLong();
+    private volatile EventType lastEventType = new EventType(Void.class); // events can't be void
+    // the event types that have been posted. Owned by the bus rather than a ClassValue, as its values are stored in the
+    // event classes, so they'd keep the listeners (and the bus) alive for as long as the event class is loaded, e.g
+    // forever for Integer. Replaced (never modified) when an event type is added or removed
+    private final AtomicReference<Map<Class<?>, EventType>> eventTypes = new AtomicReference<Map<Class<?>, EventType>>(Collections.<Class<?>, EventType>emptyMap());
+
+    /**
+     * Registers the event handlers (methods annotated with {@link SubscribeEvent}) of the given listener
+     * @param listener An instance to register its instance handlers, or a {@link Class} to register its static handlers
+     * @throws RuntimeException If a handler doesn't have exactly 1 parameter
+     */
+    public void register(Object listener) {
+        List<Subscriber> added = new ArrayList<Subscriber>();
+        boolean isStatic = listener instanceof Class;
+        Class<?> listenerClass = isStatic ? (Class<?>) listener : listener.getClass();
+        Set<String> signatures = new HashSet<String>();
+        for (Class<?> clazz = listenerClass; clazz != null && clazz != Object.class; clazz = clazz.getSuperclass()) {
+            for (Method method : clazz.getDeclaredMethods()) {
+                SubscribeEvent annotation = method.getAnnotation(SubscribeEvent.class);
+                if (annotation == null || method.isBridge() || Modifier.isStatic(method.getModifiers()) != isStatic) {
+                    continue;
+                }
+
+                if (method.getParameterTypes().length != 1) {
+                    throw new RuntimeException(MessageFormat.format("The event handler {0}.{1} must have exactly 1 parameter (the event)", clazz.getName(), method.getName()));
+                }
+
+                // an overridden handler is only registered once (the override); a static one only in its own class
+                if ((isStatic && clazz != listenerClass) || !signatures.add(method.getName() + Arrays.toString(method.getParameterTypes()))) {
+                    continue;
+                }
+
+                added.add(new Subscriber(isStatic ? null : listener, method, annotation.priority(), this.nextOrder.getAndIncrement()));
+            }
+        }
+
+        if (added.isEmpty()) {
+            return;
+        }
+
+        Subscriber[] current, updated;
+        do {
+            current = this.subscribers.get();
+            updated = Arrays.copyOf(current, current.length + added.size());
+            for (int i = 0; i < added.size(); i++) {
+                updated[current.length + i] = added.get(i);
+            }
+
+            Arrays.sort(updated, PRIORITY_ORDER);
+        } while (!this.subscribers.compareAndSet(current, updated));
+    }
+
+    /**
+     * Unregisters the event handlers of the given listener (the same instance or class passed to {@link EventBus#register(Object)})
+     */
+    public void unregister(Object listener) {
+        Subscriber[] current, updated;
+        do {
+            current = this.subscribers.get();
+            List<Subscriber> remaining = new ArrayList<Subscriber>(current.length);
+            for (Subscriber subscriber : current) {
+                if (subscriber.listener != listener && !(listener instanceof Class && subscriber.listener == null && subscriber.method.getDeclaringClass() == listener)) {
+                    remaining.add(subscriber);
+                }
+            }
+
+            if (remaining.size() == current.length) {
+                return;
+            }
+
+            updated = remaining.toArray(new Subscriber[remaining.size()]);
+        } while (!this.subscribers.compareAndSet(current, updated));
+
+        removeEventTypes(listener);
+    }
+
+    /**
+     * Posts the event to every handler of its type (and super types), in priority order
+     * @param event The event
+     * @throws NullPointerException If the event is null
+     */
+    public void post(Object event) {
+        // most buses post the same event type over and over, so skip the ClassValue lookup for that
+        Class<?> type = event.getClass();
+        EventType eventType = this.lastEventType;
+        if (eventType.type != type) {
+            this.lastEventType = eventType = getEventType(type);
+        }
+
+        eventType.getDispatcher(this, this.subscribers.get()).dispatch(event);
+    }
+
+    /**
+     * The number of dispatcher classes that were generated, for checking how often they're recompiled
+     */
+    public long getCompiledDispatchers() {
+        return this.compiledDispatchers.get();
+    }
+
+    private EventType getEventType(Class<?> type) {
+        Map<Class<?>, EventType> current, updated;
+        EventType eventType;
+        do {
+            current = this.eventTypes.get();
+            eventType = current.get(type);
+            if (eventType != null) {
+                return eventType;
+            }
+
+            updated = new IdentityHashMap<Class<?>, EventType>(current);
+            updated.put(type, eventType = new EventType(type));
+        } while (!this.eventTypes.compareAndSet(current, updated));
+
+        return eventType;
+    }
+
+    // removes the event types that the listener handled (which have to be recompiled anyway) and the ones without any
+    // handlers, so that an unregistered listener's event types and dispatchers (e.g a plugin's) aren't kept alive
+    private void removeEventTypes(Object listener) {
+        Map<Class<?>, EventType> current, updated;
+        do {
+            current = this.eventTypes.get();
+            updated = new IdentityHashMap<Class<?>, EventType>(current);
+            for (EventType eventType : current.values()) {
+                Subscriber[] handlers = eventType.compiled.handlers;
+                boolean remove = handlers.length == 0;
+                for (int i = 0; i < handlers.length && !remove; i++) {
+                    remove = handlers[i].listener == listener || (listener instanceof Class && handlers[i].listener == null && handlers[i].method.getDeclaringClass() == listener);
+                }
+
+                if (remove) {
+                    updated.remove(eventType.type);
+                }
+            }
+
+            if (updated.size() == current.size()) {
+                return;
+            }
+        } while (!this.eventTypes.compareAndSet(current, updated));
+    }
+
+    private EventDispatcher compile(Class<?> eventType, Subscriber[] handlers) {
+        if (handlers.length == 0) {
+            return NO_HANDLERS;
+        }
+
+        for (Subscriber handler : handlers) {
+            if (!handler.canGenerate()) {
+                return new ReflectEventDispatcher(handlers);
+            }
+        }
+
+        Method[] methods = new Method[handlers.length];
+        Object[] listeners = new Object[handlers.length];
+        for (int i = 0; i < handlers.length; i++) {
+            methods[i] = handlers[i].method;
+            listeners[i] = handlers[i].listener;
+        }
+
+        Class<?> clazz = ClassGenerator.generateEventDispatcher(eventType, methods);
+        this.compiledDispatchers.incrementAndGet();
+        try {
+            return (EventDispatcher) clazz.getConstructor(Object[].class).newInstance(new Object[]{listeners});
+        }
+        catch (Throwable e) {
+            throw new RuntimeException("Failed to create the event dispatcher", e);
+        }
+    }
+
+    /**
+     * The compiled dispatcher of an event type, and the subscribers that it was compiled from
+     */
+    private static final class Compiled {
+        private final Subscriber[] source;   // all of the bus' subscribers at the time
+        private final Subscriber[] handlers; // the ones that handle this event type
+        private final EventDispatcher dispatcher;
+
+        private Compiled(Subscriber[] source, Subscriber[] handlers, EventDispatcher dispatcher) {
+            this.source = source;
+            this.handlers = handlers;
+            this.dispatcher = dispatcher;
+        }
+    }
+
+    // doesn't reference the bus, which is passed to getDispatcher instead
+    private static final class EventType {
+        private final Class<?> type;
+        private volatile Compiled compiled = new Compiled(NO_SUBSCRIBERS, NO_SUBSCRIBERS, NO_HANDLERS);
+
+        private EventType(Class<?> type) {
+            this.type = type;
+        }
+
+        private EventDispatcher getDispatcher(EventBus bus, Subscriber[] subscribers) {
+            Compiled compiled = this.compiled;
+            if (compiled.source == subscribers) {
+                return compiled.dispatcher;
+            }
+
+            // the handlers changed. if multiple threads get here at the same time, they might each compile it, but
+            // the results are the same, so it doesn't matter which one is kept
+            List<Subscriber> handlers = new ArrayList<Subscriber>();
+            for (Subscriber subscriber : subscribers) {
+                if (subscriber.eventType.isAssignableFrom(this.type)) {
+                    handlers.add(subscriber);
+                }
+            }
+
+            Subscriber[] array = handlers.toArray(new Subscriber[handlers.size()]);
+            EventDispatcher dispatcher = Arrays.equals(array, compiled.handlers) ? compiled.dispatcher : bus.compile(this.type, array);
+            this.compiled = new Compiled(subscribers, array, dispatcher);
+            return dispatcher;
+        }
+    }
+}
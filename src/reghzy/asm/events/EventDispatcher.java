@@ -0,0 +1,11 @@
+package reghzy.asm.events;
+
+/**
+ * Invokes every handler of a specific event type, in priority order. These are generated by {@link EventBus}
+ * <p>
+ *     This has to be public, so that the generated classes (which are in another class loader) can implement it
+ * </p>
+ */
+public interface EventDispatcher {
+    void dispatch(Object event);
+}
@@ -0,0 +1,12 @@
+package reghzy.asm.events;
+
+/**
+ * The order that event handlers are invoked in. Handlers with the same priority are invoked in the order they were registered
+ */
+public enum EventPriority {
+    HIGHEST,
+    HIGH,
+    NORMAL,
+    LOW,
+    LOWEST
+}
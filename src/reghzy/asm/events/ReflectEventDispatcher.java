@@ -0,0 +1,44 @@
+package reghzy.asm.events;
+
+import java.lang.reflect.InvocationTargetException;
+import java.text.MessageFormat;
+
+/**
+ * An event dispatcher that uses reflection, for when a generated dispatcher can't access one of the handlers
+ */
+class ReflectEventDispatcher implements EventDispatcher {
+    private final Subscriber[] subscribers;
+
+    ReflectEventDispatcher(Subscriber[] subscribers) {
+        for (Subscriber subscriber : subscribers) {
+            if (!subscriber.method.isAccessible()) {
+                subscriber.method.setAccessible(true);
+            }
+        }
+
+        this.subscribers = subscribers;
+    }
+
+    @Override
+    public void dispatch(Object event) {
+        for (Subscriber subscriber : this.subscribers) {
+            try {
+                subscriber.method.invoke(subscriber.listener, event);
+            }
+            catch (IllegalAccessException e) {
+                throw new RuntimeException("Method access was externally changed; IllegalAccessException", e);
+            }
+            catch (InvocationTargetException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                else if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+
+                throw new RuntimeException(MessageFormat.format("Event handler {0}.{1} threw an exception", subscriber.method.getDeclaringClass().getName(), subscriber.method.getName()), cause);
+            }
+        }
+    }
+}
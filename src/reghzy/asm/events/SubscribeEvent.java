@@ -0,0 +1,20 @@
+package reghzy.asm.events;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a method as an event handler. The method must have exactly 1 parameter, which is the event type it handles
+ * (it also receives any events that extend that type). Static handlers are registered by passing the class to
+ * {@link EventBus#register(Object)}, instance handlers by passing an instance
+ * <p>
+ *     Handlers should be public (and in a public class), otherwise they're invoked with reflection
+ * </p>
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface SubscribeEvent {
+    EventPriority priority() default EventPriority.NORMAL;
+}
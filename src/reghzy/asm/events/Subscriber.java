@@ -0,0 +1,33 @@
+package reghzy.asm.events;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+/**
+ * A registered event handler
+ */
+final class Subscriber {
+    final Object listener; // null for static handlers
+    final Method method;
+    final Class<?> eventType;
+    final EventPriority priority;
+    final long order; // the registration order, for sorting handlers with the same priority
+
+    Subscriber(Object listener, Method method, EventPriority priority, long order) {
+        this.listener = listener;
+        this.method = method;
+        this.eventType = method.getParameterTypes()[0];
+        this.priority = priority;
+        this.order = order;
+    }
+
+    /**
+     * Checks if a generated dispatcher can directly invoke this handler. Dispatchers aren't hidden classes
+     * (they invoke lots of different classes), so the handler, its class and its event type must be public
+     */
+    boolean canGenerate() {
+        return Modifier.isPublic(this.method.getModifiers()) &&
+               Modifier.isPublic(this.method.getDeclaringClass().getModifiers()) &&
+               Modifier.isPublic(this.eventType.getModifiers());
+    }
+}
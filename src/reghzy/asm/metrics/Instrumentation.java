@@ -0,0 +1,22 @@
+package reghzy.asm.metrics;
+
+/**
+ * What generated method accessors measure about their invocations, see {@link InvocationMetrics}
+ */
+public enum Instrumentation {
+    /**
+     * Nothing is measured. The generated code is exactly the same as it would be without instrumentation
+     */
+    NONE,
+
+    /**
+     * Every invocation increments a counter
+     */
+    COUNT,
+
+    /**
+     * Every invocation increments a counter, and 1 in every {@link InvocationMetrics#getSampleRate() sample rate}
+     * invocations is timed with {@link System#nanoTime()}
+     */
+    COUNT_AND_LATENCY
+}
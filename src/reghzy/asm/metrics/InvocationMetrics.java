@@ -0,0 +1,281 @@
+package reghzy.asm.metrics;
+
+import org.objectweb.asm.Type;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The invocation count (and sampled latency) of a method, measured by the generated code of its accessors
+ * <p>
+ *     This is only measured when {@link reghzy.asm.utils.ClassGenerator#setInstrumentation(Instrumentation)} is enabled
+ *     before the accessors are generated. The counters are {@link LongAdder}s, so accessors being
+ *     invoked from lots of threads don't fight over a single counter
+ * </p>
+ * <pre>
+ * ClassGenerator.setInstrumentation(Instrumentation.COUNT_AND_LATENCY);
+ * ... create and use accessors
+ * for (InvocationMetrics metrics : InvocationMetrics.getAll()) {
+ *     System.out.println(metrics);
+ * }
+ * </pre>
+ * <p>
+ *     Or call {@link InvocationMetrics#registerMBean()} to see them in jconsole/visualvm
+ * </p>
+ */
+public final class InvocationMetrics {
+    private static final String MBEAN_NAME = "reghzy.asm:type=InvocationMetrics";
+    private static final ConcurrentHashMap<String, InvocationMetrics> METRICS = new ConcurrentHashMap<String, InvocationMetrics>();
+    private static volatile int sampleRate = 64;
+
+    private final String name;
+    private final LongAdder invocations = new LongAdder();
+    private final LongAdder samples = new LongAdder();
+    private final LongAdder sampledNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    private InvocationMetrics(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Gets (or creates) the metrics with the given name. Generated accessors call this from their static initializer
+     * @param name The method's name, see {@link InvocationMetrics#getName(Method)}
+     */
+    public static InvocationMetrics get(String name) {
+        InvocationMetrics metrics = METRICS.get(name);
+        if (metrics == null) {
+            InvocationMetrics newMetrics = new InvocationMetrics(name);
+            metrics = METRICS.putIfAbsent(name, newMetrics);
+            if (metrics == null) {
+                metrics = newMetrics;
+            }
+        }
+
+        return metrics;
+    }
+
+    /**
+     * Gets the metrics of the given method, or null if no instrumented accessor has been generated for it
+     */
+    public static InvocationMetrics get(Method method) {
+        return METRICS.get(getName(method));
+    }
+
+    /**
+     * Gets the metrics of every method that has an instrumented accessor, with the most invoked first
+     */
+    public static List<InvocationMetrics> getAll() {
+        List<InvocationMetrics> list = new ArrayList<InvocationMetrics>(METRICS.values());
+        Collections.sort(list, new Comparator<InvocationMetrics>() {
+            @Override
+            public int compare(InvocationMetrics a, InvocationMetrics b) {
+                long x = a.getInvocations(), y = b.getInvocations();
+                return x > y ? -1 : (x == y ? 0 : 1);
+            }
+        });
+
+        return list;
+    }
+
+    /**
+     * The name that the metrics of the given method are stored with, e.g "com.example.World.getBlockId(III)I"
+     */
+    public static String getName(Method method) {
+        return method.getDeclaringClass().getName() + '.' + method.getName() + Type.getMethodDescriptor(method);
+    }
+
+    /**
+     * 1 in this many invocations are timed, when the instrumentation is {@link Instrumentation#COUNT_AND_LATENCY}
+     */
+    public static int getSampleRate() {
+        return sampleRate;
+    }
+
+    /**
+     * Sets how often invocations are timed. 1 times every invocation
+     * @throws IllegalArgumentException If the rate is less than 1
+     */
+    public static void setSampleRate(int rate) {
+        if (rate < 1) {
+            throw new IllegalArgumentException("The sample rate must be at least 1");
+        }
+
+        sampleRate = rate;
+    }
+
+    /**
+     * Resets the metrics of every method back to 0
+     */
+    public static void resetAll() {
+        for (InvocationMetrics metrics : METRICS.values()) {
+            metrics.reset();
+        }
+    }
+
+    /**
+     * Registers the {@link InvocationMetricsMXBean} with the platform MBean server, as "reghzy.asm:type=InvocationMetrics".
+     * Does nothing if it's already registered
+     * @return The MBean's name
+     * @throws RuntimeException If it could not be registered
+     */
+    public static ObjectName registerMBean() {
+        try {
+            ObjectName name = new ObjectName(MBEAN_NAME);
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (!server.isRegistered(name)) {
+                try {
+                    server.registerMBean(new MXBean(), name);
+                }
+                catch (InstanceAlreadyExistsException ignored) { }
+            }
+
+            return name;
+        }
+        catch (JMException e) {
+            throw new RuntimeException("Failed to register the invocation metrics MBean", e);
+        }
+    }
+
+    // called by the generated code (Instrumentation.COUNT)
+    public void increment() {
+        this.invocations.increment();
+    }
+
+    // called by the generated code before invoking the method (Instrumentation.COUNT_AND_LATENCY).
+    // Returns the start time if this invocation is sampled, otherwise 0
+    public long enter() {
+        this.invocations.increment();
+        int rate = sampleRate;
+        if (rate == 1 || ThreadLocalRandom.current().nextInt(rate) == 0) {
+            return System.nanoTime();
+        }
+
+        return 0L;
+    }
+
+    // called by the generated code after the method returns (Instrumentation.COUNT_AND_LATENCY),
+    // with the value that enter returned. Not called if the method throws an exception
+    public void exit(long start) {
+        if (start == 0L) {
+            return;
+        }
+
+        long nanos = System.nanoTime() - start;
+        this.samples.increment();
+        this.sampledNanos.add(nanos);
+        long max;
+        while (nanos > (max = this.maxNanos.get()) && !this.maxNanos.compareAndSet(max, nanos)) { }
+    }
+
+    /**
+     * The method's name, see {@link InvocationMetrics#getName(Method)}
+     */
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * The number of times the method was invoked through its (instrumented) accessors
+     */
+    public long getInvocations() {
+        return this.invocations.sum();
+    }
+
+    /**
+     * The number of invocations that were timed
+     */
+    public long getSamples() {
+        return this.samples.sum();
+    }
+
+    /**
+     * The mean time of the timed invocations in nanoseconds (including the accessor itself), or 0 if none were timed
+     */
+    public long getMeanLatencyNanos() {
+        long samples = this.samples.sum();
+        return samples == 0 ? 0 : this.sampledNanos.sum() / samples;
+    }
+
+    /**
+     * The longest timed invocation in nanoseconds
+     */
+    public long getMaxLatencyNanos() {
+        return this.maxNanos.get();
+    }
+
+    public void reset() {
+        this.invocations.reset();
+        this.samples.reset();
+        this.sampledNanos.reset();
+        this.maxNanos.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return MessageFormat.format("{0}: {1} invocations, {2} sampled (mean {3}ns, max {4}ns)",
+                                    this.name, String.valueOf(getInvocations()), String.valueOf(getSamples()), String.valueOf(getMeanLatencyNanos()), String.valueOf(getMaxLatencyNanos()));
+    }
+
+    private static final class MXBean implements InvocationMetricsMXBean {
+        @Override
+        public Map<String, Long> getInvocationCounts() {
+            Map<String, Long> map = new HashMap<String, Long>();
+            for (InvocationMetrics metrics : METRICS.values()) {
+                map.put(metrics.name, metrics.getInvocations());
+            }
+
+            return map;
+        }
+
+        @Override
+        public Map<String, Long> getMeanLatencyNanos() {
+            Map<String, Long> map = new HashMap<String, Long>();
+            for (InvocationMetrics metrics : METRICS.values()) {
+                map.put(metrics.name, metrics.getMeanLatencyNanos());
+            }
+
+            return map;
+        }
+
+        @Override
+        public Map<String, Long> getMaxLatencyNanos() {
+            Map<String, Long> map = new HashMap<String, Long>();
+            for (InvocationMetrics metrics : METRICS.values()) {
+                map.put(metrics.name, metrics.getMaxLatencyNanos());
+            }
+
+            return map;
+        }
+
+        @Override
+        public int getSampleRate() {
+            return InvocationMetrics.getSampleRate();
+        }
+
+        @Override
+        public void setSampleRate(int sampleRate) {
+            InvocationMetrics.setSampleRate(sampleRate);
+        }
+
+        @Override
+        public void reset() {
+            resetAll();
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package reghzy.asm.metrics;
+
+import java.util.Map;
+
+/**
+ * The JMX view of all of the {@link InvocationMetrics}, keyed by the method (see {@link InvocationMetrics#getName()}).
+ * Registered by {@link InvocationMetrics#registerMBean()}
+ */
+public interface InvocationMetricsMXBean {
+    Map<String, Long> getInvocationCounts();
+
+    Map<String, Long> getMeanLatencyNanos();
+
+    Map<String, Long> getMaxLatencyNanos();
+
+    int getSampleRate();
+
+    void setSampleRate(int sampleRate);
+
+    void reset();
+}
@@ -0,0 +1,173 @@
+package reghzy.asm.utils;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * The class loader that generated classes are defined in
+ * <p>
+ *     There is one of these per target class loader (the loader of the class whose methods are being invoked), and its
+ *     parent is that target class loader, so generated classes can always see the target classes (e.g a bukkit plugin's
+ *     classes). If the parent can't find a class (e.g {@link reghzy.asm.MethodAccessor}, because the target loader can't
+ *     see this library), it falls back to this library's class loader
+ * </p>
+ * <p>
+ *     Generated classes that also use classes from other loaders (e.g a plugin's class that implements one of ours) are
+ *     defined in a child loader, which falls back to that other loader. Children are created per (parent, other loader)
+ *     and never change afterwards, so a class name is always resolved from the same loaders, and a reloaded plugin
+ *     (which has a new class loader) gets new children rather than resolving its old classes
+ * </p>
+ * <p>
+ *     The target class loaders and these loaders are only weakly referenced, so when a plugin gets unloaded
+ *     and none of its accessors are used anymore, all of it (including the generated classes) can be collected
+ * </p>
+ * <p>
+ *     The loader is parallel capable, so multiple threads can define (different) generated classes in it at the same time,
+ *     rather than all of them waiting on the loader's lock
+ * </p>
+ */
+class ASMClassLoader extends ClassLoader {
+    private static final ClassLoader LIBRARY_LOADER = ASMClassLoader.class.getClassLoader();
+    private static final Map<ClassLoader, WeakReference<ASMClassLoader>> LOADERS = new WeakHashMap<ClassLoader, WeakReference<ASMClassLoader>>();
+
+    // the other loader that this (child) loader falls back to, or null for the loader of a target loader
+    private final ClassLoader extraLoader;
+    private final Map<ClassLoader, WeakReference<ASMClassLoader>> children = new WeakHashMap<ClassLoader, WeakReference<ASMClassLoader>>();
+
+    static {
+        registerAsParallelCapable();
+    }
+
+    private ASMClassLoader(ClassLoader parent, ClassLoader extraLoader) {
+        super(parent);
+        this.extraLoader = extraLoader;
+    }
+
+    /**
+     * Gets (or creates) the loader that generated classes for the given target class should be defined in
+     */
+    static ASMClassLoader forTarget(Class<?> target) {
+        ClassLoader targetLoader = getTargetLoader(target);
+        synchronized (LOADERS) {
+            WeakReference<ASMClassLoader> reference = LOADERS.get(targetLoader);
+            ASMClassLoader loader = reference == null ? null : reference.get();
+            if (loader == null) {
+                loader = new ASMClassLoader(targetLoader, null);
+                LOADERS.put(targetLoader, new WeakReference<ASMClassLoader>(loader));
+            }
+
+            return loader;
+        }
+    }
+
+    /**
+     * Gets (or creates) the loader that generated classes for the given target class should be defined in, which
+     * can also see the given classes (that may be from other class loaders)
+     */
+    static ASMClassLoader forTarget(Class<?> target, Class<?>... others) {
+        ASMClassLoader loader = forTarget(target);
+        for (Class<?> other : others) {
+            ClassLoader otherLoader = other.getClassLoader();
+            if (!loader.canSee(otherLoader)) {
+                loader = loader.getChild(otherLoader);
+            }
+        }
+
+        return loader;
+    }
+
+    /**
+     * Creates a new loader which isn't shared, for a single class that's regenerated whenever its inputs change (e.g an
+     * event dispatcher). It can see the same classes as {@link ASMClassLoader#forTarget(Class, Class[])}, and once the
+     * class is unreachable, it and this loader can be unloaded (without keeping the other classes' loaders alive)
+     */
+    static ASMClassLoader createUnshared(Class<?> target, Class<?>... others) {
+        return new ASMClassLoader(forTarget(target, others), null);
+    }
+
+    /**
+     * Creates a new loader for the given target class which isn't shared, for a {@link MetaspaceBudget} group.
+     * Once nothing references it or its classes, they can all be unloaded
+     */
+    static ASMClassLoader createGroup(Class<?> target) {
+        return new ASMClassLoader(getTargetLoader(target), null);
+    }
+
+    /**
+     * Gets the loader that's the parent of the generated classes for the given target class
+     */
+    static ClassLoader getTargetLoader(Class<?> target) {
+        // bootstrap classes (e.g java.lang.String) use this library's loader
+        ClassLoader targetLoader = target.getClassLoader();
+        return targetLoader == null ? LIBRARY_LOADER : targetLoader;
+    }
+
+    // gets (or creates) the child of this loader that falls back to the given loader
+    private ASMClassLoader getChild(ClassLoader extraLoader) {
+        synchronized (this.children) {
+            WeakReference<ASMClassLoader> reference = this.children.get(extraLoader);
+            ASMClassLoader child = reference == null ? null : reference.get();
+            if (child == null) {
+                child = new ASMClassLoader(this, extraLoader);
+                this.children.put(extraLoader, new WeakReference<ASMClassLoader>(child));
+            }
+
+            return child;
+        }
+    }
+
+    // whether classes from the given loader can already be found from this loader
+    private boolean canSee(ClassLoader loader) {
+        if (loader == null || isAncestor(loader, LIBRARY_LOADER)) {
+            return true;
+        }
+
+        for (ClassLoader parent = this; parent != null; parent = parent.getParent()) {
+            if (parent == loader || (parent instanceof ASMClassLoader && isAncestor(loader, ((ASMClassLoader) parent).extraLoader))) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static boolean isAncestor(ClassLoader ancestor, ClassLoader loader) {
+        for (; loader != null; loader = loader.getParent()) {
+            if (loader == ancestor) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    public Class<?> define(String name, byte[] data) throws ClassFormatError {
+        // only locks on the class' name, so different classes can be defined in parallel
+        synchronized (getClassLoadingLock(name)) {
+            // classes from the bytecode cache have stable names, and the same class may be generated twice
+            // (e.g ClassGenerator.generate being called directly). The bytes are the same, so just reuse it
+            Class<?> existing = findLoadedClass(name);
+            if (existing != null) {
+                return existing;
+            }
+
+            // does not use a protection domain
+            return defineClass(name, data, 0, data.length);
+        }
+    }
+
+    @Override
+    protected Class<?> findClass(String name) throws ClassNotFoundException {
+        // only called when the parent (target class loader, or the parent ASMClassLoader for a child) couldn't find the class
+        if (this.extraLoader != null) {
+            return this.extraLoader.loadClass(name);
+        }
+
+        if (LIBRARY_LOADER != null) {
+            return LIBRARY_LOADER.loadClass(name);
+        }
+
+        throw new ClassNotFoundException(name);
+    }
+}
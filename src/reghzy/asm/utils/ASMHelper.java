@@ -1,8 +1,13 @@
 package reghzy.asm.utils;
 
+import org.objectweb.asm.Handle;
 import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.Type;
+import reghzy.asm.AccessorLinker;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 
 // arrays must be an Object[] array, due to how AALOAD works!!! i think
 public class ASMHelper {
@@ -87,6 +92,46 @@ public class ASMHelper {
         mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, "java/lang/Character", "charValue", "()C");
     }
 
+    /**
+     * Loads a local variable (e.g a method parameter) of the given type into the stack. Reference types are
+     * cast from Object to the given type, primitives are loaded as they are (no boxing)
+     * @return The number of local slots the variable takes up (2 for long/double, otherwise 1)
+     */
+    public static int loadLocalIntoStack(MethodVisitor mv, Class<?> type, int localVarIndex) {
+        return loadLocalIntoStack(mv, type.isPrimitive() ? type : Object.class, type, localVarIndex);
+    }
+
+    /**
+     * Loads a local variable (e.g a method parameter) whose declared type is localType into the stack. If it's a
+     * reference type and cannot already be assigned to targetType, it gets cast to targetType
+     * @return The number of local slots the variable takes up (2 for long/double, otherwise 1)
+     */
+    public static int loadLocalIntoStack(MethodVisitor mv, Class<?> localType, Class<?> targetType, int localVarIndex) {
+        if (localType == long.class) {
+            mv.visitVarInsn(Opcodes.LLOAD, localVarIndex);
+            return 2;
+        }
+        else if (localType == double.class) {
+            mv.visitVarInsn(Opcodes.DLOAD, localVarIndex);
+            return 2;
+        }
+        else if (localType == float.class) {
+            mv.visitVarInsn(Opcodes.FLOAD, localVarIndex);
+        }
+        else if (localType.isPrimitive()) {
+            // byte, short, int, boolean and char are all ints in the stack
+            mv.visitVarInsn(Opcodes.ILOAD, localVarIndex);
+        }
+        else {
+            mv.visitVarInsn(Opcodes.ALOAD, localVarIndex);
+            if (!targetType.isAssignableFrom(localType)) {
+                mv.visitTypeInsn(Opcodes.CHECKCAST, Type.getInternalName(targetType));
+            }
+        }
+
+        return 1;
+    }
+
     public static void loadArrayElementIntoStack(MethodVisitor mv, int localVarIndex, int arrayIndex) {
         mv.visitVarInsn(Opcodes.ALOAD, localVarIndex);
         loadIntIntoStack(mv, arrayIndex);
@@ -120,4 +165,128 @@ public class ASMHelper {
             }
         }
     }
+
+    /**
+     * Pushes the default value of the given type onto the stack (null, 0, 0L, 0F, 0D or false). Does nothing for void
+     */
+    public static void loadDefaultIntoStack(MethodVisitor mv, Class<?> type) {
+        if (!type.isPrimitive()) {
+            mv.visitInsn(Opcodes.ACONST_NULL);
+        }
+        else if (type == long.class) {
+            mv.visitInsn(Opcodes.LCONST_0);
+        }
+        else if (type == float.class) {
+            mv.visitInsn(Opcodes.FCONST_0);
+        }
+        else if (type == double.class) {
+            mv.visitInsn(Opcodes.DCONST_0);
+        }
+        else if (type != void.class) {
+            mv.visitInsn(Opcodes.ICONST_0);
+        }
+    }
+
+    /**
+     * Boxes the primitive on top of the stack into its wrapper (e.g int into Integer), using valueOf. Does nothing for reference types
+     */
+    public static void boxStackValue(MethodVisitor mv, Class<?> type) {
+        if (!type.isPrimitive()) {
+            return;
+        }
+
+        Type wrapper;
+        if (type == byte.class) {
+            wrapper = Type.getType(Byte.class);
+        }
+        else if (type == short.class) {
+            wrapper = Type.getType(Short.class);
+        }
+        else if (type == int.class) {
+            wrapper = Type.getType(Integer.class);
+        }
+        else if (type == long.class) {
+            wrapper = Type.getType(Long.class);
+        }
+        else if (type == float.class) {
+            wrapper = Type.getType(Float.class);
+        }
+        else if (type == double.class) {
+            wrapper = Type.getType(Double.class);
+        }
+        else if (type == boolean.class) {
+            wrapper = Type.getType(Boolean.class);
+        }
+        else if (type == char.class) {
+            wrapper = Type.getType(Character.class);
+        }
+        else {
+            throw new RuntimeException("Cannot box void");
+        }
+
+        mv.visitMethodInsn(Opcodes.INVOKESTATIC, wrapper.getInternalName(), "valueOf", Type.getMethodDescriptor(wrapper, Type.getType(type)));
+    }
+
+    /**
+     * Casts the reference on top of the stack to the given type. For primitives, it's cast to the wrapper and unboxed
+     * (e.g Integer then intValue()), so a null value throws a NullPointerException
+     */
+    public static void unboxStackValue(MethodVisitor mv, Class<?> type) {
+        if (!type.isPrimitive()) {
+            if (type != Object.class) {
+                mv.visitTypeInsn(Opcodes.CHECKCAST, Type.getInternalName(type));
+            }
+
+            return;
+        }
+
+        String wrapper;
+        if (type == byte.class) {
+            wrapper = "java/lang/Byte";
+        }
+        else if (type == short.class) {
+            wrapper = "java/lang/Short";
+        }
+        else if (type == int.class) {
+            wrapper = "java/lang/Integer";
+        }
+        else if (type == long.class) {
+            wrapper = "java/lang/Long";
+        }
+        else if (type == float.class) {
+            wrapper = "java/lang/Float";
+        }
+        else if (type == double.class) {
+            wrapper = "java/lang/Double";
+        }
+        else if (type == boolean.class) {
+            wrapper = "java/lang/Boolean";
+        }
+        else if (type == char.class) {
+            wrapper = "java/lang/Character";
+        }
+        else {
+            throw new RuntimeException("Cannot unbox void");
+        }
+
+        mv.visitTypeInsn(Opcodes.CHECKCAST, wrapper);
+        mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, wrapper, type.getName() + "Value", "()" + Type.getDescriptor(type));
+    }
+
+    /**
+     * Invokes the given method with an invokedynamic instruction, which {@link AccessorLinker#bootstrap} links to the
+     * method's accessor the first time it runs. The stack must have the target (unless the method is static) and then
+     * the parameters, the same as for a normal invoke instruction
+     * <p>
+     *     invokedynamic needs the class to be version 1.7 or higher (and so it needs stack map frames), and the method's
+     *     declaring class must be visible from the class' loader
+     * </p>
+     */
+    public static void visitLinkedInvoke(MethodVisitor mv, Method method) {
+        Handle bootstrap = new Handle(Opcodes.H_INVOKESTATIC, AccessorLinker.INTERNAL_NAME, AccessorLinker.BOOTSTRAP_NAME, AccessorLinker.BOOTSTRAP_DESCRIPTOR);
+        Class<?> owner = method.getDeclaringClass();
+        String methodDescriptor = Type.getMethodDescriptor(method);
+        String callSiteDescriptor = Modifier.isStatic(method.getModifiers()) ? methodDescriptor : "(" + Type.getDescriptor(owner) + methodDescriptor.substring(1);
+        mv.visitInvokeDynamicInsn(method.getName(), callSiteDescriptor, bootstrap, Type.getType(owner), Type.getMethodType(methodDescriptor));
+    }
 }
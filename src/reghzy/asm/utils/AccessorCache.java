@@ -0,0 +1,160 @@
+package reghzy.asm.utils;
+
+import java.lang.reflect.Member;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A thread-safe cache of generated accessors, keyed by a member (method/field/constructor)
+ * <p>
+ *     Entries are stored in a {@link ClassValue} against the member's declaring class, so the key
+ *     is effectively (declaring class loader, declaring class, member). If multiple threads ask for
+ *     the same member at the same time, only one of them generates it and the rest wait for that result
+ * </p>
+ * <p>
+ *     Keys that aren't a {@link Member} must override {@link AccessorCache#getOwner(Object)}
+ * </p>
+ * @param <K> The key type, usually the member
+ * @param <V> The accessor type
+ */
+public abstract class AccessorCache<K, V> {
+    private final ClassValue<ConcurrentHashMap<K, FutureTask<V>>> entries = new ClassValue<ConcurrentHashMap<K, FutureTask<V>>>() {
+        @Override
+        protected ConcurrentHashMap<K, FutureTask<V>> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<K, FutureTask<V>>();
+        }
+    };
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicInteger size = new AtomicInteger();
+
+    /**
+     * Gets the cached accessor for the given member, or generates it if it doesn't exist yet
+     * @param key The member
+     * @return The accessor
+     * @throws RuntimeException If the accessor could not be generated
+     */
+    public V get(final K key) {
+        ConcurrentHashMap<K, FutureTask<V>> map = this.entries.get(getOwner(key));
+        FutureTask<V> task = map.get(key);
+        if (task == null) {
+            FutureTask<V> newTask = new FutureTask<V>(new Callable<V>() {
+                @Override
+                public V call() throws Exception {
+                    return generate(key);
+                }
+            });
+
+            task = map.putIfAbsent(key, newTask);
+            if (task == null) {
+                // we won the race, so we're the one that generates it
+                this.misses.incrementAndGet();
+                this.size.incrementAndGet();
+                task = newTask;
+                task.run();
+            }
+            else {
+                this.hits.incrementAndGet();
+            }
+        }
+        else {
+            this.hits.incrementAndGet();
+        }
+
+        try {
+            return task.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for the accessor to be generated", e);
+        }
+        catch (ExecutionException e) {
+            // don't cache failures; the next call can try again
+            if (map.remove(key, task)) {
+                this.size.decrementAndGet();
+            }
+
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+
+            throw new RuntimeException("Failed to generate accessor", cause);
+        }
+    }
+
+    /**
+     * Gets the class that the given key is cached against. By default, this is the member's declaring class
+     */
+    protected Class<?> getOwner(K key) {
+        return ((Member) key).getDeclaringClass();
+    }
+
+    /**
+     * Gets the class whose class loader can see all of the other classes' loaders (e.g a plugin's class, rather than the
+     * server's or the JDK's), which is the one that can be unloaded first. Keys that reference classes other than the
+     * member's declaring class should be cached against this, so that the cache doesn't keep those classes loaded
+     * <p>
+     *     If the loaders are unrelated (e.g two plugins), the first of them is used
+     * </p>
+     */
+    protected static Class<?> getShortestLived(Class<?> first, Class<?>... others) {
+        Class<?> owner = first;
+        for (Class<?> other : others) {
+            if (other.getClassLoader() != owner.getClassLoader() && isAncestor(owner.getClassLoader(), other.getClassLoader())) {
+                owner = other;
+            }
+        }
+
+        return owner;
+    }
+
+    // whether the ancestor is the loader or one of its parents. The bootstrap loader (null) is everyone's ancestor
+    private static boolean isAncestor(ClassLoader ancestor, ClassLoader loader) {
+        if (ancestor == null) {
+            return true;
+        }
+
+        for (ClassLoader next = loader; next != null; next = next.getParent()) {
+            if (next == ancestor) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Generates a new accessor for the given member. This is only called once per member (unless it fails)
+     */
+    protected abstract V generate(K key) throws Exception;
+
+    /**
+     * The number of times an accessor was already cached (or being generated by another thread)
+     */
+    public long getHits() {
+        return this.hits.get();
+    }
+
+    /**
+     * The number of times an accessor had to be generated
+     */
+    public long getMisses() {
+        return this.misses.get();
+    }
+
+    /**
+     * The number of accessors currently cached
+     */
+    public int getSize() {
+        return this.size.get();
+    }
+}
@@ -0,0 +1,358 @@
+package reghzy.asm.utils;
+
+import reghzy.asm.ConstructorAccessor;
+import reghzy.asm.FieldAccessor;
+import reghzy.asm.MethodAccessor;
+import reghzy.asm.metrics.Instrumentation;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.net.URL;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * Generates accessor classes at build time, and finds them again at runtime
+ * <p>
+ *     The build runs {@link AccessorPregenerator#main(String[])} with a declarations file, which writes the accessor classes
+ *     (the same bytecode that {@link ClassGenerator} would generate at runtime) into a directory that gets packaged into the jar.
+ *     Each class gets a stable name from {@link AccessorPregenerator#getClassName(Member)}, and they're all listed in
+ *     {@link AccessorPregenerator#INDEX_RESOURCE}. At runtime, the ASM accessor factories check that index before generating
+ *     anything, so pre-generated accessors don't touch ASM at all
+ * </p>
+ * <p>
+ *     The declarations file has one member per line, with the parameter types separated by spaces. Lines starting with # are ignored:
+ * </p>
+ * <pre>
+ * method com.example.World getBlockId int int int
+ * method com.example.World getName
+ * field com.example.World time
+ * constructor com.example.World java.lang.String long
+ * </pre>
+ * <p>
+ *     Only public members of public classes can be pre-generated, as the classes are loaded normally (not as hidden classes)
+ * </p>
+ */
+public class AccessorPregenerator {
+    /**
+     * The resource that lists the names of the pre-generated classes, one per line
+     */
+    public static final String INDEX_RESOURCE = "META-INF/reghzy-asm/pregenerated.list";
+
+    private static final String PACKAGE = "reghzy/asm/pregenerated/";
+    private static final Class<?>[] PRIMITIVES = {boolean.class, byte.class, short.class, char.class, int.class, long.class, float.class, double.class};
+
+    // class loader -> the pre-generated classes that it can load. The names don't reference the loader, so it can still be collected
+    private static final Map<ClassLoader, Set<String>> INDEXES = new WeakHashMap<ClassLoader, Set<String>>();
+
+    /**
+     * Gets the stable (internal) class name of the pre-generated accessor for the given method, field or constructor
+     * <p>
+     *     Overloads are told apart by a hash of the parameter types (and the return type, for methods)
+     * </p>
+     */
+    public static String getClassName(Member member) {
+        String owner = member.getDeclaringClass().getName().replace('.', '_');
+        if (member instanceof Method) {
+            Method method = (Method) member;
+            return MessageFormat.format("{0}REghZyASMMethod_{1}_{2}_{3}", PACKAGE, owner, method.getName(), getSignatureHash(method.getParameterTypes(), method.getReturnType()));
+        }
+        else if (member instanceof Field) {
+            return MessageFormat.format("{0}REghZyASMField_{1}_{2}", PACKAGE, owner, member.getName());
+        }
+        else {
+            return MessageFormat.format("{0}REghZyASMConstructor_{1}_{2}", PACKAGE, owner, getSignatureHash(((Constructor<?>) member).getParameterTypes(), void.class));
+        }
+    }
+
+    /**
+     * Finds the pre-generated accessor class for the given member
+     * <p>
+     *     This looks in the member's class loader (or this library's class loader, for bootstrap classes like String)
+     * </p>
+     * @param member The method, field or constructor
+     * @return The accessor class, or null if it wasn't pre-generated
+     */
+    public static Class<?> findClass(Member member) {
+        if (!Modifier.isPublic(member.getModifiers()) || !Modifier.isPublic(member.getDeclaringClass().getModifiers())) {
+            return null;
+        }
+
+        ClassLoader loader = member.getDeclaringClass().getClassLoader();
+        if (loader == null) {
+            loader = AccessorPregenerator.class.getClassLoader();
+        }
+
+        String className = getClassName(member).replace('/', '.');
+        if (!getIndex(loader).contains(className)) {
+            return null;
+        }
+
+        Class<?> clazz;
+        try {
+            clazz = Class.forName(className, true, loader);
+        }
+        catch (ClassNotFoundException e) {
+            // listed, but not packaged. The runtime generation still works
+            return null;
+        }
+
+        if (!getAccessorType(member).isAssignableFrom(clazz)) {
+            throw new RuntimeException(MessageFormat.format("The pre-generated class {0} is not a {1}", className, getAccessorType(member).getSimpleName()));
+        }
+
+        return clazz;
+    }
+
+    private static Set<String> getIndex(ClassLoader loader) {
+        synchronized (INDEXES) {
+            Set<String> index = INDEXES.get(loader);
+            if (index == null) {
+                index = readIndex(loader);
+                INDEXES.put(loader, index);
+            }
+
+            return index;
+        }
+    }
+
+    // every jar in the class loader can have its own index
+    private static Set<String> readIndex(ClassLoader loader) {
+        Set<String> index = new HashSet<String>();
+        try {
+            Enumeration<URL> resources = loader.getResources(INDEX_RESOURCE);
+            while (resources.hasMoreElements()) {
+                InputStream stream = resources.nextElement().openStream();
+                try {
+                    for (String line : readLines(stream)) {
+                        index.add(line);
+                    }
+                }
+                finally {
+                    stream.close();
+                }
+            }
+        }
+        catch (IOException e) {
+            throw new RuntimeException("Failed to read the pre-generated accessor index", e);
+        }
+
+        return index;
+    }
+
+    /**
+     * Writes the accessor classes for every member in the declarations file
+     * <p>
+     *     Usage: {@code AccessorPregenerator <declarations file> <output directory>}. The declared classes are loaded
+     *     (without being initialised) from this class' class path, so that must include the compiled classes
+     * </p>
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: AccessorPregenerator <declarations file> <output directory>");
+            System.exit(1);
+            return;
+        }
+
+        List<Member> members = readDeclarations(new File(args[0]), AccessorPregenerator.class.getClassLoader());
+        Map<String, byte[]> classes = generate(members);
+        File outputDirectory = new File(args[1]);
+        for (Map.Entry<String, byte[]> entry : classes.entrySet()) {
+            File file = new File(outputDirectory, entry.getKey() + ".class");
+            writeFile(file, entry.getValue());
+        }
+
+        StringBuilder index = new StringBuilder();
+        for (String className : classes.keySet()) {
+            index.append(className.replace('/', '.')).append('\n');
+        }
+
+        writeFile(new File(outputDirectory, INDEX_RESOURCE), index.toString().getBytes("UTF-8"));
+        System.out.println(MessageFormat.format("Pre-generated {0} accessors into {1}", classes.size(), outputDirectory.getPath()));
+    }
+
+    /**
+     * Generates the accessor classes for the given members
+     * @param members The methods, fields and constructors
+     * @return The class files, keyed by their internal name
+     * @throws RuntimeException If a member isn't public, or two members have the same class name
+     */
+    public static Map<String, byte[]> generate(List<Member> members) {
+        Map<String, byte[]> classes = new LinkedHashMap<String, byte[]>();
+        for (Member member : members) {
+            if (!Modifier.isPublic(member.getModifiers()) || !Modifier.isPublic(member.getDeclaringClass().getModifiers())) {
+                throw new RuntimeException(MessageFormat.format("Cannot pre-generate an accessor for {0}.{1}, it must be public and in a public class", member.getDeclaringClass().getName(), member.getName()));
+            }
+
+            String className = getClassName(member);
+            byte[] bytes;
+            if (member instanceof Method) {
+                bytes = ClassGenerator.writeMethodAccessor(className, (Method) member, new Class<?>[0], Instrumentation.NONE);
+            }
+            else if (member instanceof Field) {
+                bytes = ClassGenerator.writeFieldAccessor(className, (Field) member);
+            }
+            else {
+                bytes = ClassGenerator.writeConstructorAccessor(className, (Constructor<?>) member);
+            }
+
+            if (classes.put(className, bytes) != null) {
+                throw new RuntimeException(MessageFormat.format("{0}.{1} is declared twice (or its name clashes with another member)", member.getDeclaringClass().getName(), member.getName()));
+            }
+        }
+
+        return classes;
+    }
+
+    /**
+     * Reads and resolves the members in the given declarations file
+     * @throws RuntimeException If a line is invalid, or a class or member doesn't exist
+     */
+    public static List<Member> readDeclarations(File file, ClassLoader loader) throws IOException {
+        List<String> lines;
+        InputStream stream = new FileInputStream(file);
+        try {
+            lines = readLines(stream);
+        }
+        finally {
+            stream.close();
+        }
+
+        List<Member> members = new ArrayList<Member>();
+        for (String line : lines) {
+            if (line.startsWith("#")) {
+                continue;
+            }
+
+            String[] parts = line.split("\\s+");
+            if (parts.length < 2) {
+                throw new RuntimeException(MessageFormat.format("Invalid accessor declaration: {0}", line));
+            }
+
+            Class<?> owner = loadClass(parts[1], loader);
+            try {
+                if (parts[0].equals("method") && parts.length >= 3) {
+                    members.add(owner.getMethod(parts[2], loadClasses(parts, 3, loader)));
+                }
+                else if (parts[0].equals("field") && parts.length == 3) {
+                    members.add(owner.getField(parts[2]));
+                }
+                else if (parts[0].equals("constructor")) {
+                    members.add(owner.getConstructor(loadClasses(parts, 2, loader)));
+                }
+                else {
+                    throw new RuntimeException(MessageFormat.format("Invalid accessor declaration: {0}", line));
+                }
+            }
+            catch (NoSuchMethodException e) {
+                throw new RuntimeException(MessageFormat.format("No public method or constructor matches the declaration: {0}", line), e);
+            }
+            catch (NoSuchFieldException e) {
+                throw new RuntimeException(MessageFormat.format("No public field matches the declaration: {0}", line), e);
+            }
+        }
+
+        return members;
+    }
+
+    private static Class<?> getAccessorType(Member member) {
+        if (member instanceof Method) {
+            return MethodAccessor.class;
+        }
+        else if (member instanceof Field) {
+            return FieldAccessor.class;
+        }
+        else {
+            return ConstructorAccessor.class;
+        }
+    }
+
+    // doesn't use ASM, so looking up the name doesn't load it
+    private static String getSignatureHash(Class<?>[] parameterTypes, Class<?> returnType) {
+        StringBuilder signature = new StringBuilder();
+        for (Class<?> type : parameterTypes) {
+            signature.append(type.getName()).append(',');
+        }
+
+        signature.append(returnType.getName());
+        return Integer.toHexString(signature.toString().hashCode());
+    }
+
+    private static Class<?>[] loadClasses(String[] names, int start, ClassLoader loader) {
+        Class<?>[] classes = new Class<?>[names.length - start];
+        for (int i = start; i < names.length; i++) {
+            classes[i - start] = loadClass(names[i], loader);
+        }
+
+        return classes;
+    }
+
+    // the names are how they're written in java, e.g int, java.lang.String[] or com.example.World$Chunk
+    private static Class<?> loadClass(String name, ClassLoader loader) {
+        if (name.endsWith("[]")) {
+            Class<?> component = loadClass(name.substring(0, name.length() - 2), loader);
+            return Array.newInstance(component, 0).getClass();
+        }
+
+        for (Class<?> primitive : PRIMITIVES) {
+            if (primitive.getName().equals(name)) {
+                return primitive;
+            }
+        }
+
+        try {
+            return Class.forName(name, false, loader);
+        }
+        catch (ClassNotFoundException e) {
+            throw new RuntimeException(MessageFormat.format("Class not found: {0}", name), e);
+        }
+    }
+
+    private static List<String> readLines(InputStream stream) throws IOException {
+        List<String> lines = new ArrayList<String>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(stream, "UTF-8"));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            line = line.trim();
+            if (!line.isEmpty()) {
+                lines.add(line);
+            }
+        }
+
+        return lines;
+    }
+
+    private static void writeFile(File file, byte[] data) throws IOException {
+        File parent = file.getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Failed to create directory " + parent.getPath());
+        }
+
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(data);
+        }
+        finally {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package reghzy.asm.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.MessageFormat;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A directory that stores the bytecode of generated classes, so that the next time the JVM starts, the class can be defined
+ * straight away instead of being generated with ASM again
+ * <p>
+ *     Entries are keyed by a hash of the target class' bytes (its .class file) and a description of what was generated
+ *     (e.g the method's name and descriptor). When the target class changes, its hash changes, so the old entries are
+ *     never used again. Classes with the same name but different bytes (e.g in two plugins) have their own entries
+ * </p>
+ * <p>
+ *     Entries that weren't used for {@link BytecodeCache#DEFAULT_MAX_AGE} (or the given max age) are deleted the first
+ *     time a class with that name is used, or by {@link BytecodeCache#evictExpired()}
+ * </p>
+ * <p>
+ *     Classes that don't have a .class file (e.g generated or hidden classes) are never cached.
+ *     Enable the cache with {@link ClassGenerator#setBytecodeCache(BytecodeCache)}
+ * </p>
+ */
+public final class BytecodeCache {
+    // bump this when the generated bytecode changes, so that old entries aren't used
+    private static final String FORMAT_VERSION = "2";
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /**
+     * How long entries are kept without being used, by default (30 days)
+     */
+    public static final long DEFAULT_MAX_AGE = TimeUnit.DAYS.toMillis(30);
+
+    private final File directory;
+    private final long maxAge;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    // the hash of each class' bytes, or "" if it doesn't have any. Only read once per class
+    private final ClassValue<String> classHashes = new ClassValue<String>() {
+        @Override
+        protected String computeValue(Class<?> type) {
+            evictExpired(new File(BytecodeCache.this.directory, type.getName()));
+            return hashClass(type);
+        }
+    };
+
+    /**
+     * Creates a cache that stores classes in the given directory. It is created if it doesn't exist
+     */
+    public BytecodeCache(File directory) {
+        this(directory, DEFAULT_MAX_AGE);
+    }
+
+    /**
+     * Creates a cache that stores classes in the given directory, and deletes entries that weren't used for the given time
+     * @param directory The directory, which is created if it doesn't exist
+     * @param maxAge The time in milliseconds
+     */
+    public BytecodeCache(File directory, long maxAge) {
+        this.directory = directory;
+        this.maxAge = maxAge;
+    }
+
+    public File getDirectory() {
+        return this.directory;
+    }
+
+    public long getMaxAge() {
+        return this.maxAge;
+    }
+
+    /**
+     * The number of classes that were read from the cache rather than generated
+     */
+    public long getHits() {
+        return this.hits.get();
+    }
+
+    /**
+     * The number of classes that had to be generated (and were then written to the cache)
+     */
+    public long getMisses() {
+        return this.misses.get();
+    }
+
+    /**
+     * Gets the key for a class generated for the given target class
+     * @param target The class that the generated class accesses
+     * @param description Everything else that the generated bytecode depends on, e.g the backend, method name and descriptor
+     * @return The key, or null if the target class can't be cached
+     */
+    String getKey(Class<?> target, String description) {
+        String classHash = this.classHashes.get(target);
+        if (classHash.isEmpty()) {
+            return null;
+        }
+
+        return classHash + '_' + hash(FORMAT_VERSION + ';' + target.getName() + ';' + description).substring(0, 16);
+    }
+
+    /**
+     * Reads the cached class bytes for the given key
+     * @return The bytes, or null if they aren't cached (or the file is invalid)
+     */
+    byte[] read(Class<?> target, String key) {
+        File file = getFile(target, key);
+        if (file.isFile()) {
+            try {
+                byte[] data = readFully(new FileInputStream(file));
+                // the magic number; anything else is a broken file
+                if (data.length > 4 && (data[0] & 0xFF) == 0xCA && (data[1] & 0xFF) == 0xFE && (data[2] & 0xFF) == 0xBA && (data[3] & 0xFF) == 0xBE) {
+                    // the age is since it was last used
+                    file.setLastModified(System.currentTimeMillis());
+                    this.hits.incrementAndGet();
+                    return data;
+                }
+            }
+            catch (IOException ignored) { }
+        }
+
+        this.misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Writes the generated class bytes for the given key. Failing to write is ignored, as the cache is only an optimisation
+     */
+    void write(Class<?> target, String key, byte[] data) {
+        File file = getFile(target, key);
+        File parent = file.getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs()) {
+            return;
+        }
+
+        // write to a temporary file first, so that another JVM never reads half of the file
+        File temp = new File(parent, key + '.' + Thread.currentThread().getId() + ".tmp");
+        try {
+            OutputStream out = new FileOutputStream(temp);
+            try {
+                out.write(data);
+            }
+            finally {
+                out.close();
+            }
+
+            if (!temp.renameTo(file)) {
+                temp.delete();
+            }
+        }
+        catch (IOException e) {
+            temp.delete();
+        }
+    }
+
+    // entries are grouped by the target class, e.g cache/com.example.World/<class hash>_<hash>.class
+    private File getFile(Class<?> target, String key) {
+        return new File(new File(this.directory, target.getName()), key + ".class");
+    }
+
+    /**
+     * Deletes every entry (of every class) that wasn't used for the max age. Entries are also deleted the first time a
+     * class with their name is used, so this is only needed to clean up after classes that aren't used anymore
+     */
+    public void evictExpired() {
+        File[] directories = this.directory.listFiles();
+        if (directories != null) {
+            for (File directory : directories) {
+                evictExpired(directory);
+            }
+        }
+    }
+
+    // other entries for the class name aren't deleted just because the hash is different, as they may be
+    // for a class with the same name in another class loader. Old versions of the class just expire
+    private void evictExpired(File directory) {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            long expiry = System.currentTimeMillis() - this.maxAge;
+            for (File file : files) {
+                if (file.lastModified() < expiry) {
+                    file.delete();
+                }
+            }
+        }
+    }
+
+    private static String hashClass(Class<?> type) {
+        InputStream stream = type.getResourceAsStream('/' + type.getName().replace('.', '/') + ".class");
+        if (stream == null) {
+            return "";
+        }
+
+        try {
+            return hash(readFully(stream)).substring(0, 16);
+        }
+        catch (IOException e) {
+            return "";
+        }
+    }
+
+    private static String hash(String text) {
+        try {
+            return hash(text.getBytes("UTF-8"));
+        }
+        catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static String hash(byte[] data) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("SHA-1 is not available", e);
+        }
+
+        byte[] hash = digest.digest(data);
+        char[] chars = new char[hash.length * 2];
+        for (int i = 0; i < hash.length; i++) {
+            chars[i * 2] = HEX[(hash[i] >> 4) & 0xF];
+            chars[i * 2 + 1] = HEX[hash[i] & 0xF];
+        }
+
+        return new String(chars);
+    }
+
+    private static byte[] readFully(InputStream stream) throws IOException {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = stream.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+
+            return out.toByteArray();
+        }
+        finally {
+            stream.close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return MessageFormat.format("BytecodeCache({0}, {1} hits, {2} misses)", this.directory.getPath(), this.hits.get(), this.misses.get());
+    }
+}
@@ -2,22 +2,57 @@ package reghzy.asm.utils;
 
 import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
 import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.Type;
-import reghzy.asm.ASMMethodAccessor;
+import reghzy.asm.ArgumentFrame;
+import reghzy.asm.BeanMapper;
+import reghzy.asm.BufferCodec;
+import reghzy.asm.ClassAccess;
+import reghzy.asm.ConstructorAccessor;
+import reghzy.asm.DoubleParamMethodAccessor;
+import reghzy.asm.FieldAccessor;
+import reghzy.asm.IntParamMethodAccessor;
+import reghzy.asm.LongParamMethodAccessor;
 import reghzy.asm.MethodAccessor;
+import reghzy.asm.PropertyConverter;
+import reghzy.asm.PropertyPath;
+import reghzy.asm.RefParamMethodAccessor;
+import reghzy.asm.events.EventDispatcher;
+import reghzy.asm.metrics.Instrumentation;
+import reghzy.asm.metrics.InvocationMetrics;
 
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * A class for generating classes... duh lol
  */
 public class ClassGenerator {
-    private static final ASMClassLoader CLASSLOADER = new ASMClassLoader();
     private static final String ACCESSOR_DESC = Type.getInternalName(MethodAccessor.class); // reghzy/asm/MethodAccessor
+    private static final String FIELD_ACCESSOR_DESC = Type.getInternalName(FieldAccessor.class);
+    private static final String CONSTRUCTOR_ACCESSOR_DESC = Type.getInternalName(ConstructorAccessor.class);
+    private static final String EVENT_DISPATCHER_DESC = Type.getInternalName(EventDispatcher.class);
+    private static final String CLASS_ACCESS_DESC = Type.getInternalName(ClassAccess.class);
+    private static final String BEAN_MAPPER_DESC = Type.getInternalName(BeanMapper.class);
+    private static final String PROPERTY_CONVERTER_DESC = Type.getInternalName(PropertyConverter.class);
+    private static final String BUFFER_CODEC_DESC = Type.getInternalName(BufferCodec.class);
+    private static final String PROPERTY_PATH_DESC = Type.getInternalName(PropertyPath.class);
+    private static final String ARGUMENT_FRAME_DESC = Type.getInternalName(ArgumentFrame.class);
+    private static final String BYTE_BUFFER_DESC = "java/nio/ByteBuffer";
+    private static final String METRICS_DESC = Type.getInternalName(InvocationMetrics.class);
+    private static final String METRICS_FIELD_DESC = Type.getDescriptor(InvocationMetrics.class);
     private static final String INVOKE_REF = "(Ljava/lang/Object;[Ljava/lang/Object;)Ljava/lang/Object;";
     private static final String INVOKE_BYTE = "(Ljava/lang/Object;[Ljava/lang/Object;)B";
     private static final String INVOKE_SHORT = "(Ljava/lang/Object;[Ljava/lang/Object;)S";
@@ -38,7 +73,160 @@ public class ClassGenerator {
     private static final String INVOKE_BOOL_0P = "(Ljava/lang/Object;)Z";
     private static final String INVOKE_CHAR_0P = "(Ljava/lang/Object;)C";
     private static final String INVOKE_VOID_0P = "(Ljava/lang/Object;)V";
-    private static int NEXT_ID = 0;
+    private static final Type OBJECT_TYPE = Type.getType(Object.class);
+    private static final int MAX_FIXED_ARITY = 3;
+    private static final Class<?>[] NO_RECEIVERS = new Class<?>[0];
+    private static final AtomicInteger NEXT_ID = new AtomicInteger();
+    private static volatile GeneratorBackend BACKEND = GeneratorBackend.CLASS_LOADER;
+    private static volatile BytecodeCache BYTECODE_CACHE;
+    private static volatile Instrumentation INSTRUMENTATION = Instrumentation.NONE;
+    private static volatile MetaspaceBudget METASPACE_BUDGET;
+
+    /**
+     * Gets the cache that generated bytecode is stored in across JVM restarts, or null if it isn't enabled
+     */
+    public static BytecodeCache getBytecodeCache() {
+        return BYTECODE_CACHE;
+    }
+
+    /**
+     * Sets the cache that generated bytecode is stored in across JVM restarts. When this is enabled, classes are read
+     * from the cache (and defined without running ASM) when their target class hasn't changed, otherwise they're generated
+     * and written to the cache. Generated classes are also given stable names, rather than a counter
+     * @param cache The cache, or null to disable it
+     */
+    public static void setBytecodeCache(BytecodeCache cache) {
+        BYTECODE_CACHE = cache;
+    }
+
+    /**
+     * Gets what generated method accessors measure about their invocations
+     */
+    public static Instrumentation getInstrumentation() {
+        return INSTRUMENTATION;
+    }
+
+    /**
+     * Sets what generated method accessors measure about their invocations, see {@link InvocationMetrics}. Like the
+     * backend, this should be set before creating any accessors, as already generated ones aren't regenerated
+     * <p>
+     *     Only the invoke methods of method accessors (including the fixed-arity ones) are instrumented; batch invokes,
+     *     bindings, class accesses and reflection fallbacks aren't. With {@link Instrumentation#NONE} (the default),
+     *     the generated code is exactly the same as it would be without instrumentation
+     * </p>
+     */
+    public static void setInstrumentation(Instrumentation instrumentation) {
+        if (instrumentation == null) {
+            throw new NullPointerException("Instrumentation cannot be null, use Instrumentation.NONE");
+        }
+
+        INSTRUMENTATION = instrumentation;
+    }
+
+    /**
+     * Gets the budget that generated method accessors are loaded in, or null if they aren't limited
+     */
+    public static MetaspaceBudget getMetaspaceBudget() {
+        return METASPACE_BUDGET;
+    }
+
+    /**
+     * Sets the budget that generated method accessors are loaded in. When this is set, {@link reghzy.asm.ASMMethodAccessor#create(Method)}
+     * returns accessors whose classes can be evicted (when they're the least recently used and the budget is exceeded)
+     * and regenerated when they're next invoked. Like the backend, this should be set before creating any accessors
+     * <p>
+     *     Only the accessors from {@link reghzy.asm.ASMMethodAccessor#create(Method)} are limited; fixed-arity and profiled
+     *     accessors, bindings and the other generated classes aren't
+     * </p>
+     * @param budget The budget, or null to not limit them (the default)
+     */
+    public static void setMetaspaceBudget(MetaspaceBudget budget) {
+        METASPACE_BUDGET = budget;
+    }
+
+    /**
+     * Gets the backend used to define generated classes
+     */
+    public static GeneratorBackend getBackend() {
+        return BACKEND;
+    }
+
+    /**
+     * Sets the backend used to define generated classes. This should be set before creating any accessors,
+     * because accessors that were already generated (and cached) keep using the backend they were generated with
+     * @throws RuntimeException If the backend isn't supported in this JVM
+     */
+    public static void setBackend(GeneratorBackend backend) {
+        if (!backend.isSupported()) {
+            throw new RuntimeException(MessageFormat.format("The {0} backend is not supported in this JVM", backend));
+        }
+
+        BACKEND = backend;
+    }
+
+    /**
+     * Checks if the classes generated by the current backend are able to directly access the given method/field
+     * <p>
+     *     The {@link GeneratorBackend#CLASS_LOADER} backend can only access public members in public classes. The
+     *     {@link GeneratorBackend#HIDDEN_CLASS} backend can access anything in classes that it can define hidden classes
+     *     in (not e.g JDK classes, whose packages aren't open), and public members in public classes like the class loader
+     *     backend. Static and private interface methods can't be accessed by either backend
+     * </p>
+     */
+    public static boolean canAccess(Member member) {
+        // those need a newer class file version than what's generated
+        if (member instanceof Method && member.getDeclaringClass().isInterface() && (Modifier.isStatic(member.getModifiers()) || Modifier.isPrivate(member.getModifiers()))) {
+            return false;
+        }
+
+        if (BACKEND == GeneratorBackend.HIDDEN_CLASS && selectBackend(NO_RECEIVERS, member) == GeneratorBackend.HIDDEN_CLASS) {
+            return HiddenClassDefiner.canDefineIn(member.getDeclaringClass());
+        }
+
+        return Modifier.isPublic(member.getModifiers()) && Modifier.isPublic(member.getDeclaringClass().getModifiers());
+    }
+
+    // the backend that a class using the given members (and casting to the given types) is defined with. With the hidden
+    // class backend, classes that only use public things are still defined in the class loader, as the host may not be
+    // able to have hidden classes (e.g java.lang.String)
+    private static GeneratorBackend selectBackend(Class<?>[] types, Member... members) {
+        if (BACKEND != GeneratorBackend.HIDDEN_CLASS) {
+            return BACKEND;
+        }
+
+        for (Member member : members) {
+            Class<?>[] referenced;
+            if (member instanceof Method) {
+                referenced = ((Method) member).getParameterTypes();
+            }
+            else if (member instanceof Constructor) {
+                referenced = ((Constructor<?>) member).getParameterTypes();
+            }
+            else {
+                referenced = new Class<?>[]{((Field) member).getType()};
+            }
+
+            if (!Modifier.isPublic(member.getModifiers()) || !isPublic(member.getDeclaringClass()) || !isPublic(referenced)) {
+                return GeneratorBackend.HIDDEN_CLASS;
+            }
+        }
+
+        return isPublic(types) ? GeneratorBackend.CLASS_LOADER : GeneratorBackend.HIDDEN_CLASS;
+    }
+
+    private static boolean isPublic(Class<?>... types) {
+        for (Class<?> type : types) {
+            while (type.isArray()) {
+                type = type.getComponentType();
+            }
+
+            if (!type.isPrimitive() && !Modifier.isPublic(type.getModifiers())) {
+                return false;
+            }
+        }
+
+        return true;
+    }
 
     /**
      * Generates and loads a class, that inherits {@link MethodAccessor}, for the given method
@@ -47,49 +235,1100 @@ public class ClassGenerator {
      *     If the method returns int, then invoking {@link MethodAccessor#invoke(Object, Object...)} will
      *     throw an {@link AbstractMethodError}. Therefore, you can only invoke {@link MethodAccessor#invokeInt(Object, Object...)}
      * </p>
+     * <p>
+     *     If the method's parameters are all the same primitive type (or all references), and there are
+     *     1 to 3 of them, the class also inherits the matching fixed-arity accessor (e.g {@link IntParamMethodAccessor}),
+     *     which doesn't box anything. See {@link ClassGenerator#getFixedArityAccessor(Class[])}
+     * </p>
      * @param method The method to create a wrapper around
      * @return The class type that inherits {@link MethodAccessor}
      * @see Class#newInstance()
      */
     public static Class<?> generate(Method method) {
-        // generates a unique class name, not in a package or anything
-        String className = MessageFormat.format("REghZyASMMethod_{0}_{1}_{2}", method.getDeclaringClass().getSimpleName(), method.getName(), NEXT_ID++);
-        ClassWriter cw = createClassAndCtor(className);
-        createInvokeMethod(cw, method, method.getReturnType(), method.getParameterTypes().length == 0);
+        return generate(method, NO_RECEIVERS, null, null);
+    }
+
+    /**
+     * Generates and loads a class, that inherits {@link MethodAccessor}, for the given method, in the current group
+     * of the given budget. The resident is told when that group is evicted
+     * @see ClassGenerator#generate(Method)
+     */
+    public static Class<?> generate(Method method, MetaspaceBudget budget, MetaspaceBudget.Resident resident) {
+        return generate(method, NO_RECEIVERS, budget, resident);
+    }
+
+    /**
+     * Generates and loads a class, that inherits {@link MethodAccessor}, for the given instance method, which is
+     * optimised for targets whose exact class is one of the given receiver types
+     * <p>
+     *     The generated invoke methods check the target's class against each receiver type (in order), and if it matches,
+     *     invoke the method with INVOKEVIRTUAL on that concrete class, which the JIT can inline. Otherwise, it invokes the
+     *     method normally. This is useful when the declaring class is an interface or abstract class with a few implementations
+     * </p>
+     * @param method The method to create a wrapper around
+     * @param receiverTypes The concrete classes that targets usually are, most common first
+     * @return The class type that inherits {@link MethodAccessor}
+     * @throws RuntimeException If the method is static, or a receiver type isn't a concrete subclass of the method's declaring class
+     */
+    public static Class<?> generateProfiled(Method method, Class<?>... receiverTypes) {
+        checkReceivers(method, receiverTypes);
+        return generate(method, receiverTypes, null, null);
+    }
+
+    // the budget and resident are null for classes that are defined normally
+    private static Class<?> generate(Method method, Class<?>[] receiverTypes, MetaspaceBudget budget, MetaspaceBudget.Resident resident) {
+        // generates a unique class name, not in a package or anything (unless it's a hidden class)
+        GeneratorBackend backend = selectBackend(receiverTypes, method);
+        BytecodeCache cache = BYTECODE_CACHE;
+        Instrumentation instrumentation = INSTRUMENTATION;
+        Class<?> host = method.getDeclaringClass();
+        String description = MessageFormat.format("method;{0};{1};{2}", method.getName(), Type.getMethodDescriptor(method), Arrays.toString(receiverTypes));
+        if (instrumentation != Instrumentation.NONE) {
+            description += ";" + instrumentation;
+        }
+
+        String cacheKey = getCacheKey(cache, backend, host, description);
+        String className = getClassName(backend, host, MessageFormat.format("REghZyASMMethod_{0}_{1}_{2}", host.getSimpleName(), method.getName(), getNameSuffix(cacheKey)));
+        byte[] bytes = cacheKey == null ? null : cache.read(host, cacheKey);
+        if (bytes == null) {
+            bytes = writeMethodAccessor(className, method, receiverTypes, instrumentation);
+            if (cacheKey != null) {
+                cache.write(host, cacheKey, bytes);
+            }
+        }
+
+        // -----------------------------------------------------------
+        // if you wanna see the code of the generated class,
+        // you can use this code:
+        //
+        // File file = new File(className + ".class");
+        // try {
+        //     file.createNewFile();
+        //     BufferedOutputStream out = new BufferedOutputStream(new FileOutputStream(className + ".class"));
+        //     out.write(bytes); // yes... you can just write the raw bytes :)
+        //     out.close();
+        // }
+        // catch (Throwable e) {
+        //     e.printStackTrace();
+        // }
+        //
+        // Then, just use a decompiler of your choice, e.g jd-gui,
+        // or intellij's own decompiler (fernflower?), but
+        // jd-gui is more "verbose" in the code. Intellij won't show
+        // Integer#intValue() if a parameter is int
+        // -----------------------------------------------------------
+
+        if (budget != null) {
+            return budget.define(backend, method.getDeclaringClass(), className, bytes, resident);
+        }
+
+        // the receivers may be in other class loaders (e.g a plugin implementing a library's interface)
+        return define(backend, method.getDeclaringClass(), className, bytes, receiverTypes);
+    }
+
+    // writes the method accessor's class file, without loading it. Also used for pre-generating accessors at build time
+    static byte[] writeMethodAccessor(String className, Method method, Class<?>[] receiverTypes, Instrumentation instrumentation) {
+        Class<?> fixedArityAccessor = getFixedArityAccessor(method.getParameterTypes());
+        String[] interfaces = fixedArityAccessor == null ? new String[]{ACCESSOR_DESC} : new String[]{ACCESSOR_DESC, Type.getInternalName(fixedArityAccessor)};
+        ClassWriter cw = createClassAndCtor(className, interfaces);
+        Metrics metrics = null;
+        if (instrumentation != Instrumentation.NONE) {
+            metrics = new Metrics(className, instrumentation == Instrumentation.COUNT_AND_LATENCY);
+            createMetricsField(cw, className, method);
+        }
+
+        createInvokeMethod(cw, method, method.getReturnType(), method.getParameterTypes().length == 0, receiverTypes, metrics);
+        if (method.getParameterTypes().length <= ArgumentFrame.MAX_SLOTS) {
+            createFrameInvoker(cw, method, metrics);
+        }
+        if (fixedArityAccessor != null) {
+            createFixedArityInvoker(cw, method, receiverTypes, metrics);
+            createBatchInvoker(cw, method);
+        }
+
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    private static void checkReceivers(Method method, Class<?>[] receiverTypes) {
+        if (Modifier.isStatic(method.getModifiers())) {
+            throw new RuntimeException(MessageFormat.format("Cannot profile the receivers of the static method {0}.{1}", method.getDeclaringClass().getName(), method.getName()));
+        }
+
+        for (Class<?> receiver : receiverTypes) {
+            if (receiver.isInterface() || Modifier.isAbstract(receiver.getModifiers()) || !method.getDeclaringClass().isAssignableFrom(receiver)) {
+                throw new RuntimeException(MessageFormat.format("The receiver type {0} is not a concrete implementation of {1}", receiver.getName(), method.getDeclaringClass().getName()));
+            }
+
+            if (BACKEND == GeneratorBackend.CLASS_LOADER && !Modifier.isPublic(receiver.getModifiers())) {
+                throw new RuntimeException(MessageFormat.format("The receiver type {0} must be public to be used with the {1} backend", receiver.getName(), BACKEND));
+            }
+        }
+    }
+
+    /**
+     * Generates and loads a class, that inherits {@link FieldAccessor}, for the given field
+     * <p>
+     *     Like {@link ClassGenerator#generate(Method)}, only the getter and setter for the field's type are generated,
+     *     e.g {@link FieldAccessor#getInt(Object)} and {@link FieldAccessor#setInt(Object, int)} for an int field, so primitives
+     *     are never boxed. Reference fields use {@link FieldAccessor#get(Object)} and {@link FieldAccessor#set(Object, Object)}.
+     *     The setter isn't generated for final fields
+     * </p>
+     * @param field The field to create a wrapper around
+     * @return The class type that inherits {@link FieldAccessor}
+     */
+    public static Class<?> generateFieldAccessor(Field field) {
+        GeneratorBackend backend = selectBackend(NO_RECEIVERS, field);
+        BytecodeCache cache = BYTECODE_CACHE;
+        Class<?> host = field.getDeclaringClass();
+        String cacheKey = getCacheKey(cache, backend, host, MessageFormat.format("field;{0};{1}", field.getName(), Type.getDescriptor(field.getType())));
+        String className = getClassName(backend, host, MessageFormat.format("REghZyASMField_{0}_{1}_{2}", host.getSimpleName(), field.getName(), getNameSuffix(cacheKey)));
+        byte[] bytes = cacheKey == null ? null : cache.read(host, cacheKey);
+        if (bytes == null) {
+            bytes = writeFieldAccessor(className, field);
+            if (cacheKey != null) {
+                cache.write(host, cacheKey, bytes);
+            }
+        }
+
+        return define(backend, host, className, bytes);
+    }
+
+    static byte[] writeFieldAccessor(String className, Field field) {
+        ClassWriter cw = createClassAndCtor(className, new String[]{FIELD_ACCESSOR_DESC});
+        createFieldGetter(cw, field);
+        if (!Modifier.isFinal(field.getModifiers())) {
+            createFieldSetter(cw, field);
+        }
+
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    /**
+     * Generates and loads a class, that inherits {@link ConstructorAccessor}, for the given constructor
+     * <p>
+     *     The generated methods directly create the instance (NEW, DUP, INVOKESPECIAL), see {@link ConstructorAccessor}
+     *     for which methods are generated
+     * </p>
+     * @param constructor The constructor to create a wrapper around
+     * @return The class type that inherits {@link ConstructorAccessor}
+     * @throws RuntimeException If the constructor is for an abstract class
+     */
+    public static Class<?> generateConstructorAccessor(Constructor<?> constructor) {
+        Class<?> owner = constructor.getDeclaringClass();
+        GeneratorBackend backend = selectBackend(NO_RECEIVERS, constructor);
+        BytecodeCache cache = BYTECODE_CACHE;
+        String cacheKey = getCacheKey(cache, backend, owner, MessageFormat.format("constructor;{0}", Type.getConstructorDescriptor(constructor)));
+        String className = getClassName(backend, owner, MessageFormat.format("REghZyASMConstructor_{0}_{1}", owner.getSimpleName(), getNameSuffix(cacheKey)));
+        byte[] bytes = cacheKey == null ? null : cache.read(owner, cacheKey);
+        if (bytes == null) {
+            bytes = writeConstructorAccessor(className, constructor);
+            if (cacheKey != null) {
+                cache.write(owner, cacheKey, bytes);
+            }
+        }
+
+        return define(backend, owner, className, bytes);
+    }
+
+    static byte[] writeConstructorAccessor(String className, Constructor<?> constructor) {
+        Class<?> owner = constructor.getDeclaringClass();
+        if (Modifier.isAbstract(owner.getModifiers())) {
+            throw new RuntimeException(MessageFormat.format("Cannot create instances of the abstract class {0}", owner.getName()));
+        }
+
+        ClassWriter cw = createClassAndCtor(className, new String[]{CONSTRUCTOR_ACCESSOR_DESC});
+        Class<?>[] params = constructor.getParameterTypes();
+        createConstructorInvoker(cw, constructor, "newInstance", params.length == 0 ? "()Ljava/lang/Object;" : "([Ljava/lang/Object;)Ljava/lang/Object;", false);
+        Class<?> kind = getFixedArityKind(params);
+        if (kind != null) {
+            Type[] invokeParams = new Type[params.length];
+            for (int i = 0; i < params.length; i++) {
+                invokeParams[i] = Type.getType(kind);
+            }
+
+            String name = "newInstance" + (kind == Object.class ? "Ref" : getTypeSuffix(kind));
+            createConstructorInvoker(cw, constructor, name, Type.getMethodDescriptor(OBJECT_TYPE, invokeParams), true);
+        }
+
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    /**
+     * Gets the fixed-arity accessor interface that a method with the given parameters can be invoked through
+     * @param parameters The method's parameter types
+     * @return {@link IntParamMethodAccessor}, {@link LongParamMethodAccessor}, {@link DoubleParamMethodAccessor}
+     *         or {@link RefParamMethodAccessor}, or null if the parameters don't fit any of them
+     */
+    public static Class<?> getFixedArityAccessor(Class<?>[] parameters) {
+        Class<?> kind = getFixedArityKind(parameters);
+        if (kind == int.class) {
+            return IntParamMethodAccessor.class;
+        }
+        else if (kind == long.class) {
+            return LongParamMethodAccessor.class;
+        }
+        else if (kind == double.class) {
+            return DoubleParamMethodAccessor.class;
+        }
+        else if (kind == Object.class) {
+            return RefParamMethodAccessor.class;
+        }
+        else {
+            return null;
+        }
+    }
+
+    // int, long or double if the parameters are all that primitive, Object if they're all references,
+    // otherwise null (mixed types, unsupported primitives, or the wrong number of parameters)
+    private static Class<?> getFixedArityKind(Class<?>[] parameters) {
+        if (parameters.length == 0 || parameters.length > MAX_FIXED_ARITY) {
+            return null;
+        }
+
+        Class<?> first = parameters[0];
+        for (Class<?> parameter : parameters) {
+            if (first.isPrimitive() ? parameter != first : parameter.isPrimitive()) {
+                return null;
+            }
+        }
+
+        if (first == int.class || first == long.class || first == double.class) {
+            return first;
+        }
+
+        return first.isPrimitive() ? null : Object.class;
+    }
+
+    /**
+     * Generates and loads a class that implements the given functional interface, by directly invoking the given method
+     * <p>
+     *     The interface must have exactly one abstract method. For a static method, its parameters must match the method's parameters.
+     *     For an instance method, its first parameter is the target instance, and the rest must match the method's parameters.
+     *     Primitives must match exactly (nothing gets boxed), references may be casts. If the interface method returns void,
+     *     the method's return value is discarded
+     * </p>
+     * @param method The method to invoke
+     * @param functionalInterface The interface to implement
+     * @return The class type that implements the functional interface
+     * @throws RuntimeException If the interface is not a functional interface, the signatures are not compatible,
+     *                          or the current backend cannot access the method
+     */
+    public static Class<?> generateBinding(Method method, Class<?> functionalInterface) {
+        Method sam = findFunctionalMethod(functionalInterface);
+        checkBindable(method, sam);
+
+        if (!canAccess(method)) {
+            throw new RuntimeException(MessageFormat.format("The {0} backend cannot invoke {1}.{2}, because it isn''t public. Use the {3} backend instead",
+                                                            BACKEND, method.getDeclaringClass().getName(), method.getName(), GeneratorBackend.HIDDEN_CLASS));
+        }
+
+        GeneratorBackend backend = selectBackend(new Class<?>[]{functionalInterface}, method);
+        BytecodeCache cache = BYTECODE_CACHE;
+        Class<?> host = method.getDeclaringClass();
+        String cacheKey = getCacheKey(cache, backend, host, MessageFormat.format("binding;{0};{1};{2};{3};{4}", method.getName(), Type.getMethodDescriptor(method), functionalInterface.getName(), sam.getName(), Type.getMethodDescriptor(sam)));
+        String className = getClassName(backend, host, MessageFormat.format("REghZyASMBinding_{0}_{1}_{2}_{3}", host.getSimpleName(), method.getName(), functionalInterface.getSimpleName(), getNameSuffix(cacheKey)));
+        byte[] bytes = cacheKey == null ? null : cache.read(host, cacheKey);
+        if (bytes == null) {
+            ClassWriter cw = createClassAndCtor(className, new String[]{Type.getInternalName(functionalInterface)});
+            createBindingInvoker(cw, method, sam);
+            cw.visitEnd();
+            bytes = cw.toByteArray();
+            if (cacheKey != null) {
+                cache.write(host, cacheKey, bytes);
+            }
+        }
+
+        return define(backend, host, className, bytes, functionalInterface);
+    }
+
+    /**
+     * Generates and loads a subclass of {@link ClassAccess} that can invoke all of the given methods by their index
+     * (their index in the array). The class' constructor takes the class and the methods (Class, Method[])
+     * <p>
+     *     Each invoke method that has at least 1 method with its return type is a tableswitch on the index, e.g:
+     * </p>
+     * <pre>
+     * public int invokeInt(int index, Object target, Object[] params) {
+     *     switch (index) {
+     *         case 0: return ((World) target).getBlockId((Integer) params[0], (Integer) params[1], (Integer) params[2]);
+     *         case 3: return ((World) target).getHeight();
+     *         default: throw invalidIndex(index, "int");
+     *     }
+     * }
+     * </pre>
+     * <p>
+     *     {@link ClassAccess#invoke(int, Object, Object...)} covers every method, boxing primitive return values (null for void)
+     * </p>
+     * @param type The class
+     * @param methods The methods, which must all be accessible by the current backend
+     * @return The class type that extends {@link ClassAccess}
+     */
+    public static Class<?> generateClassAccess(Class<?> type, Method[] methods) {
+        GeneratorBackend backend = selectBackend(new Class<?>[]{type}, methods);
+        BytecodeCache cache = BYTECODE_CACHE;
+        StringBuilder description = new StringBuilder("classaccess");
+        for (Method method : methods) {
+            description.append(';').append(method.getDeclaringClass().getName()).append('.').append(method.getName()).append(Type.getMethodDescriptor(method));
+        }
+
+        String cacheKey = getCacheKey(cache, backend, type, description.toString());
+        String className = getClassName(backend, type, MessageFormat.format("REghZyASMClassAccess_{0}_{1}", type.getSimpleName(), getNameSuffix(cacheKey)));
+        byte[] bytes = cacheKey == null ? null : cache.read(type, cacheKey);
+        if (bytes == null) {
+            bytes = writeClassAccess(className, methods);
+            if (cacheKey != null) {
+                cache.write(type, cacheKey, bytes);
+            }
+        }
+
+        // inherited methods may be declared in classes from other class loaders
+        Class<?>[] declaringClasses = new Class<?>[methods.length];
+        for (int i = 0; i < methods.length; i++) {
+            declaringClasses[i] = methods[i].getDeclaringClass();
+        }
+
+        return define(backend, type, className, bytes, declaringClasses);
+    }
+
+    private static byte[] writeClassAccess(String className, Method[] methods) {
+        ClassWriter cw = new ClassWriter(0);
+        cw.visitSource(".dynamic", null);
+        cw.visit(Opcodes.V1_6, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER, className, null, CLASS_ACCESS_DESC, null);
+
+        MethodVisitor ctor = cw.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "(Ljava/lang/Class;[Ljava/lang/reflect/Method;)V", null, null);
+        ctor.visitCode();
+        ctor.visitVarInsn(Opcodes.ALOAD, 0);
+        ctor.visitVarInsn(Opcodes.ALOAD, 1);
+        ctor.visitVarInsn(Opcodes.ALOAD, 2);
+        ctor.visitMethodInsn(Opcodes.INVOKESPECIAL, CLASS_ACCESS_DESC, "<init>", "(Ljava/lang/Class;[Ljava/lang/reflect/Method;)V");
+        ctor.visitInsn(Opcodes.RETURN);
+        ctor.visitMaxs(3, 3);
+        ctor.visitEnd();
+
+        // null = invoke, which handles every method
+        Class<?>[] returnTypes = {null, byte.class, short.class, int.class, long.class, float.class, double.class, boolean.class, char.class, void.class};
+        for (Class<?> returnType : returnTypes) {
+            createIndexedInvoker(cw, methods, returnType);
+        }
+
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    // creates the tableswitch invoke method for the methods with the given return type (or every method if it's null)
+    private static void createIndexedInvoker(ClassVisitor cw, Method[] methods, Class<?> returnType) {
+        int min = -1, max = -1;
+        for (int i = 0; i < methods.length; i++) {
+            if (returnType == null || methods[i].getReturnType() == returnType) {
+                if (min == -1) {
+                    min = i;
+                }
+
+                max = i;
+            }
+        }
+
+        // the superclass' method throws for every index
+        if (min == -1) {
+            return;
+        }
+
+        String invokeName = returnType == null ? "invoke" : getInvokeName(returnType);
+        String returnDesc = returnType == null ? "Ljava/lang/Object;" : Type.getDescriptor(returnType);
+        MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, invokeName, "(ILjava/lang/Object;[Ljava/lang/Object;)" + returnDesc, null, null);
+        mv.visitCode();
+
+        Label invalid = new Label();
+        Label[] labels = new Label[max - min + 1];
+        for (int i = min; i <= max; i++) {
+            Class<?> methodReturn = methods[i].getReturnType();
+            labels[i - min] = returnType == null || methodReturn == returnType ? new Label() : invalid;
+        }
+
+        mv.visitVarInsn(Opcodes.ILOAD, 1);
+        mv.visitTableSwitchInsn(min, max, invalid, labels);
+        int maxStack = 3;
+        for (int i = min; i <= max; i++) {
+            if (labels[i - min] == invalid) {
+                continue;
+            }
+
+            Method method = methods[i];
+            mv.visitLabel(labels[i - min]);
+            mv.visitFrame(Opcodes.F_SAME, 0, null, 0, null);
+            if (!Modifier.isStatic(method.getModifiers())) {
+                mv.visitVarInsn(Opcodes.ALOAD, 2);
+                mv.visitTypeInsn(Opcodes.CHECKCAST, Type.getInternalName(method.getDeclaringClass()));
+            }
+
+            Class<?>[] methodParams = method.getParameterTypes();
+            for (int j = 0; j < methodParams.length; j++) {
+                ASMHelper.loadArrayElementIntoStack(mv, methodParams[j], 3, j);
+            }
+
+            mv.visitMethodInsn(getInvocationOpcode(method), Type.getInternalName(method.getDeclaringClass()), method.getName(), Type.getMethodDescriptor(method));
+            if (returnType == null) {
+                // invoke returns everything as an Object
+                if (method.getReturnType() == void.class) {
+                    mv.visitInsn(Opcodes.ACONST_NULL);
+                }
+                else {
+                    ASMHelper.boxStackValue(mv, method.getReturnType());
+                }
+
+                mv.visitInsn(Opcodes.ARETURN);
+            }
+            else {
+                mv.visitInsn(getReturnOpcode(returnType));
+            }
+
+            // stack = target_ref + parameters (+1 in case the return value is a long/double)
+            maxStack = Math.max(maxStack, 2 + calculateStackSize(methodParams));
+        }
+
+        mv.visitLabel(invalid);
+        mv.visitFrame(Opcodes.F_SAME, 0, null, 0, null);
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitVarInsn(Opcodes.ILOAD, 1);
+        mv.visitLdcInsn(returnType == null ? "Object" : returnType.getName());
+        mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, CLASS_ACCESS_DESC, "invalidIndex", "(ILjava/lang/String;)Ljava/lang/RuntimeException;");
+        mv.visitInsn(Opcodes.ATHROW);
+
+        // locals = this, index, target, params
+        mv.visitMaxs(maxStack, 4);
+        mv.visitEnd();
+    }
+
+    /**
+     * Generates and loads an {@link EventDispatcher} that invokes each of the given handlers, in order
+     * <p>
+     *     The class' constructor takes an Object[] of the listener instances (one for each handler, null for static handlers),
+     *     which are stored in fields, so the dispatch method is just a sequence of direct calls:
+     * </p>
+     * <pre>
+     * public void dispatch(Object event) {
+     *     this.l0.onEvent((MyEvent) event);
+     *     MyStaticListener.onEvent((MyEvent) event);
+     *     this.l2.onEvent((MyEvent) event);
+     * }
+     * </pre>
+     * <p>
+     *     Dispatchers invoke lots of unrelated classes, so they can't be hidden classes. They're always defined with the
+     *     {@link GeneratorBackend#CLASS_LOADER} backend, so the handlers, their classes and their event types must be public
+     * </p>
+     * @param eventType The event type (only used for the name)
+     * @param handlers The handlers, each with 1 parameter
+     * @return The class type that implements {@link EventDispatcher}
+     */
+    public static Class<?> generateEventDispatcher(Class<?> eventType, Method[] handlers) {
+        String className = MessageFormat.format("REghZyASMEventDispatcher_{0}_{1}", eventType.getSimpleName(), NEXT_ID.getAndIncrement());
+        ClassWriter cw = new ClassWriter(0);
+        cw.visitSource(".dynamic", null);
+        cw.visit(Opcodes.V1_6, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER, className, null, "java/lang/Object", new String[]{EVENT_DISPATCHER_DESC});
+
+        MethodVisitor ctor = cw.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "([Ljava/lang/Object;)V", null, null);
+        ctor.visitCode();
+        ctor.visitVarInsn(Opcodes.ALOAD, 0);
+        ctor.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V");
+        for (int i = 0; i < handlers.length; i++) {
+            if (!Modifier.isStatic(handlers[i].getModifiers())) {
+                String owner = Type.getInternalName(handlers[i].getDeclaringClass());
+                cw.visitField(Opcodes.ACC_PRIVATE | Opcodes.ACC_FINAL, "l" + i, "L" + owner + ";", null, null).visitEnd();
+                ctor.visitVarInsn(Opcodes.ALOAD, 0);
+                ctor.visitVarInsn(Opcodes.ALOAD, 1);
+                ASMHelper.loadIntIntoStack(ctor, i);
+                ctor.visitInsn(Opcodes.AALOAD);
+                ctor.visitTypeInsn(Opcodes.CHECKCAST, owner);
+                ctor.visitFieldInsn(Opcodes.PUTFIELD, className, "l" + i, "L" + owner + ";");
+            }
+        }
+
+        ctor.visitInsn(Opcodes.RETURN);
+
+        // stack: this + listeners + index (or this + listener)
+        // locals: this + listeners
+        ctor.visitMaxs(3, 2);
+        ctor.visitEnd();
+
+        MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "dispatch", "(Ljava/lang/Object;)V", null, null);
+        mv.visitCode();
+        for (int i = 0; i < handlers.length; i++) {
+            Method handler = handlers[i];
+            String owner = Type.getInternalName(handler.getDeclaringClass());
+            if (!Modifier.isStatic(handler.getModifiers())) {
+                mv.visitVarInsn(Opcodes.ALOAD, 0);
+                mv.visitFieldInsn(Opcodes.GETFIELD, className, "l" + i, "L" + owner + ";");
+            }
+
+            // cast to each handler's own parameter type; the event's actual class may not be public
+            mv.visitVarInsn(Opcodes.ALOAD, 1);
+            mv.visitTypeInsn(Opcodes.CHECKCAST, Type.getInternalName(handler.getParameterTypes()[0]));
+            mv.visitMethodInsn(getInvocationOpcode(handler), owner, handler.getName(), Type.getMethodDescriptor(handler));
+            Class<?> returnType = handler.getReturnType();
+            if (returnType != void.class) {
+                mv.visitInsn(returnType == long.class || returnType == double.class ? Opcodes.POP2 : Opcodes.POP);
+            }
+        }
+
+        mv.visitInsn(Opcodes.RETURN);
+
+        // stack: listener + event (or a long/double return value)
+        // locals: this + event
+        mv.visitMaxs(2, 2);
+        mv.visitEnd();
+        cw.visitEnd();
+
+        // the listeners may be from lots of different class loaders (e.g plugins). Each dispatcher gets its own loader,
+        // as it's replaced whenever a listener is (un)registered, and the old one should be unloaded with it
+        List<Class<?>> others = new ArrayList<Class<?>>();
+        for (Method handler : handlers) {
+            others.add(handler.getDeclaringClass());
+            others.add(handler.getParameterTypes()[0]);
+        }
+
+        return ASMClassLoader.createUnshared(eventType, others.toArray(new Class<?>[others.size()])).define(className, cw.toByteArray());
+    }
+
+    /**
+     * Generates and loads a subclass of {@link BeanMapper} that copies each reader's value (a getter or field of the source)
+     * into the writer at the same index (a setter or field of the destination). The class' constructor takes
+     * (Class, Class, String[], PropertyConverter[]), which are passed to the {@link BeanMapper} constructor
+     * <pre>
+     * public void map(Object source, Object destination) {
+     *     PlayerDTO src = (PlayerDTO) source;
+     *     Player dst = (Player) destination;
+     *     dst.setHealth(src.getHealth());
+     *     dst.name = src.name;
+     *     dst.setLevel((Integer) this.converters[2].convert(src.getLevel())); // converted property
+     * }
+     * </pre>
+     * <p>
+     *     Like event dispatchers, mappers are always defined with the {@link GeneratorBackend#CLASS_LOADER} backend, so
+     *     everything must be public
+     * </p>
+     * @param sourceType The source class
+     * @param destinationType The destination class
+     * @param readers The getters (no parameters) or fields of the source class
+     * @param writers The setters (1 parameter) or fields of the destination class. Their types must be the same as the
+     *                readers', or a super type, unless the property is converted
+     * @param converted Whether each property's value is passed through its converter
+     * @return The class type that extends {@link BeanMapper}
+     */
+    public static Class<?> generateBeanMapper(Class<?> sourceType, Class<?> destinationType, Member[] readers, Member[] writers, boolean[] converted) {
+        String className = MessageFormat.format("REghZyASMBeanMapper_{0}_{1}_{2}", sourceType.getSimpleName(), destinationType.getSimpleName(), NEXT_ID.getAndIncrement());
+        String ctorDescriptor = "(Ljava/lang/Class;Ljava/lang/Class;[Ljava/lang/String;[L" + PROPERTY_CONVERTER_DESC + ";)V";
+        ClassWriter cw = new ClassWriter(0);
+        cw.visitSource(".dynamic", null);
+        cw.visit(Opcodes.V1_6, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER, className, null, BEAN_MAPPER_DESC, null);
+
+        MethodVisitor ctor = cw.visitMethod(Opcodes.ACC_PUBLIC, "<init>", ctorDescriptor, null, null);
+        ctor.visitCode();
+        ctor.visitVarInsn(Opcodes.ALOAD, 0);
+        ctor.visitVarInsn(Opcodes.ALOAD, 1);
+        ctor.visitVarInsn(Opcodes.ALOAD, 2);
+        ctor.visitVarInsn(Opcodes.ALOAD, 3);
+        ctor.visitVarInsn(Opcodes.ALOAD, 4);
+        ctor.visitMethodInsn(Opcodes.INVOKESPECIAL, BEAN_MAPPER_DESC, "<init>", ctorDescriptor);
+        ctor.visitInsn(Opcodes.RETURN);
+        ctor.visitMaxs(5, 5);
+        ctor.visitEnd();
+
+        String source = Type.getInternalName(sourceType);
+        String destination = Type.getInternalName(destinationType);
+        MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "map", "(Ljava/lang/Object;Ljava/lang/Object;)V", null, null);
+        mv.visitCode();
+        mv.visitVarInsn(Opcodes.ALOAD, 1);
+        mv.visitTypeInsn(Opcodes.CHECKCAST, source);
+        mv.visitVarInsn(Opcodes.ASTORE, 3);
+        mv.visitVarInsn(Opcodes.ALOAD, 2);
+        mv.visitTypeInsn(Opcodes.CHECKCAST, destination);
+        mv.visitVarInsn(Opcodes.ASTORE, 4);
+        for (int i = 0; i < readers.length; i++) {
+            Class<?> valueType;
+            mv.visitVarInsn(Opcodes.ALOAD, 4);
+            if (converted[i]) {
+                mv.visitVarInsn(Opcodes.ALOAD, 0);
+                mv.visitFieldInsn(Opcodes.GETFIELD, BEAN_MAPPER_DESC, "converters", "[L" + PROPERTY_CONVERTER_DESC + ";");
+                ASMHelper.loadIntIntoStack(mv, i);
+                mv.visitInsn(Opcodes.AALOAD);
+            }
+
+            // read the value. The source/destination class is the owner (rather than the declaring class), as the
+            // member may be inherited from a class that isn't public
+            mv.visitVarInsn(Opcodes.ALOAD, 3);
+            if (readers[i] instanceof Field) {
+                valueType = ((Field) readers[i]).getType();
+                mv.visitFieldInsn(Opcodes.GETFIELD, source, readers[i].getName(), Type.getDescriptor(valueType));
+            }
+            else {
+                valueType = ((Method) readers[i]).getReturnType();
+                mv.visitMethodInsn(sourceType.isInterface() ? Opcodes.INVOKEINTERFACE : Opcodes.INVOKEVIRTUAL, source, readers[i].getName(), Type.getMethodDescriptor((Method) readers[i]));
+            }
+
+            Class<?> writerType = writers[i] instanceof Field ? ((Field) writers[i]).getType() : ((Method) writers[i]).getParameterTypes()[0];
+            if (converted[i]) {
+                ASMHelper.boxStackValue(mv, valueType);
+                mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, PROPERTY_CONVERTER_DESC, "convert", "(Ljava/lang/Object;)Ljava/lang/Object;");
+                ASMHelper.unboxStackValue(mv, writerType);
+            }
+
+            if (writers[i] instanceof Field) {
+                mv.visitFieldInsn(Opcodes.PUTFIELD, destination, writers[i].getName(), Type.getDescriptor(writerType));
+            }
+            else {
+                Method setter = (Method) writers[i];
+                mv.visitMethodInsn(destinationType.isInterface() ? Opcodes.INVOKEINTERFACE : Opcodes.INVOKEVIRTUAL, destination, setter.getName(), Type.getMethodDescriptor(setter));
+                Class<?> returnType = setter.getReturnType();
+                if (returnType != void.class) {
+                    // e.g builder style setters that return this
+                    mv.visitInsn(returnType == long.class || returnType == double.class ? Opcodes.POP2 : Opcodes.POP);
+                }
+            }
+        }
+
+        mv.visitInsn(Opcodes.RETURN);
+
+        // stack = destination + converter + value (2 for long/double), or destination + converters + index
+        // locals = this, source, destination, cast source, cast destination
+        mv.visitMaxs(4, 5);
+        mv.visitEnd();
+        cw.visitEnd();
+
+        // the destination class may be in another class loader (e.g a plugin's DTO and our model)
+        List<Class<?>> others = new ArrayList<Class<?>>();
+        others.add(destinationType);
+        for (Member member : readers) {
+            others.add(member.getDeclaringClass());
+        }
+
+        for (Member member : writers) {
+            others.add(member.getDeclaringClass());
+        }
+
+        return ASMClassLoader.forTarget(sourceType, others.toArray(new Class<?>[others.size()])).define(className, cw.toByteArray());
+    }
+
+    /**
+     * Generates and loads a subclass of {@link PropertyPath} that runs the whole chain of steps in one method. The class'
+     * constructor takes (Class, String, Member[]), which are passed to the {@link PropertyPath} constructor
+     * <pre>
+     * // world.getChunkAt(int, int)?.getSection(int).getBlockId(int, int, int)
+     * public int getInt(Object root, ArgumentFrame frame) {
+     *     Chunk chunk = ((World) root).getChunkAt((int) frame.p0, (int) frame.p1);
+     *     if (chunk == null) {
+     *         return 0;
+     *     }
+     *
+     *     return chunk.getSection((int) frame.p2).getBlockId((int) frame.p3, (int) frame.p4, (int) frame.p5);
+     * }
+     * </pre>
+     * <p>
+     *     {@link PropertyPath#get(Object, ArgumentFrame)} is always generated (boxing primitive results), and so is the typed
+     *     getter for a primitive result. The parameters of each method step are read from the frame's slots in order
+     * </p>
+     * @param rootType The class that the path starts at
+     * @param steps The public getters/methods or fields, each one a member of the previous step's type (or the root type)
+     * @param nullChecks Whether the value before each step is checked for null, which returns null (or 0/false) from the path
+     * @return The class type that extends {@link PropertyPath}
+     */
+    public static Class<?> generatePropertyPath(Class<?> rootType, Member[] steps, boolean[] nullChecks) {
+        String className = MessageFormat.format("REghZyASMPath_{0}_{1}", rootType.getSimpleName(), NEXT_ID.getAndIncrement());
+        String ctorDescriptor = "(Ljava/lang/Class;Ljava/lang/String;[Ljava/lang/reflect/Member;)V";
+        ClassWriter cw = new ClassWriter(0);
+        cw.visitSource(".dynamic", null);
+        cw.visit(Opcodes.V1_6, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER, className, null, PROPERTY_PATH_DESC, null);
+
+        MethodVisitor ctor = cw.visitMethod(Opcodes.ACC_PUBLIC, "<init>", ctorDescriptor, null, null);
+        ctor.visitCode();
+        ctor.visitVarInsn(Opcodes.ALOAD, 0);
+        ctor.visitVarInsn(Opcodes.ALOAD, 1);
+        ctor.visitVarInsn(Opcodes.ALOAD, 2);
+        ctor.visitVarInsn(Opcodes.ALOAD, 3);
+        ctor.visitMethodInsn(Opcodes.INVOKESPECIAL, PROPERTY_PATH_DESC, "<init>", ctorDescriptor);
+        ctor.visitInsn(Opcodes.RETURN);
+        ctor.visitMaxs(4, 4);
+        ctor.visitEnd();
+
+        Class<?> resultType = getStepType(steps[steps.length - 1]);
+        createPathGetter(cw, rootType, steps, nullChecks, Object.class);
+        if (resultType.isPrimitive()) {
+            createPathGetter(cw, rootType, steps, nullChecks, resultType);
+        }
+
+        cw.visitEnd();
+
+        // each step may be in another class loader (e.g a plugin's class returned by one of ours)
+        List<Class<?>> others = new ArrayList<Class<?>>();
+        for (Member step : steps) {
+            others.add(step.getDeclaringClass());
+            others.add(getStepType(step));
+            if (step instanceof Method) {
+                Collections.addAll(others, ((Method) step).getParameterTypes());
+            }
+        }
+
+        return ASMClassLoader.forTarget(rootType, others.toArray(new Class<?>[others.size()])).define(className, cw.toByteArray());
+    }
+
+    // returnType is the getter's return type; Object for get(), which boxes the result
+    private static void createPathGetter(ClassVisitor cw, Class<?> rootType, Member[] steps, boolean[] nullChecks, Class<?> returnType) {
+        Class<?> resultType = getStepType(steps[steps.length - 1]);
+        String descriptor = Type.getMethodDescriptor(Type.getType(returnType), OBJECT_TYPE, Type.getType(ArgumentFrame.class));
+        MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "get" + getTypeSuffix(returnType), descriptor, null, null);
+        mv.visitCode();
+        mv.visitVarInsn(Opcodes.ALOAD, 1);
+        mv.visitTypeInsn(Opcodes.CHECKCAST, Type.getInternalName(rootType));
+
+        // the value's type is the owner of the next step, rather than the declaring class, as the
+        // member may be inherited from a class that isn't public
+        Class<?> owner = rootType;
+        int slot = 0;
+        int maxStack = 2;
+        for (int i = 0; i < steps.length; i++) {
+            if (nullChecks[i]) {
+                Label notNull = new Label();
+                mv.visitInsn(Opcodes.DUP);
+                mv.visitJumpInsn(Opcodes.IFNONNULL, notNull);
+                mv.visitInsn(Opcodes.POP);
+                ASMHelper.loadDefaultIntoStack(mv, returnType);
+                mv.visitInsn(getReturnOpcode(returnType));
+                mv.visitLabel(notNull);
+                mv.visitFrame(Opcodes.F_SAME1, 0, null, 1, new Object[]{Type.getInternalName(owner)});
+            }
+
+            Member step = steps[i];
+            if (step instanceof Field) {
+                mv.visitFieldInsn(Opcodes.GETFIELD, Type.getInternalName(owner), step.getName(), Type.getDescriptor(((Field) step).getType()));
+            }
+            else {
+                Method method = (Method) step;
+                Class<?>[] parameters = method.getParameterTypes();
+                for (Class<?> parameter : parameters) {
+                    loadFrameSlot(mv, parameter, 2, slot++);
+                }
+
+                mv.visitMethodInsn(owner.isInterface() ? Opcodes.INVOKEINTERFACE : Opcodes.INVOKEVIRTUAL, Type.getInternalName(owner), method.getName(), Type.getMethodDescriptor(method));
+
+                // value + parameters, + the frame and a long for the last one
+                maxStack = Math.max(maxStack, 3 + calculateStackSize(parameters));
+            }
+
+            owner = getStepType(step);
+        }
+
+        if (!returnType.isPrimitive()) {
+            ASMHelper.boxStackValue(mv, resultType);
+        }
+
+        mv.visitInsn(getReturnOpcode(returnType));
+
+        // locals = this, root, frame
+        mv.visitMaxs(maxStack, 3);
+        mv.visitEnd();
+    }
+
+    private static Class<?> getStepType(Member step) {
+        return step instanceof Field ? ((Field) step).getType() : ((Method) step).getReturnType();
+    }
+
+    /**
+     * Generates and loads a subclass of {@link BufferCodec} that writes each of the given fields into a ByteBuffer, and reads
+     * them back. The class' constructor takes (Class, Field[], long), which are passed to the {@link BufferCodec} constructor
+     * <pre>
+     * public void write(Object object, ByteBuffer buffer) {
+     *     Entity entity = (Entity) object;
+     *     buffer.putLong(schemaHash);
+     *     buffer.putInt(entity.id);
+     *     buffer.putDouble(entity.x);
+     *     BufferCodec.writeString(buffer, entity.name);
+     * }
+     *
+     * public void read(ByteBuffer buffer, Object object) {
+     *     checkSchema(buffer);
+     *     Entity entity = (Entity) object;
+     *     entity.id = buffer.getInt();
+     *     entity.x = buffer.getDouble();
+     *     entity.name = BufferCodec.readString(buffer);
+     * }
+     * </pre>
+     * @param type The class
+     * @param fields The fields, which must be primitives, Strings, byte[]s or enums, and accessible by the current backend
+     * @param schemaHash The hash written before the fields
+     * @param canConstruct Whether {@link BufferCodec#read(ByteBuffer)} can create instances with the no-args constructor
+     * @return The class type that extends {@link BufferCodec}
+     */
+    public static Class<?> generateBufferCodec(Class<?> type, Field[] fields, long schemaHash, boolean canConstruct) {
+        GeneratorBackend backend = selectBackend(new Class<?>[]{type}, fields);
+        if (canConstruct && backend == GeneratorBackend.CLASS_LOADER) {
+            try {
+                backend = selectBackend(NO_RECEIVERS, type.getDeclaredConstructor());
+            }
+            catch (NoSuchMethodException e) {
+                throw new RuntimeException(MessageFormat.format("{0} doesn''t have a no-args constructor", type.getName()), e);
+            }
+        }
+
+        BytecodeCache cache = BYTECODE_CACHE;
+        String cacheKey = getCacheKey(cache, backend, type, MessageFormat.format("codec;{0};{1}", Long.toHexString(schemaHash), canConstruct));
+        String className = getClassName(backend, type, MessageFormat.format("REghZyASMBufferCodec_{0}_{1}", type.getSimpleName(), getNameSuffix(cacheKey)));
+        byte[] bytes = cacheKey == null ? null : cache.read(type, cacheKey);
+        if (bytes == null) {
+            bytes = writeBufferCodec(className, type, fields, schemaHash, canConstruct);
+            if (cacheKey != null) {
+                cache.write(type, cacheKey, bytes);
+            }
+        }
+
+        return define(backend, type, className, bytes);
+    }
+
+    private static byte[] writeBufferCodec(String className, Class<?> type, Field[] fields, long schemaHash, boolean canConstruct) {
+        String owner = Type.getInternalName(type);
+        String ctorDescriptor = "(Ljava/lang/Class;[Ljava/lang/reflect/Field;J)V";
+        ClassWriter cw = new ClassWriter(0);
+        cw.visitSource(".dynamic", null);
+        cw.visit(Opcodes.V1_6, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER, className, null, BUFFER_CODEC_DESC, null);
+
+        MethodVisitor ctor = cw.visitMethod(Opcodes.ACC_PUBLIC, "<init>", ctorDescriptor, null, null);
+        ctor.visitCode();
+        ctor.visitVarInsn(Opcodes.ALOAD, 0);
+        ctor.visitVarInsn(Opcodes.ALOAD, 1);
+        ctor.visitVarInsn(Opcodes.ALOAD, 2);
+        ctor.visitVarInsn(Opcodes.LLOAD, 3);
+        ctor.visitMethodInsn(Opcodes.INVOKESPECIAL, BUFFER_CODEC_DESC, "<init>", ctorDescriptor);
+        ctor.visitInsn(Opcodes.RETURN);
+
+        // locals = this, class, fields, schema hash (2)
+        ctor.visitMaxs(5, 5);
+        ctor.visitEnd();
+
+        // write(Object, ByteBuffer)
+        MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "write", "(Ljava/lang/Object;Ljava/nio/ByteBuffer;)V", null, null);
+        mv.visitCode();
+        mv.visitVarInsn(Opcodes.ALOAD, 1);
+        mv.visitTypeInsn(Opcodes.CHECKCAST, owner);
+        mv.visitVarInsn(Opcodes.ASTORE, 3);
+        mv.visitVarInsn(Opcodes.ALOAD, 2);
+        mv.visitLdcInsn(schemaHash);
+        mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, BYTE_BUFFER_DESC, "putLong", "(J)Ljava/nio/ByteBuffer;");
+        mv.visitInsn(Opcodes.POP);
+        for (Field field : fields) {
+            Class<?> fieldType = field.getType();
+            mv.visitVarInsn(Opcodes.ALOAD, 2);
+            mv.visitVarInsn(Opcodes.ALOAD, 3);
+            mv.visitFieldInsn(Opcodes.GETFIELD, owner, field.getName(), Type.getDescriptor(fieldType));
+            if (fieldType.isPrimitive()) {
+                mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, BYTE_BUFFER_DESC, "put" + getBufferSuffix(fieldType), "(" + getBufferDescriptor(fieldType) + ")Ljava/nio/ByteBuffer;");
+                mv.visitInsn(Opcodes.POP);
+            }
+            else if (fieldType == String.class) {
+                mv.visitMethodInsn(Opcodes.INVOKESTATIC, BUFFER_CODEC_DESC, "writeString", "(Ljava/nio/ByteBuffer;Ljava/lang/String;)V");
+            }
+            else if (fieldType == byte[].class) {
+                mv.visitMethodInsn(Opcodes.INVOKESTATIC, BUFFER_CODEC_DESC, "writeBytes", "(Ljava/nio/ByteBuffer;[B)V");
+            }
+            else {
+                mv.visitMethodInsn(Opcodes.INVOKESTATIC, BUFFER_CODEC_DESC, "writeEnum", "(Ljava/nio/ByteBuffer;Ljava/lang/Enum;)V");
+            }
+        }
+
+        mv.visitInsn(Opcodes.RETURN);
+
+        // stack = buffer + the value (2 for long/double)
+        // locals = this, object, buffer, cast object
+        mv.visitMaxs(3, 4);
+        mv.visitEnd();
+
+        // read(ByteBuffer, Object)
+        mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "read", "(Ljava/nio/ByteBuffer;Ljava/lang/Object;)V", null, null);
+        mv.visitCode();
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitVarInsn(Opcodes.ALOAD, 1);
+        mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, BUFFER_CODEC_DESC, "checkSchema", "(Ljava/nio/ByteBuffer;)V");
+        mv.visitVarInsn(Opcodes.ALOAD, 2);
+        mv.visitTypeInsn(Opcodes.CHECKCAST, owner);
+        mv.visitVarInsn(Opcodes.ASTORE, 3);
+        for (Field field : fields) {
+            Class<?> fieldType = field.getType();
+            mv.visitVarInsn(Opcodes.ALOAD, 3);
+            mv.visitVarInsn(Opcodes.ALOAD, 1);
+            if (fieldType.isPrimitive()) {
+                mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, BYTE_BUFFER_DESC, "get" + getBufferSuffix(fieldType), "()" + getBufferDescriptor(fieldType));
+            }
+            else if (fieldType == String.class) {
+                mv.visitMethodInsn(Opcodes.INVOKESTATIC, BUFFER_CODEC_DESC, "readString", "(Ljava/nio/ByteBuffer;)Ljava/lang/String;");
+            }
+            else if (fieldType == byte[].class) {
+                mv.visitMethodInsn(Opcodes.INVOKESTATIC, BUFFER_CODEC_DESC, "readBytes", "(Ljava/nio/ByteBuffer;)[B");
+            }
+            else {
+                mv.visitLdcInsn(Type.getType(fieldType));
+                mv.visitMethodInsn(Opcodes.INVOKESTATIC, BUFFER_CODEC_DESC, "readEnum", "(Ljava/nio/ByteBuffer;Ljava/lang/Class;)Ljava/lang/Object;");
+                mv.visitTypeInsn(Opcodes.CHECKCAST, Type.getInternalName(fieldType));
+            }
+
+            mv.visitFieldInsn(Opcodes.PUTFIELD, owner, field.getName(), Type.getDescriptor(fieldType));
+        }
+
+        mv.visitInsn(Opcodes.RETURN);
+
+        // stack = cast object + the value (2 for long/double), or cast object + buffer + enum class
+        // locals = this, buffer, object, cast object
+        mv.visitMaxs(3, 4);
+        mv.visitEnd();
+
+        if (canConstruct) {
+            // read(ByteBuffer): T object = new T(); read(buffer, object); return object;
+            mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "read", "(Ljava/nio/ByteBuffer;)Ljava/lang/Object;", null, null);
+            mv.visitCode();
+            mv.visitTypeInsn(Opcodes.NEW, owner);
+            mv.visitInsn(Opcodes.DUP);
+            mv.visitMethodInsn(Opcodes.INVOKESPECIAL, owner, "<init>", "()V");
+            mv.visitVarInsn(Opcodes.ASTORE, 2);
+            mv.visitVarInsn(Opcodes.ALOAD, 0);
+            mv.visitVarInsn(Opcodes.ALOAD, 1);
+            mv.visitVarInsn(Opcodes.ALOAD, 2);
+            mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, className, "read", "(Ljava/nio/ByteBuffer;Ljava/lang/Object;)V");
+            mv.visitVarInsn(Opcodes.ALOAD, 2);
+            mv.visitInsn(Opcodes.ARETURN);
+
+            // stack = this + buffer + object
+            // locals = this, buffer, object
+            mv.visitMaxs(3, 3);
+            mv.visitEnd();
+        }
+
         cw.visitEnd();
+        return cw.toByteArray();
+    }
 
-        // -----------------------------------------------------------
-        // if you wanna see the code of the generated class,
-        // you can use this code:
-        //
-        // File file = new File(className + ".class");
-        // try {
-        //     file.createNewFile();
-        //     BufferedOutputStream out = new BufferedOutputStream(new FileOutputStream(className + ".class"));
-        //     out.write(cw.toByteArray()); // yes... you can just write the raw bytes :)
-        //     out.close();
-        // }
-        // catch (Throwable e) {
-        //     e.printStackTrace();
-        // }
-        //
-        // Then, just use a decompiler of your choice, e.g jd-gui,
-        // or intellij's own decompiler (fernflower?), but
-        // jd-gui is more "verbose" in the code. Intellij won't show
-        // Integer#intValue() if a parameter is int
-        // -----------------------------------------------------------
+    // ByteBuffer's put/get methods are put(byte) and get() for bytes, and booleans are written as bytes
+    private static String getBufferSuffix(Class<?> type) {
+        return type == byte.class || type == boolean.class ? "" : getTypeSuffix(type);
+    }
+
+    private static String getBufferDescriptor(Class<?> type) {
+        return type == boolean.class ? "B" : Type.getDescriptor(type);
+    }
+
+    // the backend is part of the key, as hidden classes are named differently (they're in the target's package)
+    private static String getCacheKey(BytecodeCache cache, GeneratorBackend backend, Class<?> host, String description) {
+        return cache == null ? null : cache.getKey(host, backend + ";" + description);
+    }
+
+    // cached classes always have the same name, so that their bytes can be reused
+    private static String getNameSuffix(String cacheKey) {
+        return cacheKey != null ? cacheKey : String.valueOf(NEXT_ID.getAndIncrement());
+    }
+
+    // hidden classes must be in the same package as their host (the target class)
+    private static String getClassName(GeneratorBackend backend, Class<?> host, String simpleName) {
+        if (backend == GeneratorBackend.HIDDEN_CLASS) {
+            String hostName = Type.getInternalName(host);
+            int lastSlash = hostName.lastIndexOf('/');
+            if (lastSlash != -1) {
+                return hostName.substring(0, lastSlash + 1) + simpleName;
+            }
+        }
+
+        return simpleName;
+    }
+
+    // others are classes (other than the host) that the generated class uses, which may be from other class loaders
+    private static Class<?> define(GeneratorBackend backend, Class<?> host, String className, byte[] data, Class<?>... others) {
+        if (backend == GeneratorBackend.HIDDEN_CLASS) {
+            return HiddenClassDefiner.define(host, data);
+        }
+
+        // define/register the class' bytes with java, in the loader for the host's class loader
+        return ASMClassLoader.forTarget(host, others).define(className.replace('/', '.'), data);
+    }
+
+    /**
+     * Finds the single abstract method in the given functional interface
+     * @throws RuntimeException If the class isn't an interface, or it doesn't have exactly 1 abstract method
+     */
+    public static Method findFunctionalMethod(Class<?> functionalInterface) {
+        if (!functionalInterface.isInterface()) {
+            throw new RuntimeException(MessageFormat.format("{0} is not an interface", functionalInterface.getName()));
+        }
+
+        Method sam = null;
+        for (Method method : functionalInterface.getMethods()) {
+            if (!Modifier.isAbstract(method.getModifiers()) || isObjectMethod(method)) {
+                continue;
+            }
+
+            if (sam != null) {
+                throw new RuntimeException(MessageFormat.format("{0} has more than 1 abstract method ({1} and {2})", functionalInterface.getName(), sam.getName(), method.getName()));
+            }
+
+            sam = method;
+        }
+
+        if (sam == null) {
+            throw new RuntimeException(MessageFormat.format("{0} has no abstract methods", functionalInterface.getName()));
+        }
+
+        return sam;
+    }
+
+    // interfaces can redeclare equals/hashCode/toString, but they don't count as the functional method
+    private static boolean isObjectMethod(Method method) {
+        try {
+            Object.class.getMethod(method.getName(), method.getParameterTypes());
+            return true;
+        }
+        catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
 
-        // define/register the class' bytes with java
-        return CLASSLOADER.define(className, cw.toByteArray());
+    private static void checkBindable(Method method, Method sam) {
+        Class<?>[] methodParams = method.getParameterTypes();
+        Class<?>[] samParams = sam.getParameterTypes();
+        int offset = Modifier.isStatic(method.getModifiers()) ? 0 : 1;
+        if (samParams.length != methodParams.length + offset) {
+            throw new RuntimeException(MessageFormat.format("Incompatible parameter count. {0} takes {1} parameters, but {2} needs {3}{4}",
+                                                            sam.getName(), samParams.length, method.getName(), methodParams.length + offset, offset == 0 ? "" : " (including the target instance)"));
+        }
+
+        if (offset == 1 && !isConvertible(samParams[0], method.getDeclaringClass())) {
+            throw new RuntimeException(MessageFormat.format("Incompatible target type. {0} cannot be converted to {1}", samParams[0].getName(), method.getDeclaringClass().getName()));
+        }
+
+        for (int i = 0; i < methodParams.length; i++) {
+            if (!isConvertible(samParams[i + offset], methodParams[i])) {
+                throw new RuntimeException(MessageFormat.format("Incompatible parameter type at index {0}. {1} cannot be converted to {2}", i, samParams[i + offset].getName(), methodParams[i].getName()));
+            }
+        }
+
+        Class<?> samReturn = sam.getReturnType();
+        Class<?> methodReturn = method.getReturnType();
+        if (samReturn != void.class && !(samReturn.isPrimitive() || methodReturn.isPrimitive() ? samReturn == methodReturn : samReturn.isAssignableFrom(methodReturn))) {
+            throw new RuntimeException(MessageFormat.format("Incompatible return type. {0} cannot be assigned to {1}", methodReturn.getName(), samReturn.getName()));
+        }
+    }
+
+    // primitives must be exactly the same (no boxing or widening), references can be cast
+    private static boolean isConvertible(Class<?> from, Class<?> to) {
+        if (from.isPrimitive() || to.isPrimitive()) {
+            return from == to;
+        }
+
+        return to.isAssignableFrom(from) || from.isAssignableFrom(to);
     }
 
-    private static ClassWriter createClassAndCtor(String classDescriptor) {
+    private static ClassWriter createClassAndCtor(String classDescriptor, String[] interfaces) {
         ClassWriter cw = new ClassWriter(0);
 
         // source file name. i got .dynamic from minecraft forge's ASMEventHandler...
         // which is what got me into ASM... fun fact about me :-)
         cw.visitSource(".dynamic", null);
-        cw.visit(Opcodes.V1_6, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER, classDescriptor, null, "java/lang/Object", new String[]{ACCESSOR_DESC});
+        cw.visit(Opcodes.V1_6, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER, classDescriptor, null, "java/lang/Object", interfaces);
 
         // generate constructor
         MethodVisitor ctor = cw.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
@@ -106,19 +1345,21 @@ public class ClassGenerator {
         return cw;
     }
 
-    private static void createInvokeMethod(ClassVisitor cw, Method method, Class<?> returnType, boolean useEmptyParamDescriptor) {
+    private static void createInvokeMethod(ClassVisitor cw, Method method, Class<?> returnType, boolean useEmptyParamDescriptor, Class<?>[] receiverTypes, Metrics metrics) {
         if (returnType.isPrimitive()) {
-            createInvokerPrimitive(cw, method, returnType, useEmptyParamDescriptor);
+            createInvokerPrimitive(cw, method, returnType, useEmptyParamDescriptor, receiverTypes, metrics);
         }
         else {
             createInvoker(cw, method,
                           "invoke",
                           useEmptyParamDescriptor ? INVOKE_REF_0P : INVOKE_REF,
-                          Opcodes.ARETURN);
+                          Opcodes.ARETURN,
+                          receiverTypes,
+                          metrics);
         }
     }
 
-    private static void createInvokerPrimitive(ClassVisitor cw, Method method, Class<?> primitive, boolean useEmptyParamDescriptor) {
+    private static void createInvokerPrimitive(ClassVisitor cw, Method method, Class<?> primitive, boolean useEmptyParamDescriptor, Class<?>[] receiverTypes, Metrics metrics) {
         String invokeName;
         String invokeDesc;
         int returnOpCode;
@@ -168,14 +1409,16 @@ public class ClassGenerator {
             returnOpCode = Opcodes.RETURN;
         }
 
-        createInvoker(cw, method, invokeName, invokeDesc, returnOpCode);
+        createInvoker(cw, method, invokeName, invokeDesc, returnOpCode, receiverTypes, metrics);
     }
 
     // creates a specific invoke method
-    private static void createInvoker(ClassVisitor cw, Method method, String invokeName, String invokeDescriptor, int returnOpCode) {
+    private static void createInvoker(ClassVisitor cw, Method method, String invokeName, String invokeDescriptor, int returnOpCode, Class<?>[] receiverTypes, Metrics metrics) {
         // don't care about generic details in the methods; they aren't necessary
         MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, invokeName, invokeDescriptor, null, null);
         mv.visitCode();
+        visitMetricsEnter(mv, metrics, 3);
+        createReceiverGuards(mv, method, receiverTypes, false, returnOpCode, metrics, 3);
 
         // Removes unnecessary loading and casting of a most likely
         // null target, that also won't get used for static methods
@@ -201,22 +1444,458 @@ public class ClassGenerator {
         // invoke the method itself
 
         mv.visitMethodInsn(getInvocationOpcode(method), Type.getInternalName(method.getDeclaringClass()), method.getName(), Type.getMethodDescriptor(method));
+        visitMetricsExit(mv, metrics, 3);
         mv.visitInsn(returnOpCode);
 
         // stack = this + target_ref + parameters
-        // locals = this, target, param_array
-        mv.visitMaxs(2 + calculateStackSize(methodParams), 3);
+        // locals = this, target, param_array (+ the start time when sampling latency)
+        mv.visitMaxs(getMaxStack(2 + calculateStackSize(methodParams), metrics), metrics != null && metrics.latency ? 5 : 3);
+        mv.visitEnd();
+    }
+
+    // creates the invoke method that takes an ArgumentFrame, which reads each parameter from its slot in the frame:
+    // return ((Target) target).method((int) frame.p0, frame.d1, (String) frame.r2);
+    private static void createFrameInvoker(ClassVisitor cw, Method method, Metrics metrics) {
+        Class<?> returnType = method.getReturnType();
+        String invokeDescriptor = Type.getMethodDescriptor(returnType.isPrimitive() ? Type.getType(returnType) : OBJECT_TYPE, OBJECT_TYPE, Type.getType(ArgumentFrame.class));
+        MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, getInvokeName(returnType), invokeDescriptor, null, null);
+        mv.visitCode();
+        visitMetricsEnter(mv, metrics, 3);
+        if (!Modifier.isStatic(method.getModifiers())) {
+            mv.visitVarInsn(Opcodes.ALOAD, 1);
+            mv.visitTypeInsn(Opcodes.CHECKCAST, Type.getInternalName(method.getDeclaringClass()));
+        }
+
+        Class<?>[] methodParams = method.getParameterTypes();
+        for (int i = 0; i < methodParams.length; i++) {
+            loadFrameSlot(mv, methodParams[i], 2, i);
+        }
+
+        mv.visitMethodInsn(getInvocationOpcode(method), Type.getInternalName(method.getDeclaringClass()), method.getName(), Type.getMethodDescriptor(method));
+        visitMetricsExit(mv, metrics, 3);
+        mv.visitInsn(getReturnOpcode(returnType));
+
+        // stack = target_ref + parameters, + the frame (or 1 more slot as a long is loaded before being converted to an int)
+        // locals = this, target, frame (+ the start time when sampling latency)
+        mv.visitMaxs(getMaxStack(2 + calculateStackSize(methodParams), metrics), metrics != null && metrics.latency ? 5 : 3);
+        mv.visitEnd();
+    }
+
+    // loads the given slot of the ArgumentFrame (in the given local) as the parameter's type
+    private static void loadFrameSlot(MethodVisitor mv, Class<?> parameter, int frameLocal, int slot) {
+        mv.visitVarInsn(Opcodes.ALOAD, frameLocal);
+        if (parameter == float.class || parameter == double.class) {
+            mv.visitFieldInsn(Opcodes.GETFIELD, ARGUMENT_FRAME_DESC, "d" + slot, "D");
+            if (parameter == float.class) {
+                mv.visitInsn(Opcodes.D2F);
+            }
+        }
+        else if (parameter.isPrimitive()) {
+            mv.visitFieldInsn(Opcodes.GETFIELD, ARGUMENT_FRAME_DESC, "p" + slot, "J");
+            if (parameter != long.class) {
+                // the setters already truncated it to the parameter's type
+                mv.visitInsn(Opcodes.L2I);
+            }
+        }
+        else {
+            mv.visitFieldInsn(Opcodes.GETFIELD, ARGUMENT_FRAME_DESC, "r" + slot, "Ljava/lang/Object;");
+            if (parameter != Object.class) {
+                mv.visitTypeInsn(Opcodes.CHECKCAST, Type.getInternalName(parameter));
+            }
+        }
+    }
+
+    // creates the invoke method for the fixed-arity accessor, where the parameters
+    // are passed directly rather than through an Object[]. Primitives are never boxed
+    private static void createFixedArityInvoker(ClassVisitor cw, Method method, Class<?>[] receiverTypes, Metrics metrics) {
+        Class<?> returnType = method.getReturnType();
+        Class<?>[] methodParams = method.getParameterTypes();
+        Type[] invokeParams = new Type[methodParams.length + 1];
+        invokeParams[0] = OBJECT_TYPE;
+        for (int i = 0; i < methodParams.length; i++) {
+            invokeParams[i + 1] = methodParams[i].isPrimitive() ? Type.getType(methodParams[i]) : OBJECT_TYPE;
+        }
+
+        String invokeDescriptor = Type.getMethodDescriptor(returnType.isPrimitive() ? Type.getType(returnType) : OBJECT_TYPE, invokeParams);
+        MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, getInvokeName(returnType), invokeDescriptor, null, null);
+        mv.visitCode();
+
+        // the start time goes after this, target and the parameters. longs and doubles take up 2 local slots
+        int startLocal = 2 + calculateStackSize(methodParams);
+        visitMetricsEnter(mv, metrics, startLocal);
+        createReceiverGuards(mv, method, receiverTypes, true, getReturnOpcode(returnType), metrics, startLocal);
+        if (!Modifier.isStatic(method.getModifiers())) {
+            mv.visitVarInsn(Opcodes.ALOAD, 1);
+            mv.visitTypeInsn(Opcodes.CHECKCAST, Type.getInternalName(method.getDeclaringClass()));
+        }
+
+        // parameters start after this and target. longs and doubles take up 2 local slots
+        int nextLocal = 2;
+        for (Class<?> parameter : methodParams) {
+            nextLocal += ASMHelper.loadLocalIntoStack(mv, parameter, nextLocal);
+        }
+
+        mv.visitMethodInsn(getInvocationOpcode(method), Type.getInternalName(method.getDeclaringClass()), method.getName(), Type.getMethodDescriptor(method));
+        visitMetricsExit(mv, metrics, startLocal);
+        mv.visitInsn(getReturnOpcode(returnType));
+
+        // stack = target_ref + parameters (+1 in case the return value is a long/double)
+        // locals = this, target, parameters (+ the start time when sampling latency)
+        mv.visitMaxs(getMaxStack(2 + calculateStackSize(methodParams), metrics), metrics != null && metrics.latency ? nextLocal + 2 : nextLocal);
+        mv.visitEnd();
+    }
+
+    // for each receiver type, this generates:
+    // if (target.getClass() == Receiver.class) {
+    //     return ((Receiver) target).method(params...);
+    // }
+    // fixedArity means the parameters are locals rather than in the Object[]. Nothing is generated if there are no receivers.
+    // The stack never gets bigger than the normal invoke, as the class comparison happens before loading the parameters
+    private static void createReceiverGuards(MethodVisitor mv, Method method, Class<?>[] receiverTypes, boolean fixedArity, int returnOpCode, Metrics metrics, int startLocal) {
+        Class<?>[] methodParams = method.getParameterTypes();
+        boolean firstFrame = true;
+        for (Class<?> receiver : receiverTypes) {
+            Label next = new Label();
+            mv.visitVarInsn(Opcodes.ALOAD, 1);
+            mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, "java/lang/Object", "getClass", "()Ljava/lang/Class;");
+            mv.visitLdcInsn(Type.getType(receiver));
+            mv.visitJumpInsn(Opcodes.IF_ACMPNE, next);
+
+            mv.visitVarInsn(Opcodes.ALOAD, 1);
+            mv.visitTypeInsn(Opcodes.CHECKCAST, Type.getInternalName(receiver));
+            int nextLocal = 2;
+            for (int i = 0; i < methodParams.length; i++) {
+                if (fixedArity) {
+                    nextLocal += ASMHelper.loadLocalIntoStack(mv, methodParams[i], nextLocal);
+                }
+                else {
+                    ASMHelper.loadArrayElementIntoStack(mv, methodParams[i], 2, i);
+                }
+            }
+
+            // the receiver is a class, so this is always INVOKEVIRTUAL, even if the method is from an interface
+            mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, Type.getInternalName(receiver), method.getName(), Type.getMethodDescriptor(method));
+            visitMetricsExit(mv, metrics, startLocal);
+            mv.visitInsn(returnOpCode);
+            mv.visitLabel(next);
+            if (firstFrame && metrics != null && metrics.latency) {
+                // the start time was stored before the first guard
+                mv.visitFrame(Opcodes.F_APPEND, 1, new Object[]{Opcodes.LONG}, 0, null);
+            }
+            else {
+                mv.visitFrame(Opcodes.F_SAME, 0, null, 0, null);
+            }
+
+            firstFrame = false;
+        }
+    }
+
+    // private static final InvocationMetrics METRICS = InvocationMetrics.get("Target.method(desc)");
+    // it's a static final, so the JIT treats it as a constant
+    private static void createMetricsField(ClassVisitor cw, String className, Method method) {
+        cw.visitField(Opcodes.ACC_PRIVATE | Opcodes.ACC_STATIC | Opcodes.ACC_FINAL, "METRICS", METRICS_FIELD_DESC, null, null).visitEnd();
+        MethodVisitor mv = cw.visitMethod(Opcodes.ACC_STATIC, "<clinit>", "()V", null, null);
+        mv.visitCode();
+        mv.visitLdcInsn(InvocationMetrics.getName(method));
+        mv.visitMethodInsn(Opcodes.INVOKESTATIC, METRICS_DESC, "get", "(Ljava/lang/String;)" + METRICS_FIELD_DESC);
+        mv.visitFieldInsn(Opcodes.PUTSTATIC, className, "METRICS", METRICS_FIELD_DESC);
+        mv.visitInsn(Opcodes.RETURN);
+
+        // stack: name/metrics
+        // locals: none
+        mv.visitMaxs(1, 0);
+        mv.visitEnd();
+    }
+
+    // METRICS.increment(), or long start = METRICS.enter() when sampling latency. Nothing if it isn't instrumented
+    private static void visitMetricsEnter(MethodVisitor mv, Metrics metrics, int startLocal) {
+        if (metrics == null) {
+            return;
+        }
+
+        mv.visitFieldInsn(Opcodes.GETSTATIC, metrics.className, "METRICS", METRICS_FIELD_DESC);
+        if (metrics.latency) {
+            mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, METRICS_DESC, "enter", "()J");
+            mv.visitVarInsn(Opcodes.LSTORE, startLocal);
+        }
+        else {
+            mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, METRICS_DESC, "increment", "()V");
+        }
+    }
+
+    // METRICS.exit(start), after the method returned (its return value stays on the stack underneath)
+    private static void visitMetricsExit(MethodVisitor mv, Metrics metrics, int startLocal) {
+        if (metrics == null || !metrics.latency) {
+            return;
+        }
+
+        mv.visitFieldInsn(Opcodes.GETSTATIC, metrics.className, "METRICS", METRICS_FIELD_DESC);
+        mv.visitVarInsn(Opcodes.LLOAD, startLocal);
+        mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, METRICS_DESC, "exit", "(J)V");
+    }
+
+    // exiting needs the return value (up to 2) + METRICS + start (2)
+    private static int getMaxStack(int maxStack, Metrics metrics) {
+        return metrics != null && metrics.latency ? Math.max(maxStack, 5) : maxStack;
+    }
+
+    // creates the batch invoke method for the fixed-arity accessor, which is basically:
+    // for (; from < to; from++) {
+    //     out[from] = ((Target) targets[from]).method(p0[from], p1[from], ...);
+    // }
+    private static void createBatchInvoker(ClassVisitor cw, Method method) {
+        Class<?> returnType = method.getReturnType();
+        Class<?>[] methodParams = method.getParameterTypes();
+        boolean hasOutput = returnType != void.class;
+        Type[] invokeParams = new Type[methodParams.length + (hasOutput ? 4 : 3)];
+        invokeParams[0] = Type.getType(Object[].class);
+        for (int i = 0; i < methodParams.length; i++) {
+            invokeParams[i + 1] = Type.getType(methodParams[i].isPrimitive() ? Array.newInstance(methodParams[i], 0).getClass() : Object[].class);
+        }
+
+        if (hasOutput) {
+            invokeParams[invokeParams.length - 3] = Type.getType(returnType.isPrimitive() ? Array.newInstance(returnType, 0).getClass() : Object[].class);
+        }
+
+        invokeParams[invokeParams.length - 2] = Type.INT_TYPE;
+        invokeParams[invokeParams.length - 1] = Type.INT_TYPE;
+
+        // locals = this, targets, parameter arrays, out, from, to
+        int outIndex = methodParams.length + 2;
+        int fromIndex = invokeParams.length - 1;
+        int toIndex = invokeParams.length;
+
+        MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, getInvokeName(returnType) + "Batch", Type.getMethodDescriptor(Type.VOID_TYPE, invokeParams), null, null);
+        mv.visitCode();
+        Label loopStart = new Label();
+        Label loopEnd = new Label();
+        mv.visitLabel(loopStart);
+        mv.visitFrame(Opcodes.F_SAME, 0, null, 0, null);
+        mv.visitVarInsn(Opcodes.ILOAD, fromIndex);
+        mv.visitVarInsn(Opcodes.ILOAD, toIndex);
+        mv.visitJumpInsn(Opcodes.IF_ICMPGE, loopEnd);
+        if (hasOutput) {
+            mv.visitVarInsn(Opcodes.ALOAD, outIndex);
+            mv.visitVarInsn(Opcodes.ILOAD, fromIndex);
+        }
+
+        if (!Modifier.isStatic(method.getModifiers())) {
+            mv.visitVarInsn(Opcodes.ALOAD, 1);
+            mv.visitVarInsn(Opcodes.ILOAD, fromIndex);
+            mv.visitInsn(Opcodes.AALOAD);
+            mv.visitTypeInsn(Opcodes.CHECKCAST, Type.getInternalName(method.getDeclaringClass()));
+        }
+
+        for (int i = 0; i < methodParams.length; i++) {
+            mv.visitVarInsn(Opcodes.ALOAD, i + 2);
+            mv.visitVarInsn(Opcodes.ILOAD, fromIndex);
+            if (methodParams[i].isPrimitive()) {
+                mv.visitInsn(Type.getType(methodParams[i]).getOpcode(Opcodes.IALOAD));
+            }
+            else {
+                mv.visitInsn(Opcodes.AALOAD);
+                if (methodParams[i] != Object.class) {
+                    mv.visitTypeInsn(Opcodes.CHECKCAST, Type.getInternalName(methodParams[i]));
+                }
+            }
+        }
+
+        mv.visitMethodInsn(getInvocationOpcode(method), Type.getInternalName(method.getDeclaringClass()), method.getName(), Type.getMethodDescriptor(method));
+        if (hasOutput) {
+            mv.visitInsn(returnType.isPrimitive() ? Type.getType(returnType).getOpcode(Opcodes.IASTORE) : Opcodes.AASTORE);
+        }
+
+        mv.visitIincInsn(fromIndex, 1);
+        mv.visitJumpInsn(Opcodes.GOTO, loopStart);
+        mv.visitLabel(loopEnd);
+        mv.visitFrame(Opcodes.F_SAME, 0, null, 0, null);
+        mv.visitInsn(Opcodes.RETURN);
+
+        // stack = out + index + target_ref + parameters (+ array and index while loading the last parameter)
+        mv.visitMaxs(4 + calculateStackSize(methodParams), toIndex + 1);
+        mv.visitEnd();
+    }
+
+    // creates the functional interface's method, which passes its parameters straight to the target method
+    private static void createBindingInvoker(ClassVisitor cw, Method method, Method sam) {
+        Class<?>[] methodParams = method.getParameterTypes();
+        Class<?>[] samParams = sam.getParameterTypes();
+        MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, sam.getName(), Type.getMethodDescriptor(sam), null, null);
+        mv.visitCode();
+
+        int nextLocal = 1;
+        int offset = 0;
+        if (!Modifier.isStatic(method.getModifiers())) {
+            nextLocal += ASMHelper.loadLocalIntoStack(mv, samParams[0], method.getDeclaringClass(), nextLocal);
+            offset = 1;
+        }
+
+        for (int i = 0; i < methodParams.length; i++) {
+            nextLocal += ASMHelper.loadLocalIntoStack(mv, samParams[i + offset], methodParams[i], nextLocal);
+        }
+
+        mv.visitMethodInsn(getInvocationOpcode(method), Type.getInternalName(method.getDeclaringClass()), method.getName(), Type.getMethodDescriptor(method));
+        Class<?> samReturn = sam.getReturnType();
+        Class<?> methodReturn = method.getReturnType();
+        if (samReturn == void.class && methodReturn != void.class) {
+            mv.visitInsn(methodReturn == long.class || methodReturn == double.class ? Opcodes.POP2 : Opcodes.POP);
+        }
+
+        mv.visitInsn(getReturnOpcode(samReturn));
+
+        // stack = target_ref + parameters (+1 in case the return value is a long/double)
+        // locals = this + the interface method's parameters
+        mv.visitMaxs(2 + calculateStackSize(methodParams), nextLocal);
+        mv.visitEnd();
+    }
+
+    // creates a newInstance method. fixedArity means the parameters are passed directly, otherwise they're in an Object[]
+    private static void createConstructorInvoker(ClassVisitor cw, Constructor<?> constructor, String name, String descriptor, boolean fixedArity) {
+        String owner = Type.getInternalName(constructor.getDeclaringClass());
+        Class<?>[] params = constructor.getParameterTypes();
+        MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, name, descriptor, null, null);
+        mv.visitCode();
+        mv.visitTypeInsn(Opcodes.NEW, owner);
+        mv.visitInsn(Opcodes.DUP);
+        int nextLocal = 1;
+        for (int i = 0; i < params.length; i++) {
+            if (fixedArity) {
+                nextLocal += ASMHelper.loadLocalIntoStack(mv, params[i], nextLocal);
+            }
+            else {
+                ASMHelper.loadArrayElementIntoStack(mv, params[i], 1, i);
+            }
+        }
+
+        mv.visitMethodInsn(Opcodes.INVOKESPECIAL, owner, "<init>", Type.getConstructorDescriptor(constructor));
+        mv.visitInsn(Opcodes.ARETURN);
+
+        // stack = new instance x2 + parameters (+ param array and index while loading from the array)
+        // locals = this + parameters (or the param array)
+        mv.visitMaxs(fixedArity ? 2 + calculateStackSize(params) : 3 + calculateStackSize(params), fixedArity ? nextLocal : 2);
+        mv.visitEnd();
+    }
+
+    // field.get(target), or getInt/getLong/etc for primitives
+    private static void createFieldGetter(ClassVisitor cw, Field field) {
+        Class<?> type = field.getType();
+        String owner = Type.getInternalName(field.getDeclaringClass());
+        String getterDescriptor = Type.getMethodDescriptor(type.isPrimitive() ? Type.getType(type) : OBJECT_TYPE, OBJECT_TYPE);
+        MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "get" + getTypeSuffix(type), getterDescriptor, null, null);
+        mv.visitCode();
+        if (Modifier.isStatic(field.getModifiers())) {
+            mv.visitFieldInsn(Opcodes.GETSTATIC, owner, field.getName(), Type.getDescriptor(type));
+        }
+        else {
+            mv.visitVarInsn(Opcodes.ALOAD, 1);
+            mv.visitTypeInsn(Opcodes.CHECKCAST, owner);
+            mv.visitFieldInsn(Opcodes.GETFIELD, owner, field.getName(), Type.getDescriptor(type));
+        }
+
+        mv.visitInsn(getReturnOpcode(type));
+
+        // stack = the value (2 for long/double)
+        // locals = this, target
+        mv.visitMaxs(2, 2);
+        mv.visitEnd();
+    }
+
+    // field.set(target, value), or setInt/setLong/etc for primitives
+    private static void createFieldSetter(ClassVisitor cw, Field field) {
+        Class<?> type = field.getType();
+        String owner = Type.getInternalName(field.getDeclaringClass());
+        String setterDescriptor = Type.getMethodDescriptor(Type.VOID_TYPE, OBJECT_TYPE, type.isPrimitive() ? Type.getType(type) : OBJECT_TYPE);
+        MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "set" + getTypeSuffix(type), setterDescriptor, null, null);
+        mv.visitCode();
+        boolean isStatic = Modifier.isStatic(field.getModifiers());
+        if (!isStatic) {
+            mv.visitVarInsn(Opcodes.ALOAD, 1);
+            mv.visitTypeInsn(Opcodes.CHECKCAST, owner);
+        }
+
+        int valueSize = ASMHelper.loadLocalIntoStack(mv, type, 2);
+        mv.visitFieldInsn(isStatic ? Opcodes.PUTSTATIC : Opcodes.PUTFIELD, owner, field.getName(), Type.getDescriptor(type));
+        mv.visitInsn(Opcodes.RETURN);
+
+        // stack = target_ref + value
+        // locals = this, target, value
+        mv.visitMaxs(1 + valueSize, 2 + valueSize);
         mv.visitEnd();
     }
 
+    /**
+     * Gets the name of the accessor method that invokes a method with the given return type, e.g invokeInt for int,
+     * invokeVoid for void, and invoke for any reference
+     */
+    public static String getInvokeName(Class<?> returnType) {
+        return "invoke" + getTypeSuffix(returnType);
+    }
+
+    // the suffix used by the accessor methods for the given type, e.g Int for int (invokeInt, getInt).
+    // Reference types have no suffix (invoke, get)
+    private static String getTypeSuffix(Class<?> type) {
+        if (!type.isPrimitive()) {
+            return "";
+        }
+        else if (type == byte.class) {
+            return "Byte";
+        }
+        else if (type == short.class) {
+            return "Short";
+        }
+        else if (type == int.class) {
+            return "Int";
+        }
+        else if (type == long.class) {
+            return "Long";
+        }
+        else if (type == float.class) {
+            return "Float";
+        }
+        else if (type == double.class) {
+            return "Double";
+        }
+        else if (type == boolean.class) {
+            return "Bool";
+        }
+        else if (type == char.class) {
+            return "Char";
+        }
+        else {
+            return "Void";
+        }
+    }
+
+    private static int getReturnOpcode(Class<?> returnType) {
+        if (!returnType.isPrimitive()) {
+            return Opcodes.ARETURN;
+        }
+        else if (returnType == long.class) {
+            return Opcodes.LRETURN;
+        }
+        else if (returnType == float.class) {
+            return Opcodes.FRETURN;
+        }
+        else if (returnType == double.class) {
+            return Opcodes.DRETURN;
+        }
+        else if (returnType == void.class) {
+            return Opcodes.RETURN;
+        }
+        else {
+            return Opcodes.IRETURN;
+        }
+    }
+
     private static int getInvocationOpcode(Method method) {
         int mods = method.getModifiers();
         if (Modifier.isStatic(mods)) {
             return Opcodes.INVOKESTATIC;
         }
-        // else if (Modifier.isInterface(mods)) { ??? could use maybe...
-        //     return Opcodes.INVOKEINTERFACE;
-        // }
+        // abstract and default interface methods
+        else if (method.getDeclaringClass().isInterface()) {
+            return Opcodes.INVOKEINTERFACE;
+        }
         else {
             return Opcodes.INVOKEVIRTUAL;
         }
@@ -238,14 +1917,14 @@ public class ClassGenerator {
         return parameters.length + extra;
     }
 
-    private static class ASMClassLoader extends ClassLoader {
-        private ASMClassLoader() {
-            super(ASMMethodAccessor.class.getClassLoader());
-        }
+    // what to instrument in a generated method accessor
+    private static final class Metrics {
+        private final String className; // the generated class, which has the METRICS field
+        private final boolean latency;
 
-        public Class<?> define(String name, byte[] data) throws ClassFormatError {
-            // does not use a protection domain
-            return defineClass(name, data, 0, data.length);
+        private Metrics(String className, boolean latency) {
+            this.className = className;
+            this.latency = latency;
         }
     }
 }
@@ -0,0 +1,30 @@
+package reghzy.asm.utils;
+
+/**
+ * How {@link ClassGenerator} defines the classes it generates
+ */
+public enum GeneratorBackend {
+    /**
+     * Defines the generated classes in an ASMClassLoader, in no package. Because of java's access
+     * security, only public methods in public classes can be invoked. Generated classes are unloaded
+     * with the target's class loader
+     */
+    CLASS_LOADER,
+
+    /**
+     * Defines the generated classes as hidden classes (java 15+), which are nestmates of the target class. This means
+     * private, protected and package-private methods can be invoked directly. Accessors that only use public things
+     * are still defined like {@link GeneratorBackend#CLASS_LOADER}, and accessors for classes that hidden classes can't
+     * be defined in use reflection instead. That's any class from another class loader than this library's (e.g JDK classes,
+     * or a plugin's classes when this library isn't shaded into the plugin), as java only lets a class define hidden classes
+     * in its own module, and each class loader has its own unnamed module
+     */
+    HIDDEN_CLASS;
+
+    /**
+     * Whether this backend can be used in the current JVM
+     */
+    public boolean isSupported() {
+        return this != HIDDEN_CLASS || HiddenClassDefiner.isSupported();
+    }
+}
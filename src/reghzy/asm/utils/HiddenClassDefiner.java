@@ -0,0 +1,109 @@
+package reghzy.asm.utils;
+
+import reghzy.asm.MethodAccessor;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.text.MessageFormat;
+
+/**
+ * Defines hidden classes using {@code MethodHandles.Lookup#defineHiddenClass}. That only exists in java 15+, so
+ * it's all accessed through reflection, so that this library can still be compiled and used on older versions
+ */
+class HiddenClassDefiner {
+    private static final Method PRIVATE_LOOKUP_IN;   // MethodHandles.privateLookupIn(Class, Lookup)
+    private static final Method DEFINE_HIDDEN_CLASS; // Lookup.defineHiddenClass(byte[], boolean, ClassOption...)
+    private static final Object NESTMATE_OPTIONS;    // new ClassOption[]{ClassOption.NESTMATE}
+    private static final Method HAS_FULL_PRIVILEGE;  // Lookup.hasFullPrivilegeAccess()
+
+    static {
+        Method privateLookupIn = null;
+        Method defineHiddenClass = null;
+        Object nestmateOptions = null;
+        Method hasFullPrivilege = null;
+        try {
+            Class<?> classOption = Class.forName("java.lang.invoke.MethodHandles$Lookup$ClassOption");
+            privateLookupIn = MethodHandles.class.getMethod("privateLookupIn", Class.class, MethodHandles.Lookup.class);
+            defineHiddenClass = MethodHandles.Lookup.class.getMethod("defineHiddenClass", byte[].class, boolean.class, Array.newInstance(classOption, 0).getClass());
+            nestmateOptions = Array.newInstance(classOption, 1);
+            Array.set(nestmateOptions, 0, classOption.getField("NESTMATE").get(null));
+            hasFullPrivilege = MethodHandles.Lookup.class.getMethod("hasFullPrivilegeAccess");
+        }
+        catch (Throwable e) {
+            // not java 15+
+            privateLookupIn = null;
+            defineHiddenClass = null;
+            nestmateOptions = null;
+            hasFullPrivilege = null;
+        }
+
+        PRIVATE_LOOKUP_IN = privateLookupIn;
+        DEFINE_HIDDEN_CLASS = defineHiddenClass;
+        NESTMATE_OPTIONS = nestmateOptions;
+        HAS_FULL_PRIVILEGE = hasFullPrivilege;
+    }
+
+    // whether hidden classes can be defined in each host class, see canDefineIn
+    private static final ClassValue<Boolean> DEFINABLE = new ClassValue<Boolean>() {
+        @Override
+        protected Boolean computeValue(Class<?> host) {
+            // the hidden class is defined in the host's loader, so that has to see this library (e.g the bootstrap loader can't)
+            try {
+                if (Class.forName(MethodAccessor.class.getName(), false, host.getClassLoader()) != MethodAccessor.class) {
+                    return false;
+                }
+            }
+            catch (ClassNotFoundException e) {
+                return false;
+            }
+
+            // and the host's package has to be open to this library (e.g java.lang isn't). defineHiddenClass also needs
+            // full privilege access, which the private lookup doesn't have when the host is in another module, e.g
+            // any class from another class loader (like a plugin's), as each loader has its own unnamed module
+            try {
+                Object lookup = PRIVATE_LOOKUP_IN.invoke(null, host, MethodHandles.lookup());
+                return (Boolean) HAS_FULL_PRIVILEGE.invoke(lookup);
+            }
+            catch (InvocationTargetException e) {
+                return false;
+            }
+            catch (IllegalAccessException e) {
+                return false;
+            }
+        }
+    };
+
+    static boolean isSupported() {
+        return DEFINE_HIDDEN_CLASS != null;
+    }
+
+    /**
+     * Checks if hidden classes can be defined as nestmates of the given host class
+     */
+    static boolean canDefineIn(Class<?> host) {
+        return isSupported() && DEFINABLE.get(host);
+    }
+
+    /**
+     * Defines the given class bytes as a hidden nestmate of the given host class. The class must be in the same package as the host
+     */
+    static Class<?> define(Class<?> host, byte[] data) {
+        if (!isSupported()) {
+            throw new UnsupportedOperationException("Hidden classes require java 15 or above");
+        }
+
+        try {
+            Object lookup = PRIVATE_LOOKUP_IN.invoke(null, host, MethodHandles.lookup());
+            Object hiddenLookup = DEFINE_HIDDEN_CLASS.invoke(lookup, data, true, NESTMATE_OPTIONS);
+            return ((MethodHandles.Lookup) hiddenLookup).lookupClass();
+        }
+        catch (IllegalAccessException e) {
+            throw new RuntimeException("IllegalAccessException", e);
+        }
+        catch (InvocationTargetException e) {
+            throw new RuntimeException(MessageFormat.format("Failed to define hidden class in {0}", host.getName()), e.getCause());
+        }
+    }
+}
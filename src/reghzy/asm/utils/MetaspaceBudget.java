@@ -0,0 +1,401 @@
+package reghzy.asm.utils;
+
+import java.lang.ref.WeakReference;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * A limit on how many generated method accessor classes (and how many bytes of them) are loaded at once, see
+ * {@link ClassGenerator#setMetaspaceBudget(MetaspaceBudget)}
+ * <p>
+ *     Generated classes are defined in small loader groups (a class loader per few classes, rather than one per target
+ *     class loader), so a whole group can be unloaded once nothing uses it. When the budget is exceeded, the least recently
+ *     used groups are evicted: their accessors drop the generated instance (so the group's loader can be collected) and
+ *     regenerate it the next time they're invoked. With a {@link BytecodeCache}, regenerating is just defining the cached bytes
+ * </p>
+ * <p>
+ *     The size of a class is the size of its class file, which is a rough estimate of the metaspace it uses. The budget
+ *     can be exceeded briefly, as the groups that are still being filled are never evicted. With the
+ *     {@link GeneratorBackend#HIDDEN_CLASS} backend, each hidden class can be unloaded on its own, and the groups are
+ *     just used for the accounting
+ * </p>
+ */
+public final class MetaspaceBudget {
+    public static final int DEFAULT_GROUP_SIZE = 8;
+
+    private static final Comparator<LoaderGroup> LAST_USED_ORDER = new Comparator<LoaderGroup>() {
+        @Override
+        public int compare(LoaderGroup a, LoaderGroup b) {
+            long lastUsedA = a.getLastUsed();
+            long lastUsedB = b.getLastUsed();
+            return lastUsedA < lastUsedB ? -1 : lastUsedA == lastUsedB ? 0 : 1;
+        }
+    };
+
+    private final long maxBytes;
+    private final int maxClasses;
+    private final int groupSize;
+
+    // everything below is guarded by this
+    private final List<LoaderGroup> groups = new ArrayList<LoaderGroup>();
+    private final Map<ClassLoader, LoaderGroup> currentGroups = new WeakHashMap<ClassLoader, LoaderGroup>();
+    private LoaderGroup currentHiddenGroup;
+    private int nextGroupId;
+    private long residentBytes;
+    private int residentClasses;
+    private long definedClasses;
+    private long evictedClasses;
+    private long evictedGroups;
+
+    // the LRU clock. It advances every time a class is defined, and residents store the value when they were last used
+    private volatile long epoch;
+
+    public MetaspaceBudget(long maxBytes, int maxClasses) {
+        this(maxBytes, maxClasses, DEFAULT_GROUP_SIZE);
+    }
+
+    /**
+     * @param maxBytes The total size of the class files that can be loaded at once
+     * @param maxClasses The number of classes that can be loaded at once
+     * @param groupSize The number of classes in each loader group. Smaller groups can be evicted more precisely, but each one is another class loader
+     */
+    public MetaspaceBudget(long maxBytes, int maxClasses, int groupSize) {
+        if (maxBytes <= 0 || maxClasses <= 0 || groupSize <= 0) {
+            throw new IllegalArgumentException(MessageFormat.format("The budget ({0} bytes, {1} classes, {2} per group) must be positive", maxBytes, maxClasses, groupSize));
+        }
+
+        this.maxBytes = maxBytes;
+        this.maxClasses = maxClasses;
+        this.groupSize = groupSize;
+    }
+
+    public long getMaxBytes() {
+        return this.maxBytes;
+    }
+
+    public int getMaxClasses() {
+        return this.maxClasses;
+    }
+
+    public int getGroupSize() {
+        return this.groupSize;
+    }
+
+    /**
+     * The total size of the classes that are currently loaded (not evicted)
+     */
+    public synchronized long getResidentBytes() {
+        return this.residentBytes;
+    }
+
+    /**
+     * The number of classes that are currently loaded (not evicted)
+     */
+    public synchronized int getResidentClasses() {
+        return this.residentClasses;
+    }
+
+    /**
+     * The number of classes that have been defined, including ones that were regenerated after being evicted
+     */
+    public synchronized long getDefinedClasses() {
+        return this.definedClasses;
+    }
+
+    public synchronized long getEvictedClasses() {
+        return this.evictedClasses;
+    }
+
+    public synchronized long getEvictedGroups() {
+        return this.evictedGroups;
+    }
+
+    /**
+     * Gets a snapshot of the groups that are currently loaded, least recently used first
+     */
+    public synchronized List<GroupStats> getGroups() {
+        pruneGroups();
+        List<GroupStats> stats = new ArrayList<GroupStats>(this.groups.size());
+        for (LoaderGroup group : getGroupsByLastUse()) {
+            stats.add(new GroupStats(group.id, group.classNames, group.bytes, group.getLastUsed(), isCurrent(group)));
+        }
+
+        return stats;
+    }
+
+    /**
+     * Evicts every group, including the ones being filled. Their accessors regenerate their classes when they're next invoked
+     */
+    public synchronized void evictAll() {
+        for (LoaderGroup group : new ArrayList<LoaderGroup>(this.groups)) {
+            evict(group);
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return MessageFormat.format("MetaspaceBudget({0}/{1} bytes, {2}/{3} classes, {4} groups, {5} evicted)",
+                                    this.residentBytes, this.maxBytes, this.residentClasses, this.maxClasses, this.groups.size(), this.evictedClasses);
+    }
+
+    /**
+     * Defines the class in the current group for its target class' loader (or as a hidden class), and evicts the least
+     * recently used groups if that goes over the budget
+     */
+    synchronized Class<?> define(GeneratorBackend backend, Class<?> host, String className, byte[] data, Resident resident) {
+        LoaderGroup group;
+        Class<?> clazz;
+        if (backend == GeneratorBackend.HIDDEN_CLASS) {
+            if (this.currentHiddenGroup == null) {
+                this.currentHiddenGroup = newGroup(null);
+            }
+
+            group = this.currentHiddenGroup;
+            clazz = HiddenClassDefiner.define(host, data);
+        }
+        else {
+            // the group's loader is only weakly referenced (so that this doesn't stop the target loader being collected),
+            // so it's gone if none of the group's classes are used anymore
+            ClassLoader targetLoader = ASMClassLoader.getTargetLoader(host);
+            group = this.currentGroups.get(targetLoader);
+            ASMClassLoader loader = group == null ? null : group.loader.get();
+            if (loader == null) {
+                if (group != null) {
+                    stopFilling(group);
+                }
+
+                loader = ASMClassLoader.createGroup(host);
+                group = newGroup(loader);
+                this.currentGroups.put(targetLoader, group);
+            }
+
+            clazz = loader.define(className.replace('/', '.'), data);
+        }
+
+        // the new class counts as used now, so it isn't the first thing evicted
+        long now = ++this.epoch;
+        resident.budget = this;
+        resident.lastUsed = now;
+        group.residents.add(new WeakReference<Resident>(resident));
+        group.classNames.add(clazz.getName());
+        group.bytes += data.length;
+        this.residentBytes += data.length;
+        this.residentClasses++;
+        this.definedClasses++;
+        if (group.classNames.size() >= this.groupSize) {
+            // full, so the next class starts a new group
+            stopFilling(group);
+        }
+
+        evictOverBudget();
+        return clazz;
+    }
+
+    private LoaderGroup newGroup(ASMClassLoader loader) {
+        LoaderGroup group = new LoaderGroup(this.nextGroupId++, loader == null ? null : new WeakReference<ASMClassLoader>(loader), this.epoch);
+        this.groups.add(group);
+        return group;
+    }
+
+    private boolean isCurrent(LoaderGroup group) {
+        return group == this.currentHiddenGroup || this.currentGroups.containsValue(group);
+    }
+
+    private void evictOverBudget() {
+        if (this.residentBytes <= this.maxBytes && this.residentClasses <= this.maxClasses) {
+            return;
+        }
+
+        pruneGroups();
+        for (LoaderGroup group : getGroupsByLastUse()) {
+            if (this.residentBytes <= this.maxBytes && this.residentClasses <= this.maxClasses) {
+                break;
+            }
+
+            if (!isCurrent(group)) {
+                evict(group);
+            }
+        }
+    }
+
+    private void evict(LoaderGroup group) {
+        for (WeakReference<Resident> reference : group.residents) {
+            Resident resident = reference.get();
+            if (resident != null) {
+                resident.evict();
+            }
+        }
+
+        removeGroup(group);
+        this.evictedClasses += group.classNames.size();
+        this.evictedGroups++;
+    }
+
+    private void removeGroup(LoaderGroup group) {
+        this.groups.remove(group);
+        this.residentBytes -= group.bytes;
+        this.residentClasses -= group.classNames.size();
+        stopFilling(group);
+    }
+
+    private void stopFilling(LoaderGroup group) {
+        if (group == this.currentHiddenGroup) {
+            this.currentHiddenGroup = null;
+        }
+        else {
+            this.currentGroups.values().remove(group);
+        }
+    }
+
+    // groups whose accessors were all garbage collected (e.g their plugin was unloaded) don't use anything anymore
+    private void pruneGroups() {
+        for (LoaderGroup group : new ArrayList<LoaderGroup>(this.groups)) {
+            if (!isCurrent(group) && group.isCollected()) {
+                removeGroup(group);
+            }
+        }
+    }
+
+    private List<LoaderGroup> getGroupsByLastUse() {
+        List<LoaderGroup> sorted = new ArrayList<LoaderGroup>(this.groups);
+        Collections.sort(sorted, LAST_USED_ORDER);
+        return sorted;
+    }
+
+    /**
+     * Something that owns a class defined in a budget's group (e.g an accessor), which is told when that group is evicted
+     */
+    public abstract static class Resident {
+        private volatile MetaspaceBudget budget;
+        private volatile long lastUsed;
+        private volatile int evictions;
+
+        /**
+         * Marks the class as used now. This is cheap enough to call on every invocation, as it only writes when the
+         * budget's clock has moved on since the last call
+         */
+        protected final void touch() {
+            MetaspaceBudget budget = this.budget;
+            if (budget != null) {
+                long epoch = budget.epoch;
+                if (this.lastUsed != epoch) {
+                    this.lastUsed = epoch;
+                }
+            }
+        }
+
+        /**
+         * The number of times this has been evicted. Used to detect an eviction that happened while regenerating
+         */
+        protected final int getEvictions() {
+            return this.evictions;
+        }
+
+        /**
+         * Called (while the budget is locked) when the group that the class is in is evicted. This should drop any
+         * reference to the class and its instances, and regenerate it when it's needed again
+         */
+        protected abstract void onEvicted();
+
+        private void evict() {
+            this.evictions++;
+            onEvicted();
+        }
+    }
+
+    private static final class LoaderGroup {
+        private final int id;
+        private final long created;
+        private final List<WeakReference<Resident>> residents = new ArrayList<WeakReference<Resident>>();
+        private final List<String> classNames = new ArrayList<String>();
+        private final WeakReference<ASMClassLoader> loader; // null for hidden classes
+        private long bytes;
+
+        private LoaderGroup(int id, WeakReference<ASMClassLoader> loader, long created) {
+            this.id = id;
+            this.loader = loader;
+            this.created = created;
+        }
+
+        private long getLastUsed() {
+            long lastUsed = this.created;
+            for (WeakReference<Resident> reference : this.residents) {
+                Resident resident = reference.get();
+                if (resident != null && resident.lastUsed > lastUsed) {
+                    lastUsed = resident.lastUsed;
+                }
+            }
+
+            return lastUsed;
+        }
+
+        private boolean isCollected() {
+            for (WeakReference<Resident> reference : this.residents) {
+                if (reference.get() != null) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+    }
+
+    /**
+     * A snapshot of a loader group
+     */
+    public static final class GroupStats {
+        private final int id;
+        private final List<String> classNames;
+        private final long bytes;
+        private final long lastUsed;
+        private final boolean filling;
+
+        private GroupStats(int id, List<String> classNames, long bytes, long lastUsed, boolean filling) {
+            this.id = id;
+            this.classNames = Collections.unmodifiableList(new ArrayList<String>(classNames));
+            this.bytes = bytes;
+            this.lastUsed = lastUsed;
+            this.filling = filling;
+        }
+
+        public int getId() {
+            return this.id;
+        }
+
+        /**
+         * The names of the classes in the group
+         */
+        public List<String> getClassNames() {
+            return this.classNames;
+        }
+
+        public long getBytes() {
+            return this.bytes;
+        }
+
+        /**
+         * When the group was last used, in the budget's clock (the number of classes defined before then)
+         */
+        public long getLastUsed() {
+            return this.lastUsed;
+        }
+
+        /**
+         * Whether classes are still being added to the group. Those groups aren't evicted
+         */
+        public boolean isFilling() {
+            return this.filling;
+        }
+
+        @Override
+        public String toString() {
+            return MessageFormat.format("Group {0} ({1} classes, {2} bytes, last used {3}{4}): {5}",
+                                        this.id, this.classNames.size(), this.bytes, this.lastUsed, this.filling ? ", filling" : "", this.classNames);
+        }
+    }
+}
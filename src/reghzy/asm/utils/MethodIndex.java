@@ -0,0 +1,172 @@
+package reghzy.asm.utils;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.text.MessageFormat;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+
+/**
+ * An index of every method that a class has, including the ones inherited from its super classes and interfaces
+ * (default and abstract methods), keyed by the name and parameter types
+ * <p>
+ *     The index is built once per class (and cached in a {@link ClassValue}), so looking up a method is just a hash
+ *     lookup, rather than calling {@link Class#getDeclaredMethod(String, Class[])} on every class in the hierarchy and
+ *     catching the {@link NoSuchMethodException} each time it isn't there
+ * </p>
+ * <p>
+ *     Methods are resolved like java does: the class' own methods, then its super classes' (closest first), then the
+ *     interfaces' (sub interfaces before the interfaces they extend). Static interface methods aren't inherited, so they
+ *     are only in their own interface's index
+ * </p>
+ */
+public final class MethodIndex {
+    private static final Class<?>[] NO_PARAMETERS = new Class<?>[0];
+    private static final ClassValue<Map<Signature, Entry>> INDEXES = new ClassValue<Map<Signature, Entry>>() {
+        @Override
+        protected Map<Signature, Entry> computeValue(Class<?> type) {
+            return buildIndex(type);
+        }
+    };
+
+    private MethodIndex() {
+    }
+
+    /**
+     * Finds the method with the given name and parameter types in the given class or anywhere in its hierarchy
+     * @param clazz The class to search
+     * @param name The method's name
+     * @param parameterTypes The method's parameter types
+     * @return The method, or null if there isn't one. This instance is shared, so it must not be made accessible
+     *         (use {@link ReflectHelper#findDeclaredMethod(Class, String, Class[])} for that)
+     */
+    public static Method find(Class<?> clazz, String name, Class<?>... parameterTypes) {
+        Entry entry = INDEXES.get(clazz).get(new Signature(name, parameterTypes == null ? NO_PARAMETERS : parameterTypes));
+        return entry == null ? null : entry.method;
+    }
+
+    // a copy of the indexed method, which is only handed out by ReflectHelper.findDeclaredMethod (which makes it
+    // accessible), so the instance returned by find never is. the copy is made once per entry
+    static Method findCopy(Class<?> clazz, String name, Class<?>... parameterTypes) {
+        Entry entry = INDEXES.get(clazz).get(new Signature(name, parameterTypes == null ? NO_PARAMETERS : parameterTypes));
+        if (entry == null) {
+            return null;
+        }
+
+        Method copy = entry.copy;
+        if (copy == null) {
+            // two threads may both make a copy here, which is fine as either one can be used
+            try {
+                entry.copy = copy = entry.method.getDeclaringClass().getDeclaredMethod(entry.method.getName(), entry.method.getParameterTypes());
+            }
+            catch (NoSuchMethodException e) {
+                throw new RuntimeException(MessageFormat.format("The indexed method {0} no longer exists", entry.method), e);
+            }
+        }
+
+        return copy;
+    }
+
+    /**
+     * Returns the number of methods in the given class' index
+     */
+    public static int getMethodCount(Class<?> clazz) {
+        return INDEXES.get(clazz).size();
+    }
+
+    private static Map<Signature, Entry> buildIndex(Class<?> type) {
+        Map<Signature, Entry> index = new HashMap<Signature, Entry>();
+
+        // the class and its super classes, closest first. their interfaces are searched afterwards
+        Queue<Class<?>> interfaces = new ArrayDeque<Class<?>>();
+        for (Class<?> clazz = type; clazz != null; clazz = clazz.getSuperclass()) {
+            addMethods(index, clazz, clazz == type);
+            interfaces.addAll(Arrays.asList(clazz.getInterfaces()));
+        }
+
+        // breadth first, so sub interfaces come before the interfaces they extend
+        Set<Class<?>> visited = new HashSet<Class<?>>();
+        while (!interfaces.isEmpty()) {
+            Class<?> next = interfaces.poll();
+            if (visited.add(next)) {
+                addMethods(index, next, false);
+                interfaces.addAll(Arrays.asList(next.getInterfaces()));
+            }
+        }
+
+        return index;
+    }
+
+    // doesn't replace methods that are already in the index, as those are more specific
+    private static void addMethods(Map<Signature, Entry> index, Class<?> clazz, boolean isTarget) {
+        Map<Signature, Method> declared = new HashMap<Signature, Method>();
+        for (Method method : clazz.getDeclaredMethods()) {
+            if (!isTarget && clazz.isInterface() && Modifier.isStatic(method.getModifiers())) {
+                continue;
+            }
+
+            // a class can declare multiple methods with the same parameters (bridge methods for covariant return types).
+            // the actual method (the one with the most specific return type) is the one that's used
+            Signature signature = new Signature(method.getName(), method.getParameterTypes());
+            Method existing = declared.get(signature);
+            if (existing == null || isMoreSpecific(method, existing)) {
+                declared.put(signature, method);
+            }
+        }
+
+        for (Map.Entry<Signature, Method> entry : declared.entrySet()) {
+            if (!index.containsKey(entry.getKey())) {
+                index.put(entry.getKey(), new Entry(entry.getValue()));
+            }
+        }
+    }
+
+    private static boolean isMoreSpecific(Method method, Method existing) {
+        if (existing.isBridge() != method.isBridge()) {
+            return existing.isBridge();
+        }
+
+        return existing.getReturnType().isAssignableFrom(method.getReturnType());
+    }
+
+    private static final class Entry {
+        private final Method method;
+        private volatile Method copy;
+
+        private Entry(Method method) {
+            this.method = method;
+        }
+    }
+
+    private static final class Signature {
+        private final String name;
+        private final Class<?>[] parameterTypes;
+        private final int hash;
+
+        private Signature(String name, Class<?>[] parameterTypes) {
+            this.name = name;
+            this.parameterTypes = parameterTypes;
+            this.hash = name.hashCode() * 31 + Arrays.hashCode(parameterTypes);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Signature)) {
+                return false;
+            }
+
+            Signature signature = (Signature) obj;
+            return this.name.equals(signature.name) && Arrays.equals(this.parameterTypes, signature.parameterTypes);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+    }
+}
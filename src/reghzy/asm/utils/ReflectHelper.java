@@ -1,5 +1,7 @@
 package reghzy.asm.utils;
 
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.text.MessageFormat;
 
@@ -9,21 +11,59 @@ public class ReflectHelper {
             throw new NullPointerException("Target class cannot be null");
         }
 
+        // searches the whole hierarchy (including interfaces) using a cached index, rather than
+        // calling getDeclaredMethod on each class and catching the NoSuchMethodException. this
+        // gets the index's own copy, so making it accessible doesn't affect MethodIndex.find
+        Method method = MethodIndex.findCopy(clazz, name, parameterTypes);
+        if (method == null) {
+            throw new RuntimeException(MessageFormat.format("Could not find the declared method ''{0}'' in the hierarchy for the class ''{1}''", name, clazz.getName()));
+        }
+
+        if (!method.isAccessible()) {
+            method.setAccessible(true);
+        }
+
+        return method;
+    }
+
+    public static Field findDeclaredField(Class<?> clazz, String name) {
+        if (clazz == null) {
+            throw new NullPointerException("Target class cannot be null");
+        }
+
         Class<?> nextClass = clazz;
         while (nextClass != null) {
             try {
-                Method method = nextClass.getDeclaredMethod(name, parameterTypes);
-                if (!method.isAccessible()) {
-                    method.setAccessible(true);
+                Field field = nextClass.getDeclaredField(name);
+                if (!field.isAccessible()) {
+                    field.setAccessible(true);
                 }
 
-                return method;
+                return field;
             }
-            catch (NoSuchMethodException e) {
+            catch (NoSuchFieldException e) {
                 nextClass = nextClass.getSuperclass();
             }
         }
 
-        throw new RuntimeException(MessageFormat.format("Could not find the declared method '{0}' in the hierarchy for the class '{1}'", name, clazz.getName()));
+        throw new RuntimeException(MessageFormat.format("Could not find the declared field '{0}' in the hierarchy for the class '{1}'", name, clazz.getName()));
+    }
+
+    public static <T> Constructor<T> findDeclaredConstructor(Class<T> clazz, Class<?>... parameterTypes) {
+        if (clazz == null) {
+            throw new NullPointerException("Target class cannot be null");
+        }
+
+        try {
+            Constructor<T> constructor = clazz.getDeclaredConstructor(parameterTypes);
+            if (!constructor.isAccessible()) {
+                constructor.setAccessible(true);
+            }
+
+            return constructor;
+        }
+        catch (NoSuchMethodException e) {
+            throw new RuntimeException(MessageFormat.format("Could not find the declared constructor in the class '{0}'", clazz.getName()));
+        }
     }
 }